@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import be.casisto.tinkering.wikipedia.graph.AbstractGrapher;
+import be.casisto.tinkering.wikipedia.graph.OrientDBBulkGrapher;
 
 public class GrapherCLI {
 
@@ -24,6 +25,9 @@ public class GrapherCLI {
 	private String username = "admin";
 	private String password = "admin";
 	private String graphdb = "be.casisto.tinkering.wikipedia.graph.OrientDBGrapher";
+	private int threads = 1;
+	private String checkpoint = null;
+	private int checkpointInterval = 100000;
 
 	/**
 	 * Main method.
@@ -67,6 +71,21 @@ public class GrapherCLI {
 				true,
 				"Class name for the grapher implementation. Needs to extend AbstractGrapher. Default is the OrientDBGrapher.");
 
+		options.addOption(
+				"b",
+				"bulk",
+				false,
+				"Bulk load into an empty database with the OrientDBBulkGrapher, without looking up vertices by title. Fastest with an embedded plocal database.");
+
+		options.addOption("t", "threads", true,
+				"Number of threads loading the edges, each with its own database connection. Default is 1.");
+
+		options.addOption("c", "checkpoint", true,
+				"Checkpoint file recording the progress of the load. An interrupted load run again with the same checkpoint file resumes from the last checkpoint.");
+
+		options.addOption("ci", "checkpoint-interval", true,
+				"Number of pages between checkpoints. Default is 100000.");
+
 		options.addOption("h", "help", true, "Show help.");
 	}
 
@@ -116,6 +135,18 @@ public class GrapherCLI {
 			if (cmd.hasOption("g"))
 				graphdb = cmd.getOptionValue("g");
 
+			if (cmd.hasOption("b"))
+				graphdb = OrientDBBulkGrapher.class.getName();
+
+			if (cmd.hasOption("t"))
+				threads = getCount(cmd, "t");
+
+			if (cmd.hasOption("c"))
+				checkpoint = cmd.getOptionValue("c");
+
+			if (cmd.hasOption("ci"))
+				checkpointInterval = getCount(cmd, "ci");
+
 		} catch (ParseException e) {
 			log.error("Failed to parse command line!", e);
 			help();
@@ -123,6 +154,25 @@ public class GrapherCLI {
 
 	}
 
+	/**
+	 * Returns the value of an option that is a count, at least 1.
+	 */
+	private int getCount(CommandLine cmd, String option) {
+		int count = 0;
+		try {
+			count = Integer.parseInt(cmd.getOptionValue(option));
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		if (count < 1) {
+			log.error("The {} option needs to be a number of at least 1, not {}!",
+					options.getOption(option).getLongOpt(),
+					cmd.getOptionValue(option));
+			help();
+		}
+		return count;
+	}
+
 	/**
 	 * Execute the graphing logic.
 	 */
@@ -135,6 +185,8 @@ public class GrapherCLI {
 
 			log.info("Initializing Wikipedia grapher {}", graphdb);
 			grapher = (AbstractGrapher) Class.forName(graphdb).newInstance();
+			grapher.setThreads(threads);
+			grapher.setCheckpoint(checkpoint, checkpointInterval);
 
 			log.info("Connecting to the graph database with url {}", url);
 			grapher.connect(url, username, password);
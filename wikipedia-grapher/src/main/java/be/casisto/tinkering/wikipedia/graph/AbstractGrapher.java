@@ -11,6 +11,36 @@ import java.io.Closeable;
  */
 public abstract class AbstractGrapher implements Closeable {
 	
+	protected int threads = 1;
+	
+	protected String checkpoint = null;
+	protected int checkpointInterval = 100000;
+	
+	/**
+	 * Sets the number of threads loading the edges, 1 by default.
+	 * Implementations that load on a single thread ignore it.
+	 * 
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	/**
+	 * Sets the checkpoint file that records the progress of the load, so an
+	 * interrupted load resumes where it left off. No checkpoints by default.
+	 * Implementations that cannot resume a load ignore it.
+	 * 
+	 * @param checkpoint
+	 *            local checkpoint file
+	 * @param interval
+	 *            number of pages between checkpoints
+	 */
+	public void setCheckpoint(String checkpoint, int interval) {
+		this.checkpoint = checkpoint;
+		this.checkpointInterval = interval;
+	}
+	
 	public abstract void connect(String url, String username, String password);
 	
 	public abstract void close();
@@ -0,0 +1,82 @@
+package be.casisto.tinkering.wikipedia.graph;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Reads the sorted adjacency lists of the binary links index, written by the
+ * AdjacencyWritable of the indexer: the varint number of links, followed by
+ * the front coded links as the varint length of the prefix shared with the
+ * previous link, the varint length of the rest and the rest of the UTF-8
+ * bytes.
+ * 
+ * @author jiri
+ */
+public class AdjacencyList implements Writable {
+
+	private final List<String> links = new ArrayList<String>();
+
+	private byte[] buffer = new byte[256];
+
+	/**
+	 * Returns the links in the byte order of their titles.
+	 * 
+	 * @return
+	 */
+	public List<String> getLinks() {
+		return links;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, links.size());
+
+		byte[] previous = new byte[0];
+		for (String link : links) {
+			ByteBuffer encoded = Text.encode(link);
+			byte[] bytes = encoded.array();
+			int length = encoded.limit();
+
+			int prefix = 0;
+			int max = Math.min(length, previous.length);
+			while (prefix < max && bytes[prefix] == previous[prefix])
+				prefix++;
+
+			WritableUtils.writeVInt(out, prefix);
+			WritableUtils.writeVInt(out, length - prefix);
+			out.write(bytes, prefix, length - prefix);
+
+			previous = Arrays.copyOf(bytes, length);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		links.clear();
+
+		int size = WritableUtils.readVInt(in);
+		for (int i = 0; i < size; i++) {
+			int prefix = WritableUtils.readVInt(in);
+			int suffix = WritableUtils.readVInt(in);
+
+			// the previous link is still at the start of the buffer
+			int length = prefix + suffix;
+			if (length > buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2,
+						length));
+			in.readFully(buffer, prefix, suffix);
+
+			links.add(Text.decode(buffer, 0, length));
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package be.casisto.tinkering.wikipedia.graph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of a load, saved in a properties file so an interrupted load can
+ * resume where it left off. Per phase (vertices or edges) it records the index
+ * file, the number of pages of the index that are loaded, the number of
+ * vertices or edges they added and whether the phase is done. The progress of
+ * an index file other than the one recorded is ignored.
+ *
+ * The file is replaced atomically, a crash while saving leaves the previous
+ * checkpoint.
+ *
+ * @author jiri
+ */
+public class Checkpoint {
+
+	public static final String VERTICES = "vertices";
+	public static final String EDGES = "edges";
+
+	private final File file;
+	private final Properties properties = new Properties();
+
+	/**
+	 * Opens a checkpoint file, empty if it does not exist yet.
+	 *
+	 * @param file
+	 *            local checkpoint file
+	 * @return
+	 * @throws IOException
+	 */
+	public static Checkpoint open(String file) throws IOException {
+		Checkpoint checkpoint = new Checkpoint(new File(file));
+		if (checkpoint.file.exists()) {
+			try (InputStream in = new FileInputStream(checkpoint.file)) {
+				checkpoint.properties.load(in);
+			}
+		}
+		return checkpoint;
+	}
+
+	private Checkpoint(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns whether the checkpoint has progress of a phase for an index
+	 * file.
+	 *
+	 * @param phase
+	 * @param index
+	 *            index file of the phase
+	 * @return
+	 */
+	public boolean has(String phase, String index) {
+		return index.equals(properties.getProperty(phase + ".index"));
+	}
+
+	/**
+	 * Returns the number of pages loaded in a phase, 0 without progress.
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public long getPages(String phase) {
+		return Long.parseLong(properties.getProperty(phase + ".pages", "0"));
+	}
+
+	/**
+	 * Returns the number of vertices or edges added in a phase, 0 without
+	 * progress.
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public long getCount(String phase) {
+		return Long.parseLong(properties.getProperty(phase + ".count", "0"));
+	}
+
+	/**
+	 * Returns the number of writers of the edges phase, which partition the
+	 * edges; 0 without progress.
+	 *
+	 * @return
+	 */
+	public int getWriters() {
+		return Integer.parseInt(properties.getProperty(EDGES + ".writers",
+				"0"));
+	}
+
+	/**
+	 * Returns whether a phase is done.
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public boolean isDone(String phase) {
+		return Boolean.parseBoolean(properties.getProperty(phase + ".done"));
+	}
+
+	/**
+	 * Sets the number of writers of the edges phase.
+	 *
+	 * @param writers
+	 */
+	public synchronized void setWriters(int writers) {
+		properties.setProperty(EDGES + ".writers", Integer.toString(writers));
+	}
+
+	/**
+	 * Saves the progress of a phase.
+	 *
+	 * @param phase
+	 * @param index
+	 *            index file of the phase
+	 * @param pages
+	 *            number of pages of the index that are loaded
+	 * @param count
+	 *            number of vertices or edges they added
+	 * @param done
+	 *            whether all pages of the index are loaded
+	 * @throws IOException
+	 */
+	public synchronized void save(String phase, String index, long pages,
+			long count, boolean done) throws IOException {
+		properties.setProperty(phase + ".index", index);
+		properties.setProperty(phase + ".pages", Long.toString(pages));
+		properties.setProperty(phase + ".count", Long.toString(count));
+		properties.setProperty(phase + ".done", Boolean.toString(done));
+
+		File tmp = new File(file.getPath() + ".tmp");
+		try (OutputStream out = new FileOutputStream(tmp)) {
+			properties.store(out, "wikipedia-grapher checkpoint");
+		}
+		Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public String toString() {
+		return file.getPath();
+	}
+
+}
@@ -0,0 +1,674 @@
+package be.casisto.tinkering.wikipedia.graph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.orient.OrientGraph;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import com.tinkerpop.blueprints.impls.orient.OrientVertex;
+
+/**
+ * Loads the edges of a links index in a pipeline of stages on their own
+ * threads, with bounded queues in between, so reading the index file, parsing
+ * it and writing to the database overlap:
+ *
+ * - the reader reads and decompresses the index file, and queues the pages in
+ * batches of {@link #PAGE_BATCH};
+ * - the parser drops the duplicate links of every page and groups the
+ * (source, target) pairs in batches of {@link #EDGE_BATCH} edges, partitioned
+ * on the source page;
+ * - a writer per partition, each with its own graph connection, adds the
+ * edges of a batch in a single transaction.
+ *
+ * Two writers that add an edge to the same target page at once conflict on
+ * its vertex; the transaction that loses is rolled back and retried in two
+ * halves.
+ * Vertices for pages that are not in the pages index are created and
+ * committed under a lock on their title, so no page gets two vertices.
+ *
+ * The throughput of every stage and the depth of its input queue are logged
+ * every {@link #REPORT_SECONDS} seconds: the stage with a full input queue is
+ * the bottleneck.
+ *
+ * With a {@link Checkpoint}, the parser passes a mark down every writer queue
+ * at an interval of pages; once all writers reached it, the edges of the pages
+ * before it are committed and the mark is saved. An interrupted load resumes
+ * after the pages of the last checkpoint. A writer commits its partition in
+ * order, so the edges it committed after the checkpoint are the first edges
+ * of its partition after the resume: those are skipped up to the first edge
+ * that is not in the database yet, the partitions are kept by resuming with
+ * the same number of writers.
+ *
+ * @author jiri
+ */
+public class EdgePipeline {
+
+	private static Logger log = LoggerFactory.getLogger(EdgePipeline.class);
+
+	/**
+	 * Number of pages per batch of the reader.
+	 */
+	public static final int PAGE_BATCH = 1000;
+
+	/**
+	 * Maximum number of edges per batch of the parser, added in a single
+	 * transaction.
+	 */
+	public static final int EDGE_BATCH = 500;
+
+	/**
+	 * Maximum number of attempts of the transaction of a single edge.
+	 */
+	public static final int MAX_ATTEMPTS = 10;
+
+	/**
+	 * Interval of the stage reports.
+	 */
+	public static final int REPORT_SECONDS = 10;
+
+	/**
+	 * Maximum time to wait for the stages to stop after a failure.
+	 */
+	public static final int SHUTDOWN_SECONDS = 60;
+
+	private static final int QUEUE_SIZE = 64;
+
+	private static final List<Page> END_PAGES = new ArrayList<Page>();
+	private static final Edges END_EDGES = new Edges();
+
+	private final OrientGraphFactory factory;
+	private final String label;
+	private int writers;
+
+	private final Object[] locks = new Object[1024];
+
+	private volatile boolean failed = false;
+	private final AtomicLong retries = new AtomicLong();
+
+	private Checkpoint checkpoint = null;
+	private int interval;
+	private String index;
+	private boolean resumed = false;
+	private long resumedPages = 0;
+	private long resumedEdges = 0;
+	private long pagesLoaded = 0;
+
+	/**
+	 * A page of the links index with its links.
+	 */
+	private static class Page {
+
+		private final String title;
+		private final List<String> links;
+
+		private Page(String title, List<String> links) {
+			this.title = title;
+			this.links = links;
+		}
+
+	}
+
+	/**
+	 * A checkpoint mark, saved by the last writer that reaches it.
+	 */
+	private static class Mark {
+
+		private final long pages;
+		private final long edges;
+		private final AtomicInteger remaining;
+
+		private Mark(long pages, long edges, int writers) {
+			this.pages = pages;
+			this.edges = edges;
+			this.remaining = new AtomicInteger(writers);
+		}
+
+	}
+
+	/**
+	 * A batch of edges as (source, target) pairs, or a checkpoint mark.
+	 */
+	private static class Edges {
+
+		private final List<String> sources = new ArrayList<String>();
+		private final List<String> targets = new ArrayList<String>();
+		private final Mark mark;
+
+		private Edges() {
+			this(null);
+		}
+
+		private Edges(Mark mark) {
+			this.mark = mark;
+		}
+
+		private void add(String source, String target) {
+			sources.add(source);
+			targets.add(target);
+		}
+
+		private int size() {
+			return sources.size();
+		}
+
+	}
+
+	/**
+	 * A stage of the pipeline, with its input queue and the number of items
+	 * it processed.
+	 */
+	private abstract class Stage implements Callable<Long> {
+
+		private final String name;
+		private final String unit;
+		private final BlockingQueue<?> input;
+
+		protected final AtomicLong processed = new AtomicLong();
+		private long reported = 0;
+
+		private Stage(String name, String unit, BlockingQueue<?> input) {
+			this.name = name;
+			this.unit = unit;
+			this.input = input;
+		}
+
+		@Override
+		public Long call() throws Exception {
+			long start = System.currentTimeMillis();
+			run();
+
+			long millis = Math.max(1, System.currentTimeMillis() - start);
+			log.info("Stage {} done: {} {} in {} seconds, {} {}/s", name,
+					processed.get(), unit, millis / 1000, processed.get()
+							* 1000 / millis, unit);
+			return processed.get();
+		}
+
+		protected abstract void run() throws Exception;
+
+		/**
+		 * Logs the throughput of the stage since the previous report.
+		 */
+		private void report(long millis) {
+			long count = processed.get();
+			log.info("Stage {}: {} {}/s, input queue {}/{}", name,
+					(count - reported) * 1000 / millis, unit,
+					input == null ? 0 : input.size(), QUEUE_SIZE);
+			reported = count;
+		}
+
+	}
+
+	/**
+	 * Creates a new pipeline.
+	 *
+	 * @param factory
+	 *            factory for the graph connections of the writers
+	 * @param label
+	 *            label of the edges
+	 * @param writers
+	 *            number of writer threads
+	 */
+	public EdgePipeline(OrientGraphFactory factory, String label, int writers) {
+		this.factory = factory;
+		this.label = label;
+		this.writers = writers;
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new Object();
+	}
+
+	/**
+	 * Records the progress of the load in a checkpoint, and resumes from its
+	 * progress of the same links index.
+	 *
+	 * @param checkpoint
+	 * @param interval
+	 *            number of pages between checkpoints
+	 */
+	public void setCheckpoint(Checkpoint checkpoint, int interval) {
+		this.checkpoint = checkpoint;
+		this.interval = interval;
+	}
+
+	/**
+	 * Returns the number of transactions the writers retried after a conflict.
+	 *
+	 * @return
+	 */
+	public long getRetries() {
+		return retries.get();
+	}
+
+	/**
+	 * Loads the edges of a links index. Returns or fails once all stages have
+	 * stopped.
+	 *
+	 * @param file
+	 *            local links index file
+	 * @return the number of edges of the index, including the edges loaded
+	 *         before a checkpoint it resumed from
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public long load(String file) throws IOException, InterruptedException {
+		// fail early on a missing file
+		IndexReader.open(file).close();
+
+		index = file;
+		if (checkpoint != null && checkpoint.has(Checkpoint.EDGES, file)) {
+			if (checkpoint.isDone(Checkpoint.EDGES)) {
+				log.info("Edges of {} already loaded according to checkpoint {}",
+						file, checkpoint);
+				return checkpoint.getCount(Checkpoint.EDGES);
+			}
+
+			resumed = true;
+			resumedPages = checkpoint.getPages(Checkpoint.EDGES);
+			resumedEdges = checkpoint.getCount(Checkpoint.EDGES);
+			if (checkpoint.getWriters() != writers) {
+				log.warn("Resuming with the {} writers of checkpoint {}",
+						checkpoint.getWriters(), checkpoint);
+				writers = checkpoint.getWriters();
+			}
+			log.info("Resuming after page {} and edge {} of checkpoint {}",
+					resumedPages, resumedEdges, checkpoint);
+		} else if (checkpoint != null) {
+			// edges committed before the first mark are skipped on a resume
+			checkpoint.setWriters(writers);
+			checkpoint.save(Checkpoint.EDGES, file, 0, 0, false);
+		}
+
+		BlockingQueue<List<Page>> pages = new ArrayBlockingQueue<List<Page>>(
+				QUEUE_SIZE);
+		List<BlockingQueue<Edges>> edges = new ArrayList<BlockingQueue<Edges>>();
+		for (int i = 0; i < writers; i++)
+			edges.add(new ArrayBlockingQueue<Edges>(QUEUE_SIZE));
+
+		List<Stage> stages = new ArrayList<Stage>();
+		stages.add(new Reader(file, pages));
+		stages.add(new Parser(pages, edges));
+		List<Stage> writerStages = new ArrayList<Stage>();
+		for (int i = 0; i < writers; i++)
+			writerStages.add(new Writer(i, edges.get(i)));
+		stages.addAll(writerStages);
+
+		ExecutorService executor = Executors.newFixedThreadPool(stages.size());
+		ExecutorCompletionService<Long> completion = new ExecutorCompletionService<Long>(
+				executor);
+		List<Future<Long>> writes = new ArrayList<Future<Long>>();
+		for (Stage stage : stages) {
+			Future<Long> future = completion.submit(stage);
+			if (writerStages.contains(stage))
+				writes.add(future);
+		}
+
+		try {
+			// report the stages until they are all done
+			long last = System.currentTimeMillis();
+			for (int done = 0; done < stages.size();) {
+				Future<Long> future = completion.poll(REPORT_SECONDS,
+						TimeUnit.SECONDS);
+				if (future != null) {
+					future.get();
+					done++;
+				}
+
+				long now = System.currentTimeMillis();
+				if (now - last >= REPORT_SECONDS * 1000) {
+					for (Stage stage : stages)
+						stage.report(now - last);
+					last = now;
+				}
+			}
+
+			long total = resumedEdges;
+			for (Future<Long> write : writes)
+				total += write.get();
+
+			if (checkpoint != null)
+				checkpoint.save(Checkpoint.EDGES, file, pagesLoaded, total,
+						true);
+			return total;
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to load the edges", e.getCause());
+		} finally {
+			failed = true;
+			executor.shutdownNow();
+			// no writer may still be adding edges once the load failed
+			if (!executor.awaitTermination(SHUTDOWN_SECONDS, TimeUnit.SECONDS))
+				log.warn("Stages still running {} seconds after the load ended",
+						SHUTDOWN_SECONDS);
+		}
+	}
+
+	/**
+	 * Queues an item for the next stage, unless a stage failed.
+	 */
+	private <T> void put(BlockingQueue<T> queue, T item)
+			throws InterruptedException {
+		while (!queue.offer(item, 1, TimeUnit.SECONDS)) {
+			if (failed)
+				throw new InterruptedException("Pipeline failed");
+		}
+	}
+
+	/**
+	 * Takes an item from the previous stage, unless a stage failed.
+	 */
+	private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+		T item;
+		while ((item = queue.poll(1, TimeUnit.SECONDS)) == null) {
+			if (failed)
+				throw new InterruptedException("Pipeline failed");
+		}
+		return item;
+	}
+
+	/**
+	 * Stage that reads the pages of the index file.
+	 */
+	private class Reader extends Stage {
+
+		private final String file;
+		private final BlockingQueue<List<Page>> output;
+
+		private Reader(String file, BlockingQueue<List<Page>> output) {
+			super("read", "pages", null);
+			this.file = file;
+			this.output = output;
+		}
+
+		@Override
+		protected void run() throws Exception {
+			try (IndexReader reader = IndexReader.open(file)) {
+				// skip the pages loaded before the checkpoint
+				long skipped = 0;
+				while (skipped < resumedPages && reader.next())
+					skipped++;
+
+				List<Page> batch = new ArrayList<Page>(PAGE_BATCH);
+				while (reader.next()) {
+					batch.add(new Page(reader.getTitle(), new ArrayList<String>(
+							reader.getLinks())));
+					if (batch.size() == PAGE_BATCH) {
+						put(output, batch);
+						processed.addAndGet(batch.size());
+						batch = new ArrayList<Page>(PAGE_BATCH);
+					}
+				}
+				if (!batch.isEmpty())
+					put(output, batch);
+				processed.addAndGet(batch.size());
+			}
+			put(output, END_PAGES);
+		}
+
+	}
+
+	/**
+	 * Stage that turns the pages into batches of distinct edges per writer.
+	 */
+	private class Parser extends Stage {
+
+		private final BlockingQueue<List<Page>> input;
+		private final List<BlockingQueue<Edges>> outputs;
+
+		private Parser(BlockingQueue<List<Page>> input,
+				List<BlockingQueue<Edges>> outputs) {
+			super("parse", "edges", input);
+			this.input = input;
+			this.outputs = outputs;
+		}
+
+		@Override
+		protected void run() throws Exception {
+			Edges[] batches = new Edges[writers];
+			for (int i = 0; i < writers; i++)
+				batches[i] = new Edges();
+			Set<String> targets = new HashSet<String>();
+			long position = resumedPages;
+
+			List<Page> pages;
+			while ((pages = take(input)) != END_PAGES) {
+				for (Page page : pages) {
+					int writer = (page.title.hashCode() & Integer.MAX_VALUE)
+							% writers;
+					targets.clear();
+					for (String link : page.links) {
+						// a link listed twice on the line gets a single edge
+						if (!targets.add(link))
+							continue;
+
+						batches[writer].add(page.title, link);
+						if (batches[writer].size() == EDGE_BATCH) {
+							put(outputs.get(writer), batches[writer]);
+							processed.addAndGet(EDGE_BATCH);
+							batches[writer] = new Edges();
+						}
+					}
+
+					if (checkpoint != null && ++position % interval == 0) {
+						flush(batches);
+						Mark mark = new Mark(position, resumedEdges
+								+ processed.get(), writers);
+						for (BlockingQueue<Edges> output : outputs)
+							put(output, new Edges(mark));
+					}
+				}
+			}
+
+			flush(batches);
+			for (BlockingQueue<Edges> output : outputs)
+				put(output, END_EDGES);
+			pagesLoaded = position;
+		}
+
+		/**
+		 * Queues the partial batches of all writers.
+		 */
+		private void flush(Edges[] batches) throws InterruptedException {
+			for (int i = 0; i < writers; i++) {
+				if (batches[i].size() == 0)
+					continue;
+				put(outputs.get(i), batches[i]);
+				processed.addAndGet(batches[i].size());
+				batches[i] = new Edges();
+			}
+		}
+
+	}
+
+	/**
+	 * Stage that adds the edges of its partition to the database.
+	 */
+	private class Writer extends Stage {
+
+		private final BlockingQueue<Edges> input;
+
+		private final int id;
+
+		private OrientGraph graph;
+		private final Map<String, Vertex> vertices = new HashMap<String, Vertex>();
+		private long retries = 0;
+		private boolean resuming = resumed;
+		private long skipped = 0;
+
+		private Writer(int id, BlockingQueue<Edges> input) {
+			super("write-" + id, "edges", input);
+			this.id = id;
+			this.input = input;
+		}
+
+		@Override
+		protected void run() throws Exception {
+			graph = factory.getTx();
+			graph.declareIntent(new OIntentMassiveInsert());
+
+			try {
+				Edges batch;
+				while ((batch = take(input)) != END_EDGES) {
+					if (batch.mark != null) {
+						mark(batch.mark);
+						continue;
+					}
+
+					int from = resuming ? skipLoaded(batch) : 0;
+					if (from < batch.size())
+						addEdges(batch, from, batch.size());
+					processed.addAndGet(batch.size());
+				}
+			} finally {
+				graph.shutdown();
+			}
+
+			log.info("Writer {} retried {} transactions", id, retries);
+		}
+
+		/**
+		 * Adds the edges from index {@code from} to {@code to} of a batch in a
+		 * transaction. On a conflict with another writer, the two halves are
+		 * retried in transactions of their own, so a batch with a popular
+		 * target page does not conflict again and again as a whole. A single
+		 * edge is retried up to {@link #MAX_ATTEMPTS} times.
+		 */
+		private void addEdges(Edges batch, int from, int to) {
+			for (int attempt = 1;; attempt++) {
+				try {
+					// missing vertices are committed before the edges
+					vertices.clear();
+					for (int i = from; i < to; i++) {
+						getVertex(batch.sources.get(i));
+						getVertex(batch.targets.get(i));
+					}
+
+					for (int i = from; i < to; i++)
+						graph.addEdge(null, vertices.get(batch.sources.get(i)),
+								vertices.get(batch.targets.get(i)), label);
+					graph.commit();
+					return;
+				} catch (OConcurrentModificationException e) {
+					graph.rollback();
+					// reload the vertices that changed
+					graph.getRawGraph().getLocalCache().clear();
+					retries++;
+					EdgePipeline.this.retries.incrementAndGet();
+					if (to - from > 1) {
+						int middle = (from + to) >>> 1;
+						addEdges(batch, from, middle);
+						addEdges(batch, middle, to);
+						return;
+					}
+					if (attempt == MAX_ATTEMPTS)
+						throw e;
+				}
+			}
+		}
+
+		/**
+		 * Saves a checkpoint mark once all writers reached it: all edges
+		 * queued before it are committed.
+		 */
+		private void mark(Mark mark) {
+			if (mark.remaining.decrementAndGet() > 0)
+				return;
+
+			try {
+				checkpoint.save(Checkpoint.EDGES, index, mark.pages,
+						mark.edges, false);
+				log.info("Checkpoint at page {} and edge {}", mark.pages,
+						mark.edges);
+			} catch (IOException e) {
+				log.error("Unable to save checkpoint {}!", checkpoint, e);
+			}
+		}
+
+		/**
+		 * Returns the index of the first edge of a batch that is not in the
+		 * database yet, after a resume. The edges before it were committed
+		 * after the checkpoint by the interrupted load.
+		 */
+		private int skipLoaded(Edges batch) {
+			int i = 0;
+			while (i < batch.size()
+					&& hasEdge(batch.sources.get(i), batch.targets.get(i)))
+				i++;
+			skipped += i;
+
+			if (i < batch.size()) {
+				resuming = false;
+				log.info("Writer {} skipped {} edges loaded after the checkpoint",
+						id, skipped);
+			}
+			return i;
+		}
+
+		private boolean hasEdge(String source, String target) {
+			OrientVertex from = (OrientVertex) findVertex(source);
+			OrientVertex to = (OrientVertex) findVertex(target);
+			if (from == null || to == null)
+				return false;
+
+			// the labels are not matched along with a destination vertex
+			for (Edge edge : from.getEdges(to, Direction.OUT))
+				if (edge.getLabel().equals(label))
+					return true;
+			return false;
+		}
+
+		/**
+		 * Looks up the vertex of a page once per batch, created and committed
+		 * at once if it does not exist yet. Only called before the edges of a
+		 * transaction are added, so no edges are committed with it.
+		 */
+		private void getVertex(String title) {
+			if (vertices.containsKey(title))
+				return;
+
+			Vertex page = findVertex(title);
+			if (page == null) {
+				synchronized (locks[(title.hashCode() & Integer.MAX_VALUE)
+						% locks.length]) {
+					page = findVertex(title);
+					if (page == null) {
+						page = graph.addVertex(null, "title", title);
+						graph.commit();
+					}
+				}
+			}
+			vertices.put(title, page);
+		}
+
+		private Vertex findVertex(String title) {
+			Iterator<Vertex> pages = graph.getVertices("title", title)
+					.iterator();
+			return pages.hasNext() ? pages.next() : null;
+		}
+
+	}
+
+}
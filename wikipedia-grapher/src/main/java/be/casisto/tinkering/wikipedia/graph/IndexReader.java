@@ -0,0 +1,74 @@
+package be.casisto.tinkering.wikipedia.graph;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reader for the pages and links index files of the indexer. Both the text
+ * and the binary (sequence file) format are supported, the format is detected
+ * from the header of the file.
+ * 
+ * @author jiri
+ */
+public abstract class IndexReader implements Closeable {
+
+	private static final byte[] SEQUENCE_FILE_HEADER = { 'S', 'E', 'Q' };
+
+	/**
+	 * Opens an index file in the format it was written in.
+	 * 
+	 * @param file
+	 *            local index file
+	 * @return
+	 * @throws IOException
+	 */
+	public static IndexReader open(String file) throws IOException {
+		if (isSequenceFile(file))
+			return new SequenceFileIndexReader(file);
+		return new TextIndexReader(file);
+	}
+
+	/**
+	 * Advances to the next page of the index.
+	 * 
+	 * @return false at the end of the index
+	 * @throws IOException
+	 */
+	public abstract boolean next() throws IOException;
+
+	/**
+	 * Returns the title of the current page.
+	 * 
+	 * @return
+	 */
+	public abstract String getTitle();
+
+	/**
+	 * Returns the links of the current page, empty for the pages index.
+	 * 
+	 * @return
+	 */
+	public abstract List<String> getLinks();
+
+	private static boolean isSequenceFile(String file) throws IOException {
+		byte[] header = new byte[SEQUENCE_FILE_HEADER.length];
+		try (DataInputStream in = new DataInputStream(new FileInputStream(
+				new File(file)))) {
+			in.readFully(header);
+		} catch (EOFException e) {
+			return false;
+		}
+
+		for (int i = 0; i < header.length; i++) {
+			if (header[i] != SEQUENCE_FILE_HEADER[i])
+				return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,216 @@
+package be.casisto.tinkering.wikipedia.graph;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
+import com.tinkerpop.blueprints.impls.orient.OrientGraph;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
+import com.tinkerpop.blueprints.impls.orient.OrientVertex;
+
+/**
+ * Grapher implementation that bulk loads the index files into an empty
+ * OrientDB database. Unlike the OrientDBGrapher, it never looks up a vertex by
+ * its title in the database: the record ids of the vertices are kept in a
+ * {@link TitleRidMap} while loading the vertices, and the edges are created
+ * between vertices wrapped around those record ids. The vertices and edges are
+ * inserted in transactions of {@link #BATCH_SIZE} records, a single round
+ * trip per batch for a remote database.
+ *
+ * The links of the links index are distinct, so edges are not checked for
+ * duplicates. Loading the same index files twice creates every vertex and
+ * edge twice.
+ *
+ * Fastest with an embedded plocal database, served by an OrientDB server
+ * afterwards. An interrupted bulk load cannot resume, the record ids of the
+ * loaded vertices are lost: it starts over in an empty database.
+ *
+ * @author jiri
+ */
+public class OrientDBBulkGrapher extends AbstractGrapher {
+
+	private static Logger log = LoggerFactory
+			.getLogger(OrientDBBulkGrapher.class);
+
+	/**
+	 * Number of vertices or edges inserted per transaction. OrientDB saves the
+	 * new records of a transaction recursively along their links, larger
+	 * transactions of edges overflow the stack.
+	 */
+	public static final int BATCH_SIZE = 1000;
+
+	private static final String LABEL = "links to";
+
+	private OrientGraph graph = null;
+
+	private final TitleRidMap rids = new TitleRidMap(1 << 20);
+
+	private final Map<String, OrientVertex> pendingVertices = new HashMap<String, OrientVertex>();
+	private int pending = 0;
+
+	@Override
+	public void connect(String url, String username, String password) {
+
+		if (graph == null || graph.isClosed()) {
+
+			OrientGraphFactory factory = new OrientGraphFactory(url, username,
+					password);
+
+			// schema changes are not allowed in a transaction
+			OrientGraphNoTx schema = factory.getNoTx();
+			Set<String> keys = schema.getIndexedKeys(Vertex.class);
+			if (!keys.contains("title"))
+				schema.createKeyIndex("title", Vertex.class);
+			String edgeClass = OrientBaseGraph.encodeClassName(LABEL);
+			if (schema.getEdgeType(edgeClass) == null)
+				schema.createEdgeType(edgeClass);
+			schema.shutdown();
+
+			graph = factory.getTx();
+			graph.declareIntent(new OIntentMassiveInsert());
+
+		} else
+			log.warn("Dabatase connection to {} already open!", url);
+
+	}
+
+	@Override
+	public void close() {
+		if (graph != null && !graph.isClosed()) {
+			log.info("Closing database connection.");
+			graph.shutdown();
+			graph = null;
+		} else
+			log.warn("Database connection not open. Cannot close.");
+	}
+
+	@Override
+	public boolean loadVertices(String file) {
+
+		if (checkpoint != null)
+			log.warn("A bulk load cannot resume, ignoring checkpoint {}",
+					checkpoint);
+
+		try (IndexReader reader = IndexReader.open(file)) {
+
+			long count = 0;
+			while (reader.next()) {
+				String title = reader.getTitle();
+				if (rids.get(title) == null
+						&& !pendingVertices.containsKey(title))
+					addVertex(title);
+				if (pending >= BATCH_SIZE)
+					commit();
+
+				if (++count % 250000 == 0)
+					log.info("Processed {} page vertices", count);
+			}
+			commit();
+
+			log.info("Processed a total of {} page vertices", count);
+
+		} catch (FileNotFoundException e) {
+			log.error("Unable to open page index file at {}!", file);
+			return false;
+		} catch (IOException e) {
+			log.error("Unable to read line from page index file at {}!", file);
+			return false;
+		}
+
+		return true;
+
+	}
+
+	@Override
+	public boolean loadEdges(String file) {
+
+		try (IndexReader reader = IndexReader.open(file)) {
+
+			long count = 0;
+			while (reader.next()) {
+
+				Vertex source = getVertex(reader.getTitle());
+
+				for (String link : reader.getLinks()) {
+
+					graph.addEdge(null, source, getVertex(link), LABEL);
+					if (++pending >= BATCH_SIZE) {
+						commit();
+						// wrap the source again, a new vertex has a persistent record id now
+						source = getVertex(reader.getTitle());
+					}
+
+					if (++count % 250000 == 0)
+						log.info("Processed {} page edges", count);
+
+				}
+
+			}
+			commit();
+
+			log.info("Processed a total of {} page edges", count);
+
+		} catch (FileNotFoundException e) {
+			log.error("Unable to open link index file at {}!", file);
+			return false;
+		} catch (IOException e) {
+			log.error("Unable to read line from link index file at {}!", file);
+			return false;
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Returns the vertex of a page by its record id, without loading its
+	 * record: adding an edge loads it only to add the edge to its links. A
+	 * page that is not in the pages index gets a new vertex.
+	 */
+	private Vertex getVertex(String title) {
+		ORID rid = rids.get(title);
+		if (rid != null)
+			return new OrientVertex(graph, rid);
+
+		OrientVertex vertex = pendingVertices.get(title);
+		if (vertex != null)
+			return vertex;
+		return addVertex(title);
+	}
+
+	/**
+	 * Adds the vertex of a page. Its record id is temporary until the
+	 * transaction is committed.
+	 */
+	private OrientVertex addVertex(String title) {
+		OrientVertex vertex = graph.addVertex(null, "title", title);
+		pendingVertices.put(title, vertex);
+		pending++;
+		return vertex;
+	}
+
+	/**
+	 * Commits the pending vertices and edges, and maps the titles of the new
+	 * vertices to their persistent record ids.
+	 */
+	private void commit() {
+		graph.commit();
+
+		for (Map.Entry<String, OrientVertex> vertex : pendingVertices
+				.entrySet())
+			rids.put(vertex.getKey(), vertex.getValue().getIdentity());
+		pendingVertices.clear();
+		pending = 0;
+	}
+
+}
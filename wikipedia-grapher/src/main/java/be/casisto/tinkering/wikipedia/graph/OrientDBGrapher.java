@@ -1,21 +1,15 @@
 package be.casisto.tinkering.wikipedia.graph;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
-import com.tinkerpop.blueprints.Direction;
-import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
 import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
 import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
 
@@ -23,6 +17,9 @@ public class OrientDBGrapher extends AbstractGrapher {
 
 	private static Logger log = LoggerFactory.getLogger(OrientDBGrapher.class);
 
+	private static final String LABEL = "links to";
+
+	private OrientGraphFactory factory = null;
 	private OrientGraphNoTx graph = null;
 	
 	@Override
@@ -30,8 +27,7 @@ public class OrientDBGrapher extends AbstractGrapher {
 
 		if (graph == null || graph.isClosed()) {
 			
-			OrientGraphFactory factory = new OrientGraphFactory(url, username,
-					password);
+			factory = new OrientGraphFactory(url, username, password);
 			graph = factory.getNoTx();
 			
 			graph.declareIntent(new OIntentMassiveInsert());
@@ -40,6 +36,11 @@ public class OrientDBGrapher extends AbstractGrapher {
 			if (!keys.contains("title"))
 				graph.createKeyIndex("title", Vertex.class);
 			
+			// the parallel workers cannot change the schema in a transaction
+			String edgeClass = OrientBaseGraph.encodeClassName(LABEL);
+			if (graph.getEdgeType(edgeClass) == null)
+				graph.createEdgeType(edgeClass);
+			
 		} else
 			log.warn("Dabatase connection to {} already open!", url);
 
@@ -51,27 +52,56 @@ public class OrientDBGrapher extends AbstractGrapher {
 			log.info("Closing database connection.");
 			graph.shutdown();
 			graph = null;
+			factory.close();
+			factory = null;
 		} else
 			log.warn("Database connection not open. Cannot close.");
 	}
 
+	/**
+	 * Loads the vertices, resuming after the pages of the checkpoint. Every
+	 * vertex is committed at once, so the pages before a checkpoint are
+	 * loaded.
+	 */
 	@Override
 	public boolean loadVertices(String file) {
 		
+		Checkpoint progress;
+		long skip = 0;
 		try {
-			
-			BufferedReader br = getFileReader(file);
+			progress = openCheckpoint();
+		} catch (IOException e) {
+			log.error("Unable to read checkpoint file at {}!", checkpoint);
+			return false;
+		}
+		if (progress != null && progress.has(Checkpoint.VERTICES, file)) {
+			if (progress.isDone(Checkpoint.VERTICES)) {
+				log.info("Vertices of {} already loaded according to checkpoint {}",
+						file, progress);
+				return true;
+			}
+			skip = progress.getPages(Checkpoint.VERTICES);
+			log.info("Resuming after page {} of checkpoint {}", skip, progress);
+		}
+		
+		try (IndexReader reader = IndexReader.open(file)) {
 			
 			long count = 0;
-			String line = br.readLine();
-			while (line != null) {
-				getVertex(line.trim());
+			while (reader.next()) {
+				if (count < skip) {
+					count++;
+					continue;
+				}
+				
+				getVertex(reader.getTitle());
 				
 				if (++count % 25000 == 0)
 					log.info("Processed {} page vertices", count);
-				
-				line = br.readLine();
+				if (progress != null && count % checkpointInterval == 0)
+					saveCheckpoint(progress, file, count, false);
 			}
+			if (progress != null)
+				saveCheckpoint(progress, file, count, true);
 			
 			log.info("Processed a total of {} page vertices", count);
 			
@@ -88,43 +118,31 @@ public class OrientDBGrapher extends AbstractGrapher {
 		
 	}
 
+	/**
+	 * Loads the edges with an {@link EdgePipeline}, with a writer and its own
+	 * connection per thread, resuming from the checkpoint.
+	 */
 	@Override
 	public boolean loadEdges(String file) {
 		
+		log.info("Loading page edges with {} writers", threads);
 		try {
+			EdgePipeline pipeline = new EdgePipeline(factory, LABEL, threads);
+			Checkpoint progress = openCheckpoint();
+			if (progress != null)
+				pipeline.setCheckpoint(progress, checkpointInterval);
 			
-			BufferedReader br = getFileReader(file);
-			
-			long count = 0;
-			String line = br.readLine();
-			while (line != null) {
-				
-				String[] parts = line.split("\t");
-				
-				String title = parts[0];
-				String[] links = parts[1].split(",");
-				
-				for (String link: links) {
-					
-					createEdge(title, link, "links_to");
-					
-					if (++count % 25000 == 0)
-						log.info("Processed {} page edges", count);
-					
-				}
-				
-				line = br.readLine();
-				
-			}
-			
+			long count = pipeline.load(file);
 			log.info("Processed a total of {} page edges", count);
-			
-		}
-		catch(FileNotFoundException e) {
+		} catch (FileNotFoundException e) {
 			log.error("Unable to open link index file at {}!", file);
 			return false;
 		} catch (IOException e) {
-			log.error("Unable to read line from link index file at {}!", file);
+			log.error("Unable to load link index file at {}!", file, e);
+			return false;
+		} catch (InterruptedException e) {
+			log.error("Interrupted while loading link index file at {}!", file);
+			Thread.currentThread().interrupt();
 			return false;
 		}
 		
@@ -132,6 +150,19 @@ public class OrientDBGrapher extends AbstractGrapher {
 		
 	}
 	
+	private Checkpoint openCheckpoint() throws IOException {
+		return checkpoint == null ? null : Checkpoint.open(checkpoint);
+	}
+	
+	private void saveCheckpoint(Checkpoint progress, String file, long pages,
+			boolean done) {
+		try {
+			progress.save(Checkpoint.VERTICES, file, pages, pages, done);
+		} catch (IOException e) {
+			log.error("Unable to save checkpoint {}!", progress, e);
+		}
+	}
+	
 	private Vertex getVertex(String title) {
 		Iterable<Vertex> pages = graph.getVertices("title", title);
 		
@@ -145,38 +176,5 @@ public class OrientDBGrapher extends AbstractGrapher {
 
 		return page;
 	}
-	
-	private Edge createEdge(String source, String target, String label) {
-		
-		Vertex srcPage = getVertex(source);
-		Vertex tgtPage = getVertex(target);
-		
-		Edge link = null;
-		boolean found = false;
-		
-		Iterable<Edge> edges = srcPage.getEdges(Direction.OUT, "class:Link");
-		for (Edge edge : edges) {
-			Vertex vertex = edge.getVertex(Direction.OUT);
-			
-			String title = vertex.getProperty("title");
-			
-			if (title.equals(target)) {
-				found = true;
-				continue;
-			}
-		}
-		
-		if (!found)
-			link = graph.addEdge(null, srcPage, tgtPage, "links to");
-		
-		return link;
-	}
-	
-	private BufferedReader getFileReader(String file) throws FileNotFoundException {
-		InputStream in = new FileInputStream(new File(file));
-		BufferedReader br = new BufferedReader(new InputStreamReader(in));
-		
-		return br;
-	}
 
 }
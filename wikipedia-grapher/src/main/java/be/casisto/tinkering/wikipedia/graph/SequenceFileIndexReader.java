@@ -0,0 +1,73 @@
+package be.casisto.tinkering.wikipedia.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableName;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Reader for the binary index files: block compressed sequence files with the
+ * title as key and, for the links index, the adjacency list as value.
+ * 
+ * @author jiri
+ */
+public class SequenceFileIndexReader extends IndexReader {
+
+	static {
+		// the value class name stored in the binary links index files
+		WritableName.addName(AdjacencyList.class,
+				"be.casisto.tinkering.wikipedia.indexer.AdjacencyWritable");
+	}
+
+	private final SequenceFile.Reader reader;
+
+	private final Text key = new Text();
+	private final Writable value;
+
+	private String title;
+
+	public SequenceFileIndexReader(String file) throws IOException {
+		Configuration conf = new Configuration();
+		conf.set("fs.defaultFS", "file:///");
+
+		reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(new Path(
+				new File(file).getAbsolutePath())));
+		value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(),
+				conf);
+	}
+
+	@Override
+	public boolean next() throws IOException {
+		if (!reader.next(key, value))
+			return false;
+
+		title = key.toString();
+		return true;
+	}
+
+	@Override
+	public String getTitle() {
+		return title;
+	}
+
+	@Override
+	public List<String> getLinks() {
+		if (value instanceof AdjacencyList)
+			return ((AdjacencyList) value).getLinks();
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
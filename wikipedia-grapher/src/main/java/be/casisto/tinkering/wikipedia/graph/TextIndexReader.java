@@ -0,0 +1,88 @@
+package be.casisto.tinkering.wikipedia.graph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+
+/**
+ * Reader for the text index files, with a line per page: the title, a tab and
+ * the comma delimited links.
+ * 
+ * Compressed index files (.gz, .bz2, .lz4, .snappy, .deflate) are decompressed
+ * while reading, with the Hadoop codec matching the file extension. The lz4
+ * and snappy codecs need the native Hadoop library.
+ * 
+ * @author jiri
+ */
+public class TextIndexReader extends IndexReader {
+
+	private final BufferedReader br;
+
+	private String title;
+	private final List<String> links = new ArrayList<String>();
+
+	public TextIndexReader(String file) throws IOException {
+		InputStream in = new FileInputStream(new File(file));
+
+		CompressionCodec codec = new CompressionCodecFactory(
+				new Configuration()).getCodec(new Path(file));
+		if (codec != null)
+			in = codec.createInputStream(in);
+
+		br = new BufferedReader(new InputStreamReader(in,
+				StandardCharsets.UTF_8), 1 << 16);
+	}
+
+	@Override
+	public boolean next() throws IOException {
+		String line = br.readLine();
+		if (line == null)
+			return false;
+
+		links.clear();
+
+		int tab = line.indexOf('\t');
+		if (tab < 0) {
+			title = line.trim();
+			return true;
+		}
+
+		title = line.substring(0, tab);
+		int start = tab + 1;
+		while (start < line.length()) {
+			int end = line.indexOf(',', start);
+			if (end < 0)
+				end = line.length();
+			links.add(line.substring(start, end));
+			start = end + 1;
+		}
+		return true;
+	}
+
+	@Override
+	public String getTitle() {
+		return title;
+	}
+
+	@Override
+	public List<String> getLinks() {
+		return links;
+	}
+
+	@Override
+	public void close() throws IOException {
+		br.close();
+	}
+
+}
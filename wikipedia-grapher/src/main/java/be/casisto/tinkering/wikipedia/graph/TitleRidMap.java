@@ -0,0 +1,106 @@
+package be.casisto.tinkering.wikipedia.graph;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+
+/**
+ * Compact in-memory map of page titles to the record ids of their vertices.
+ * The record ids are packed in a long, the cluster id in the high 16 bits and
+ * the cluster position in the low 48 bits, in an open addressing table with
+ * linear probing. Without an entry and a boxed value per title, the map of
+ * all pages of the english wikipedia fits in a few gigabytes of heap.
+ *
+ * @author jiri
+ */
+public class TitleRidMap {
+
+	private static final float LOAD_FACTOR = 0.7f;
+
+	private String[] titles;
+	private long[] rids;
+	private int size = 0;
+
+	/**
+	 * Creates a new map.
+	 *
+	 * @param capacity
+	 *            expected number of titles
+	 */
+	public TitleRidMap(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(16,
+				(int) (capacity / LOAD_FACTOR)) - 1) << 1;
+		titles = new String[slots];
+		rids = new long[slots];
+	}
+
+	/**
+	 * Returns the record id of the vertex of a page.
+	 *
+	 * @param title
+	 * @return the record id or null
+	 */
+	public ORID get(String title) {
+		int slot = slot(titles, title);
+		if (titles[slot] == null)
+			return null;
+		long rid = rids[slot];
+		return new ORecordId((int) (rid >>> 48), rid & 0xffffffffffffL);
+	}
+
+	/**
+	 * Adds or replaces the record id of the vertex of a page.
+	 *
+	 * @param title
+	 * @param rid
+	 *            persistent record id
+	 */
+	public void put(String title, ORID rid) {
+		if (size + 1 > titles.length * LOAD_FACTOR)
+			grow();
+
+		int slot = slot(titles, title);
+		if (titles[slot] == null) {
+			titles[slot] = title;
+			size++;
+		}
+		rids[slot] = ((long) rid.getClusterId() << 48)
+				| rid.getClusterPosition();
+	}
+
+	/**
+	 * Returns the number of titles in the map.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the slot of a title, or the empty slot it belongs in.
+	 */
+	private static int slot(String[] titles, String title) {
+		int mask = titles.length - 1;
+		int h = title.hashCode() * 0x9e3779b9;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (titles[slot] != null && !titles[slot].equals(title))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow() {
+		String[] oldTitles = titles;
+		long[] oldRids = rids;
+		titles = new String[oldTitles.length << 1];
+		rids = new long[oldRids.length << 1];
+
+		for (int i = 0; i < oldTitles.length; i++) {
+			if (oldTitles[i] == null)
+				continue;
+			int slot = slot(titles, oldTitles[i]);
+			titles[slot] = oldTitles[i];
+			rids[slot] = oldRids[i];
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package be.casisto.tinkering.wikiwiki.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import be.casisto.tinkering.wikipedia.graph.Checkpoint;
+import be.casisto.tinkering.wikipedia.graph.EdgePipeline;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
+
+/**
+ * Unit test class for the {@link Checkpoint} and the resume of an edge load
+ * from it.
+ *
+ * @author jiri
+ */
+public class CheckpointTest {
+
+	private static final int PAGES = 3000;
+	private static final int MARK = 1000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSaveAndOpen() throws IOException {
+		File file = new File(folder.getRoot(), "checkpoint.properties");
+		Checkpoint checkpoint = Checkpoint.open(file.getPath());
+		assertFalse(file.exists());
+		assertFalse(checkpoint.has(Checkpoint.EDGES, "links.txt"));
+		assertEquals(0, checkpoint.getPages(Checkpoint.EDGES));
+		assertEquals(0, checkpoint.getCount(Checkpoint.EDGES));
+		assertEquals(0, checkpoint.getWriters());
+		assertFalse(checkpoint.isDone(Checkpoint.EDGES));
+
+		checkpoint.save(Checkpoint.VERTICES, "pages.txt", 1200, 1190, true);
+		checkpoint.setWriters(3);
+		checkpoint.save(Checkpoint.EDGES, "links.txt", 500, 4321, false);
+		assertEquals(Arrays.asList(file.getName()),
+				Arrays.asList(folder.getRoot().list()));
+
+		checkpoint = Checkpoint.open(file.getPath());
+		assertTrue(checkpoint.has(Checkpoint.VERTICES, "pages.txt"));
+		assertFalse(checkpoint.has(Checkpoint.VERTICES, "links.txt"));
+		assertEquals(1200, checkpoint.getPages(Checkpoint.VERTICES));
+		assertEquals(1190, checkpoint.getCount(Checkpoint.VERTICES));
+		assertTrue(checkpoint.isDone(Checkpoint.VERTICES));
+
+		assertTrue(checkpoint.has(Checkpoint.EDGES, "links.txt"));
+		assertFalse(checkpoint.has(Checkpoint.EDGES, "pages.txt"));
+		assertEquals(500, checkpoint.getPages(Checkpoint.EDGES));
+		assertEquals(4321, checkpoint.getCount(Checkpoint.EDGES));
+		assertFalse(checkpoint.isDone(Checkpoint.EDGES));
+		assertEquals(3, checkpoint.getWriters());
+
+		// a later save replaces the progress of the phase only
+		checkpoint.save(Checkpoint.EDGES, "links.txt", 900, 8000, true);
+		checkpoint = Checkpoint.open(file.getPath());
+		assertEquals(900, checkpoint.getPages(Checkpoint.EDGES));
+		assertEquals(8000, checkpoint.getCount(Checkpoint.EDGES));
+		assertTrue(checkpoint.isDone(Checkpoint.EDGES));
+		assertEquals(1200, checkpoint.getPages(Checkpoint.VERTICES));
+	}
+
+	@Test(timeout = 120000)
+	public void testSkipMarkedPages() throws Exception {
+		File file = folder.newFile("links.txt");
+		TestHelper.writeLinks(file, PAGES, 4);
+		Map<String, Set<String>> links = TestHelper.readLinks(file);
+		Map<String, Set<String>> marked = head(links, MARK);
+
+		Checkpoint checkpoint = checkpoint(file, 2,
+				TestHelper.countEdges(marked));
+		OrientGraphFactory factory = TestHelper.memoryGraph();
+		EdgePipeline pipeline = new EdgePipeline(factory, TestHelper.LABEL, 4);
+		pipeline.setCheckpoint(checkpoint, MARK);
+		assertEquals(TestHelper.countEdges(links),
+				pipeline.load(file.getPath()));
+
+		// the pages before the mark are not loaded again
+		Map<String, List<String>> expected = TestHelper.expectedEdges(links);
+		expected.keySet().removeAll(marked.keySet());
+		assertEquals(expected, TestHelper.readEdges(factory));
+
+		checkpoint = Checkpoint.open(checkpoint.toString());
+		assertTrue(checkpoint.isDone(Checkpoint.EDGES));
+		assertEquals(PAGES, checkpoint.getPages(Checkpoint.EDGES));
+		assertEquals(2, checkpoint.getWriters());
+
+		// a done load is not loaded again
+		pipeline = new EdgePipeline(factory, TestHelper.LABEL, 4);
+		pipeline.setCheckpoint(checkpoint, MARK);
+		assertEquals(TestHelper.countEdges(links),
+				pipeline.load(file.getPath()));
+		assertEquals(expected, TestHelper.readEdges(factory));
+		factory.close();
+	}
+
+	@Test(timeout = 120000)
+	public void testSkipCommittedEdges() throws Exception {
+		File file = folder.newFile("links.txt");
+		TestHelper.writeLinks(file, PAGES, 5);
+		Map<String, Set<String>> links = TestHelper.readLinks(file);
+		Map<String, Set<String>> marked = head(links, MARK);
+
+		// the edges of the interrupted load: the pages before the mark, one
+		// and a half batches of writer 0 and a full batch of writer 1 after
+		// it, the last half batch committed by a halved retry
+		List<String[]> edges = new ArrayList<String[]>();
+		List<List<String[]>> partitions = partitions(links, MARK, 2);
+		for (Map.Entry<String, Set<String>> page : marked.entrySet())
+			for (String target : page.getValue())
+				edges.add(new String[] { page.getKey(), target });
+		edges.addAll(partitions.get(0).subList(0,
+				EdgePipeline.EDGE_BATCH * 3 / 2));
+		edges.addAll(partitions.get(1).subList(0, EdgePipeline.EDGE_BATCH));
+
+		OrientGraphFactory factory = TestHelper.memoryGraph();
+		addEdges(factory, edges);
+		Checkpoint checkpoint = checkpoint(file, 2,
+				TestHelper.countEdges(marked));
+		// resumes with the partitions of the checkpoint
+		EdgePipeline pipeline = new EdgePipeline(factory, TestHelper.LABEL, 3);
+		pipeline.setCheckpoint(checkpoint, MARK);
+		assertEquals(TestHelper.countEdges(links),
+				pipeline.load(file.getPath()));
+		assertEquals(TestHelper.expectedEdges(links),
+				TestHelper.readEdges(factory));
+		factory.close();
+	}
+
+	@Test(timeout = 300000)
+	public void testResumeFailedLoad() throws Exception {
+		File file = folder.newFile("links.txt");
+		TestHelper.writeLinks(file, 20000, 6);
+		Map<String, Set<String>> links = TestHelper.readLinks(file);
+		List<String> lines = Files.readAllLines(file.toPath());
+
+		// a title longer than the maximum key of the title index fails the
+		// single writer after it committed the edges up to mark 12000 and
+		// some batches after it
+		char[] title = new char[OGlobalConfiguration.SBTREE_MAX_KEY_SIZE
+				.getValueAsInteger() + 1];
+		Arrays.fill(title, 'x');
+		List<String> failing = new ArrayList<String>(lines);
+		failing.set(12500, failing.get(12500) + "," + new String(title));
+		Files.write(file.toPath(), failing, StandardCharsets.UTF_8);
+
+		OrientGraphFactory factory = TestHelper.memoryGraph();
+		String path = new File(folder.getRoot(), "checkpoint.properties")
+				.getPath();
+		EdgePipeline pipeline = new EdgePipeline(factory, TestHelper.LABEL, 1);
+		pipeline.setCheckpoint(Checkpoint.open(path), MARK);
+		try {
+			pipeline.load(file.getPath());
+			fail("oversized title loaded");
+		} catch (IOException e) {
+			// interrupted after mark 12000
+		}
+		Checkpoint checkpoint = Checkpoint.open(path);
+		assertEquals(12 * MARK, checkpoint.getPages(Checkpoint.EDGES));
+		assertEquals(TestHelper.countEdges(head(links, 12 * MARK)),
+				checkpoint.getCount(Checkpoint.EDGES));
+		assertFalse(checkpoint.isDone(Checkpoint.EDGES));
+
+		Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+		pipeline = new EdgePipeline(factory, TestHelper.LABEL, 2);
+		pipeline.setCheckpoint(checkpoint, MARK);
+		assertEquals(TestHelper.countEdges(links),
+				pipeline.load(file.getPath()));
+		assertEquals(TestHelper.expectedEdges(links),
+				TestHelper.readEdges(factory));
+		checkpoint = Checkpoint.open(path);
+		assertTrue(checkpoint.isDone(Checkpoint.EDGES));
+		assertEquals(1, checkpoint.getWriters());
+		factory.close();
+	}
+
+	/**
+	 * Saves a checkpoint of the edges of a links index at {@link #MARK}.
+	 */
+	private Checkpoint checkpoint(File file, int writers, long edges)
+			throws IOException {
+		Checkpoint checkpoint = Checkpoint.open(new File(folder.getRoot(),
+				"checkpoint.properties").getPath());
+		checkpoint.setWriters(writers);
+		checkpoint.save(Checkpoint.EDGES, file.getPath(), MARK, edges, false);
+		return checkpoint;
+	}
+
+	/**
+	 * Returns the first pages of a links index.
+	 */
+	private static Map<String, Set<String>> head(
+			Map<String, Set<String>> links, int pages) {
+		Map<String, Set<String>> head = new LinkedHashMap<String, Set<String>>();
+		Iterator<Map.Entry<String, Set<String>>> page = links.entrySet()
+				.iterator();
+		while (head.size() < pages) {
+			Map.Entry<String, Set<String>> next = page.next();
+			head.put(next.getKey(), next.getValue());
+		}
+		return head;
+	}
+
+	/**
+	 * Returns the edges of the pages after a mark in the order the writers
+	 * of a pipeline add them, partitioned on the source page like the
+	 * pipeline does.
+	 */
+	private static List<List<String[]>> partitions(
+			Map<String, Set<String>> links, int mark, int writers) {
+		List<List<String[]>> partitions = new ArrayList<List<String[]>>();
+		for (int i = 0; i < writers; i++)
+			partitions.add(new ArrayList<String[]>());
+		int position = 0;
+		for (Map.Entry<String, Set<String>> page : links.entrySet()) {
+			if (position++ < mark)
+				continue;
+			int writer = (page.getKey().hashCode() & Integer.MAX_VALUE)
+					% writers;
+			for (String target : page.getValue())
+				partitions.get(writer).add(
+						new String[] { page.getKey(), target });
+		}
+		return partitions;
+	}
+
+	private static void addEdges(OrientGraphFactory factory,
+			List<String[]> edges) {
+		OrientGraphNoTx graph = factory.getNoTx();
+		try {
+			for (String[] edge : edges)
+				graph.addEdge(null, vertex(graph, edge[0]),
+						vertex(graph, edge[1]), TestHelper.LABEL);
+		} finally {
+			graph.shutdown();
+		}
+	}
+
+	private static Vertex vertex(OrientGraphNoTx graph, String title) {
+		Iterator<Vertex> vertices = graph.getVertices("title", title)
+				.iterator();
+		return vertices.hasNext() ? vertices.next() : graph.addVertex(null,
+				"title", title);
+	}
+
+}
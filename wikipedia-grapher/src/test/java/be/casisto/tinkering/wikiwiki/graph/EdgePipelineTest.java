@@ -0,0 +1,162 @@
+package be.casisto.tinkering.wikiwiki.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import be.casisto.tinkering.wikipedia.graph.EdgePipeline;
+
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+
+/**
+ * Unit test class for the {@link EdgePipeline}, against in-memory databases.
+ *
+ * @author jiri
+ */
+public class EdgePipelineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(timeout = 120000)
+	public void testLoad() throws Exception {
+		File file = folder.newFile("links.txt");
+		TestHelper.writeLinks(file, 3000, 1);
+		Map<String, Set<String>> links = TestHelper.readLinks(file);
+
+		OrientGraphFactory factory = TestHelper.memoryGraph();
+		EdgePipeline pipeline = new EdgePipeline(factory, TestHelper.LABEL, 4);
+		assertEquals(TestHelper.countEdges(links), pipeline.load(file.getPath()));
+		assertEquals(TestHelper.expectedEdges(links),
+				TestHelper.readEdges(factory));
+		factory.close();
+	}
+
+	@Test(timeout = 60000)
+	public void testEndOfInput() throws Exception {
+		// most writers get no edges at all, only the end of the input
+		File file = folder.newFile("links.txt");
+		Files.write(file.toPath(),
+				Arrays.asList("Page 1\tPage 2,Page 3", "Page 2\tPage 1"));
+		Map<String, Set<String>> links = TestHelper.readLinks(file);
+
+		OrientGraphFactory factory = TestHelper.memoryGraph();
+		EdgePipeline pipeline = new EdgePipeline(factory, TestHelper.LABEL, 6);
+		assertEquals(3, pipeline.load(file.getPath()));
+		assertEquals(TestHelper.expectedEdges(links),
+				TestHelper.readEdges(factory));
+
+		// an empty index
+		File empty = folder.newFile("empty.txt");
+		pipeline = new EdgePipeline(factory, TestHelper.LABEL, 3);
+		assertEquals(0, pipeline.load(empty.getPath()));
+		factory.close();
+		assertNoStages();
+	}
+
+	@Test(timeout = 300000)
+	public void testConflicts() throws Exception {
+		// every page links to the same few pages and the links of a vertex
+		// are kept in its record, so concurrent batches conflict
+		File file = folder.newFile("links.txt");
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			for (int i = 0; i < 2000; i++)
+				out.println("Page " + i + "\tHub 0,Hub 1,Hub 2,Page "
+						+ (i * 31 % 2000));
+		}
+		Map<String, Set<String>> links = TestHelper.readLinks(file);
+
+		OGlobalConfiguration threshold = OGlobalConfiguration.RID_BAG_EMBEDDED_TO_SBTREEBONSAI_THRESHOLD;
+		Object previous = threshold.getValue();
+		threshold.setValue(Integer.MAX_VALUE);
+		try {
+			OrientGraphFactory factory = TestHelper.memoryGraph();
+			EdgePipeline pipeline = new EdgePipeline(factory,
+					TestHelper.LABEL, 6);
+			assertEquals(TestHelper.countEdges(links),
+					pipeline.load(file.getPath()));
+			assertTrue("no conflicts", pipeline.getRetries() > 0);
+			// every edge exactly once, whatever halves were retried
+			assertEquals(TestHelper.expectedEdges(links),
+					TestHelper.readEdges(factory));
+			factory.close();
+		} finally {
+			threshold.setValue(previous);
+		}
+	}
+
+	@Test(timeout = 120000)
+	public void testReaderFailure() throws Exception {
+		File text = folder.newFile("links.txt");
+		TestHelper.writeLinks(text, 20000, 2);
+		byte[] compressed = TestHelper.gzip(Files.readAllBytes(text.toPath()));
+		File file = folder.newFile("links.txt.gz");
+		Files.write(file.toPath(),
+				Arrays.copyOf(compressed, compressed.length / 2));
+
+		OrientGraphFactory factory = TestHelper.memoryGraph();
+		EdgePipeline pipeline = new EdgePipeline(factory, TestHelper.LABEL, 3);
+		try {
+			pipeline.load(file.getPath());
+			fail("truncated index loaded");
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof EOFException);
+		}
+		assertNoStages();
+		factory.close();
+	}
+
+	@Test(timeout = 120000)
+	public void testWriterFailure() throws Exception {
+		// a title longer than the maximum key of the title index
+		char[] title = new char[OGlobalConfiguration.SBTREE_MAX_KEY_SIZE
+				.getValueAsInteger() + 1];
+		Arrays.fill(title, 'x');
+		File file = folder.newFile("links.txt");
+		TestHelper.writeLinks(file, 5000, 3);
+		Files.write(file.toPath(),
+				Arrays.asList("Page 5000\t" + new String(title)),
+				StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+		OrientGraphFactory factory = TestHelper.memoryGraph();
+		EdgePipeline pipeline = new EdgePipeline(factory, TestHelper.LABEL, 3);
+		try {
+			pipeline.load(file.getPath());
+			fail("oversized title loaded");
+		} catch (IOException e) {
+			assertNotNull(e.getCause());
+		}
+		assertNoStages();
+		factory.close();
+	}
+
+	/**
+	 * Asserts that no thread is running a stage of a pipeline.
+	 */
+	private static void assertNoStages() {
+		for (StackTraceElement[] stack : Thread.getAllStackTraces().values())
+			for (StackTraceElement frame : stack)
+				assertFalse("stage still running: " + frame, frame
+						.getClassName().startsWith(
+								EdgePipeline.class.getName() + "$"));
+	}
+
+}
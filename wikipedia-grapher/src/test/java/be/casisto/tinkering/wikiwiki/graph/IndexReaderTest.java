@@ -0,0 +1,106 @@
+package be.casisto.tinkering.wikiwiki.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.graph.AdjacencyList;
+import be.casisto.tinkering.wikipedia.graph.IndexReader;
+import be.casisto.tinkering.wikipedia.graph.SequenceFileIndexReader;
+
+/**
+ * Unit test class for the index readers. The binary index files in the test
+ * resources were written by the IndexerTool of the indexer, in the binary
+ * format, from its test archive.
+ *
+ * @author jiri
+ */
+public class IndexReaderTest {
+
+	private static final String[] LINKS = { "Page 1\tPage 2,Page 3",
+			"Page 2\tPage 1,Page 3,Page 5", "Page 3\tPage 4,Page 6",
+			"Page 5\tPage 6" };
+
+	private static final String[] PAGES = { "Page 1\t", "Page 2\t",
+			"Page 3\t", "Page 4\t", "Page 5\t", "Page 6\t" };
+
+	@Test
+	public void testBinaryLinks() throws IOException {
+		String file = "src/test/resources/links.seq";
+		try (IndexReader reader = IndexReader.open(file)) {
+			assertTrue(reader instanceof SequenceFileIndexReader);
+		}
+		assertEquals(Arrays.asList(LINKS), read(file));
+	}
+
+	@Test
+	public void testBinaryPages() throws IOException {
+		assertEquals(Arrays.asList(PAGES), read("src/test/resources/pages.seq"));
+	}
+
+	@Test
+	public void testText() throws IOException {
+		assertEquals(Arrays.asList("Page 1\tPage 3,Page 2",
+				"Page 2\tPage 5,Page 3,Page 1", "Page 3\tPage 6,Page 4",
+				"Page 5\tPage 6", "Page 6\t"),
+				read("src/test/resources/links.txt"));
+	}
+
+	@Test
+	public void testAdjacencyList() throws IOException {
+		// shared prefixes, a prefix of the previous link and multibyte
+		// characters on either side of the shared prefix
+		List<String> links = Arrays.asList("Page", "Page 1", "Page 10",
+				"Page 2", "Paris", "Z\u00fcrich", "Z\u00fcrichsee", "\u6771\u4eac",
+				"\u6771\u4eac\u90fd");
+
+		AdjacencyList list = new AdjacencyList();
+		list.getLinks().addAll(links);
+		DataOutputBuffer out = new DataOutputBuffer();
+		list.write(out);
+		list.write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		AdjacencyList read = new AdjacencyList();
+		read.readFields(in);
+		assertEquals(links, read.getLinks());
+		// a reused instance starts over
+		read.readFields(in);
+		assertEquals(links, read.getLinks());
+
+		read.getLinks().clear();
+		out.reset();
+		read.write(out);
+		in.reset(out.getData(), out.getLength());
+		read.readFields(in);
+		assertTrue(read.getLinks().isEmpty());
+	}
+
+	/**
+	 * Reads an index file as title, tab and comma delimited links lines.
+	 */
+	private List<String> read(String file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		try (IndexReader reader = IndexReader.open(file)) {
+			while (reader.next()) {
+				StringBuilder line = new StringBuilder(reader.getTitle())
+						.append('\t');
+				List<String> links = reader.getLinks();
+				for (int i = 0; i < links.size(); i++)
+					line.append(i == 0 ? "" : ",").append(links.get(i));
+				lines.add(line.toString());
+			}
+		}
+		return lines;
+	}
+
+}
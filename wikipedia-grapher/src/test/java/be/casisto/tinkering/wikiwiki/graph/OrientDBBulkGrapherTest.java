@@ -0,0 +1,83 @@
+package be.casisto.tinkering.wikiwiki.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import be.casisto.tinkering.wikipedia.graph.OrientDBBulkGrapher;
+
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
+
+/**
+ * Unit test class for the {@link OrientDBBulkGrapher}, against in-memory
+ * databases.
+ *
+ * @author jiri
+ */
+public class OrientDBBulkGrapherTest {
+
+	private static final int PAGES = 3000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(timeout = 120000)
+	public void testLoad() throws Exception {
+		File pages = folder.newFile("pages.txt");
+		try (PrintWriter out = new PrintWriter(pages, "UTF-8")) {
+			for (int i = 0; i < PAGES; i++)
+				out.println("Page " + i + "\t");
+		}
+		// the distinct links of the indexer, and a page that is not in the
+		// pages index with more links than a transaction, split across
+		// commits
+		File links = folder.newFile("links.txt");
+		TestHelper.writeLinks(links, PAGES, 8);
+		Map<String, Set<String>> expected = TestHelper.readLinks(links);
+		Set<String> hub = new LinkedHashSet<String>();
+		for (int i = 0; i < OrientDBBulkGrapher.BATCH_SIZE * 2; i++)
+			hub.add("Target " + i);
+		expected.put("Page " + PAGES, hub);
+		try (PrintWriter out = new PrintWriter(links, "UTF-8")) {
+			for (Map.Entry<String, Set<String>> page : expected.entrySet()) {
+				StringBuilder line = new StringBuilder(page.getKey());
+				for (String target : page.getValue())
+					line.append(line.length() == page.getKey().length() ? '\t'
+							: ',').append(target);
+				out.println(line);
+			}
+		}
+
+		String url = TestHelper.memoryUrl();
+		OrientDBBulkGrapher grapher = new OrientDBBulkGrapher();
+		grapher.connect(url, "admin", "admin");
+		assertTrue(grapher.loadVertices(pages.getPath()));
+		assertTrue(grapher.loadEdges(links.getPath()));
+
+		Set<String> titles = new HashSet<String>(expected.keySet());
+		for (Set<String> targets : expected.values())
+			titles.addAll(targets);
+
+		OrientGraphFactory factory = new OrientGraphFactory(url, "admin",
+				"admin");
+		OrientGraphNoTx graph = factory.getNoTx();
+		assertEquals(titles.size(), graph.countVertices());
+		graph.shutdown();
+		assertEquals(TestHelper.expectedEdges(expected),
+				TestHelper.readEdges(factory));
+		factory.close();
+		grapher.close();
+	}
+
+}
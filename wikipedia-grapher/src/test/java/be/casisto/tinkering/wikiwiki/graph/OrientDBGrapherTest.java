@@ -0,0 +1,70 @@
+package be.casisto.tinkering.wikiwiki.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import be.casisto.tinkering.wikipedia.graph.OrientDBGrapher;
+
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
+
+/**
+ * Unit test class for the {@link OrientDBGrapher}, against in-memory
+ * databases.
+ *
+ * @author jiri
+ */
+public class OrientDBGrapherTest {
+
+	private static final int PAGES = 3000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(timeout = 120000)
+	public void testThreads() throws Exception {
+		File pages = folder.newFile("pages.txt");
+		try (PrintWriter out = new PrintWriter(pages, "UTF-8")) {
+			for (int i = 0; i < PAGES; i++)
+				out.println("Page " + i + "\t");
+		}
+		File links = folder.newFile("links.txt");
+		TestHelper.writeLinks(links, PAGES, 7);
+		Map<String, Set<String>> expected = TestHelper.readLinks(links);
+
+		String url = TestHelper.memoryUrl();
+		OrientDBGrapher grapher = new OrientDBGrapher();
+		grapher.setThreads(4);
+		grapher.connect(url, "admin", "admin");
+		assertTrue(grapher.loadVertices(pages.getPath()));
+		assertTrue(grapher.loadEdges(links.getPath()));
+
+		// one vertex per title, also for the linked pages that are not in the
+		// pages index
+		Set<String> titles = new HashSet<String>(expected.keySet());
+		for (Set<String> targets : expected.values())
+			titles.addAll(targets);
+
+		OrientGraphFactory factory = new OrientGraphFactory(url, "admin",
+				"admin");
+		OrientGraphNoTx graph = factory.getNoTx();
+		assertEquals(titles.size(), graph.countVertices());
+		assertEquals(TestHelper.countEdges(expected), graph.countEdges());
+		graph.shutdown();
+		assertEquals(TestHelper.expectedEdges(expected),
+				TestHelper.readEdges(factory));
+		factory.close();
+		grapher.close();
+	}
+
+}
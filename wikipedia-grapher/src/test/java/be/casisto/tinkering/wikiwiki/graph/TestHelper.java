@@ -0,0 +1,191 @@
+package be.casisto.tinkering.wikiwiki.graph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
+import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
+
+/**
+ * Helper class for the unit tests in this project: in-memory OrientDB
+ * databases and generated links index files.
+ *
+ * @author jiri
+ */
+public class TestHelper {
+
+	public static final String LABEL = "links to";
+
+	private static final AtomicInteger databases = new AtomicInteger();
+
+	/**
+	 * Returns the url of a new in-memory database.
+	 *
+	 * @return
+	 */
+	public static String memoryUrl() {
+		return "memory:test-" + databases.incrementAndGet();
+	}
+
+	/**
+	 * Creates a new in-memory database with the title index and the edge
+	 * class of the graphers.
+	 *
+	 * @return
+	 */
+	public static OrientGraphFactory memoryGraph() {
+		OrientGraphFactory factory = new OrientGraphFactory(memoryUrl(),
+				"admin", "admin");
+		OrientGraphNoTx graph = factory.getNoTx();
+		graph.createKeyIndex("title", Vertex.class);
+		graph.createEdgeType(OrientBaseGraph.encodeClassName(LABEL));
+		graph.shutdown();
+		return factory;
+	}
+
+	/**
+	 * Writes a text links index with random links to the given pages and to
+	 * pages that are not in the index. Every page links to the first page, some
+	 * pages list a link twice.
+	 *
+	 * @param file
+	 * @param pages
+	 *            number of pages
+	 * @param seed
+	 * @throws IOException
+	 */
+	public static void writeLinks(File file, int pages, long seed)
+			throws IOException {
+		Random random = new Random(seed);
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			for (int i = 0; i < pages; i++) {
+				StringBuilder line = new StringBuilder("Page " + i).append(
+						"\tPage 0");
+				int links = random.nextInt(12);
+				for (int j = 0; j < links; j++)
+					line.append(",Page ").append(random.nextInt(pages + 20));
+				if (i % 7 == 0)
+					line.append(",Page 0");
+				out.println(line);
+			}
+		}
+	}
+
+	/**
+	 * Reads the distinct links of every page of a text links index, in the
+	 * order of the index.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static Map<String, Set<String>> readLinks(File file)
+			throws IOException {
+		Map<String, Set<String>> links = new LinkedHashMap<String, Set<String>>();
+		for (String line : Files.readAllLines(file.toPath())) {
+			String[] fields = line.split("\t");
+			Set<String> targets = new LinkedHashSet<String>();
+			if (fields.length > 1)
+				for (String target : fields[1].split(","))
+					targets.add(target);
+			links.put(fields[0], targets);
+		}
+		return links;
+	}
+
+	/**
+	 * Returns the targets of the edges of every page in the database, a
+	 * target twice for a duplicate edge.
+	 *
+	 * @param factory
+	 * @return
+	 */
+	public static Map<String, List<String>> readEdges(OrientGraphFactory factory) {
+		Map<String, List<String>> edges = new TreeMap<String, List<String>>();
+		OrientGraphNoTx graph = factory.getNoTx();
+		try {
+			for (Edge edge : graph.getEdges()) {
+				String source = edge.getVertex(Direction.OUT).getProperty(
+						"title");
+				if (!edges.containsKey(source))
+					edges.put(source, new ArrayList<String>());
+				edges.get(source).add(
+						(String) edge.getVertex(Direction.IN).getProperty(
+								"title"));
+			}
+		} finally {
+			graph.shutdown();
+		}
+		for (List<String> targets : edges.values())
+			Collections.sort(targets);
+		return edges;
+	}
+
+	/**
+	 * Returns the expected targets of the edges of every page with links,
+	 * sorted like {@link #readEdges(OrientGraphFactory)}.
+	 *
+	 * @param links
+	 * @return
+	 */
+	public static Map<String, List<String>> expectedEdges(
+			Map<String, Set<String>> links) {
+		Map<String, List<String>> edges = new TreeMap<String, List<String>>();
+		for (Map.Entry<String, Set<String>> page : links.entrySet()) {
+			if (page.getValue().isEmpty())
+				continue;
+			List<String> targets = new ArrayList<String>(page.getValue());
+			Collections.sort(targets);
+			edges.put(page.getKey(), targets);
+		}
+		return edges;
+	}
+
+	/**
+	 * Returns the number of edges of a links index.
+	 *
+	 * @param links
+	 * @return
+	 */
+	public static long countEdges(Map<String, Set<String>> links) {
+		long count = 0;
+		for (Set<String> targets : links.values())
+			count += targets.size();
+		return count;
+	}
+
+	/**
+	 * Compresses an index file in memory, to test the compressed indexes.
+	 *
+	 * @param data
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(data);
+		}
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,69 @@
+package be.casisto.tinkering.wikiwiki.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.graph.TitleRidMap;
+
+import com.orientechnologies.orient.core.id.ORecordId;
+
+/**
+ * Unit test class for the {@link TitleRidMap}.
+ *
+ * @author jiri
+ */
+public class TitleRidMapTest {
+
+	@Test
+	public void testGet() {
+		TitleRidMap map = new TitleRidMap(100);
+		assertNull(map.get("Page 1"));
+
+		map.put("Page 1", new ORecordId(9, 0));
+		map.put("Page 2", new ORecordId(9, 1));
+		// the largest cluster id and position that fit
+		map.put("Page 3", new ORecordId(Short.MAX_VALUE, (1L << 48) - 1));
+		assertEquals(new ORecordId(9, 0), map.get("Page 1"));
+		assertEquals(new ORecordId(9, 1), map.get("Page 2"));
+		assertEquals(new ORecordId(Short.MAX_VALUE, (1L << 48) - 1),
+				map.get("Page 3"));
+		assertNull(map.get("Page 4"));
+		assertNull(map.get(""));
+		assertEquals(3, map.size());
+
+		map.put("Page 1", new ORecordId(10, 5));
+		assertEquals(new ORecordId(10, 5), map.get("Page 1"));
+		assertEquals(3, map.size());
+	}
+
+	@Test
+	public void testCollisions() {
+		// "Aa" and "BB" have the same hash code, so have all their
+		// concatenations
+		String[] titles = { "AaAaAa", "AaAaBB", "AaBBAa", "AaBBBB", "BBAaAa",
+				"BBAaBB", "BBBBAa", "BBBBBB" };
+		TitleRidMap map = new TitleRidMap(16);
+		for (int i = 0; i < titles.length; i++)
+			map.put(titles[i], new ORecordId(9, i));
+		for (int i = 0; i < titles.length; i++)
+			assertEquals(new ORecordId(9, i), map.get(titles[i]));
+		assertNull(map.get("AaAaAaAa"));
+		assertEquals(titles.length, map.size());
+	}
+
+	@Test
+	public void testGrow() {
+		// many times the expected number of titles
+		TitleRidMap map = new TitleRidMap(10);
+		for (int i = 0; i < 100000; i++)
+			map.put("Page " + i, new ORecordId(9 + i % 3, i));
+		assertEquals(100000, map.size());
+		for (int i = 0; i < 100000; i++)
+			assertEquals(new ORecordId(9 + i % 3, i), map.get("Page " + i));
+		for (int i = 100000; i < 101000; i++)
+			assertNull(map.get("Page " + i));
+	}
+
+}
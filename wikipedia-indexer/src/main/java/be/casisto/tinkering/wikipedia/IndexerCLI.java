@@ -1,7 +1,18 @@
 package be.casisto.tinkering.wikipedia;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
@@ -10,12 +21,23 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.ToolRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import be.casisto.tinkering.wikipedia.indexer.WikipediaInputFormat;
+import be.casisto.tinkering.wikipedia.local.LocalIndexer;
+
 /**
  * Command-line interface implementation for the Wikipedia indexer tool.
  * 
@@ -26,6 +48,8 @@ public class IndexerCLI {
 	private static final Logger log = LoggerFactory
 			.getLogger(IndexerTool.class);
 
+	private static final int DOWNLOAD_THREADS = 8;
+
 	private String[] args = null;
 	private Options options = new Options();
 
@@ -33,22 +57,74 @@ public class IndexerCLI {
 	private FileSystem fs = null;
 
 	private String inputFile;
+	private String indexFile;
 	private String outputDir;
 
 	private boolean cleanup = false;
+	private boolean binary = false;
+	private boolean redirects = false;
+	private boolean redLinks = false;
+	private boolean ids = false;
+	private boolean backlinks = false;
+	private boolean degrees = false;
+	private String order;
+	private boolean local = false;
+	private int reducers = 1;
+	private boolean sorted = false;
+	private String update;
+	private String deletedFile;
+	private String codec;
+	private String mapCodec;
 
 	/**
 	 * Main method for the IndexerCLI.
 	 * 
+	 * -a,--backlinks Write the backlinks index, with the pages that link to
+	 * every page, and the in-degree index.
+	 * -b,--binary Write the index files as block compressed sequence files
+	 * instead of text.
 	 * -c,--cleanup Cleanup HDFS after run by deleting the input, pages and
 	 * links files for this iteration. 
+	 * -d,--deleted <arg> File with the titles of the pages deleted since the
+	 * updated iteration, one per line.
+	 * -e,--existing Drop links to pages that do not exist in the archive (red
+	 * links).
 	 * -f,--hdfs <arg> Hadoop file system url.
 	 * Default is local hdfs with default port (hdfs://localhost:9000).
+	 * -g,--degrees Write the out-degree and in-degree of every page in the
+	 * pages index.
 	 * -h,--help Show this. 
-	 * -i,--input <arg> The unzipped wikipedia xml to index. 
-	 * -o,--output <arg> The output destination for the index files
+	 * -i,--input <arg> The wikipedia xml or bzip2 compressed (multistream)
+	 * archive to index.
+	 * -x,--index <arg> The multistream index file of a bzip2 compressed
+	 * archive. Used to split the archive on bzip2 stream boundaries.
+	 * -k,--shuffle <arg> Compression codec of the intermediate map output and
+	 * job files: gzip, bzip2, lz4, snappy or a codec class. Not compressed by
+	 * default.
+	 * -l,--local Index the archive in this JVM on all cores, without Hadoop
+	 * jobs or HDFS. Writes the text links and pages index files only.
+	 * -m,--reducers <arg> Number of reduce tasks of the indexing jobs. Default
+	 * is 1.
+	 * -n,--ids Assign contiguous ids to the pages and write the links index
+	 * with ids as graph index.
+	 * -o,--output <arg> The output destination for the index files, the run
+	 * state and the JSON run report.
+	 * -p,--namespaces <arg> Comma separated ids of the namespaces to index.
+	 * Default is 0, the articles.
+	 * -r,--redirects Rewrite links to redirect pages to the target of the
+	 * redirect and leave the redirect pages out of the index.
+	 * -s,--sorted Partition the index files on sampled title ranges, so the
+	 * downloaded index files are sorted by title.
 	 * -t,--tracker <arg> Hadoop job tracker url. Default is local hadoop with
 	 * default port (localhost:9010).
+	 * -u,--update <arg> Update the links index of a previous iteration, still
+	 * on HDFS, with the pages of an incremental (adds-changes) dump given as
+	 * input.
+	 * -v,--order <arg> Order of the page ids: title or degree, the pages with
+	 * the most links first. Default is title.
+	 * -z,--compress <arg> Compression codec of the index files: gzip, bzip2,
+	 * lz4, snappy or a codec class. Text index files are not compressed by
+	 * default, binary index files with the default codec.
 	 *
 	 * @param args
 	 *            command-line arguments
@@ -68,10 +144,17 @@ public class IndexerCLI {
 	public IndexerCLI(String[] args) {
 		this.args = args;
 
-		options.addOption("i", "input", true, "The wikipedia archive to index.");
+		options.addOption("i", "input", true,
+				"The wikipedia xml or bzip2 compressed (multistream) archive to index.");
+
+		options.addOption(
+				"x",
+				"index",
+				true,
+				"The multistream index file of a bzip2 compressed archive. Used to split the archive on bzip2 stream boundaries.");
 
 		options.addOption("o", "output", true,
-				"The output destination for the index files");
+				"The output destination for the index files, the run state and the JSON run report.");
 
 		options.addOption(
 				"c",
@@ -79,6 +162,60 @@ public class IndexerCLI {
 				false,
 				"Cleanup HDFS after run by deleting the input, pages and links files for this iteration.");
 
+		options.addOption("b", "binary", false,
+				"Write the index files as block compressed sequence files instead of text.");
+
+		options.addOption("l", "local", false,
+				"Index the archive in this JVM on all cores, without Hadoop jobs or HDFS. Writes the text links and pages index files only.");
+
+		options.addOption("n", "ids", false,
+				"Assign contiguous ids to the pages and write the links index with ids as graph index.");
+
+		options.addOption("a", "backlinks", false,
+				"Write the backlinks index, with the pages that link to every page, and the in-degree index.");
+
+		options.addOption("g", "degrees", false,
+				"Write the out-degree and in-degree of every page in the pages index.");
+
+		options.addOption("v", "order", true,
+				"Order of the page ids: title or degree, the pages with the most links first. Default is title.");
+
+		options.addOption("p", "namespaces", true,
+				"Comma separated ids of the namespaces to index. Default is 0, the articles.");
+
+		options.addOption("r", "redirects", false,
+				"Rewrite links to redirect pages to the target of the redirect and leave the redirect pages out of the index.");
+
+		options.addOption("e", "existing", false,
+				"Drop links to pages that do not exist in the archive (red links).");
+
+		options.addOption(
+				"z",
+				"compress",
+				true,
+				"Compression codec of the index files: gzip, bzip2, lz4, snappy or a codec class. Text index files are not compressed by default, binary index files with the default codec.");
+
+		options.addOption(
+				"k",
+				"shuffle",
+				true,
+				"Compression codec of the intermediate map output and job files: gzip, bzip2, lz4, snappy or a codec class. Not compressed by default.");
+
+		options.addOption("m", "reducers", true,
+				"Number of reduce tasks of the indexing jobs. Default is 1.");
+
+		options.addOption("s", "sorted", false,
+				"Partition the index files on sampled title ranges, so the downloaded index files are sorted by title.");
+
+		options.addOption(
+				"u",
+				"update",
+				true,
+				"Update the links index of a previous iteration, still on HDFS, with the pages of an incremental (adds-changes) dump given as input.");
+
+		options.addOption("d", "deleted", true,
+				"File with the titles of the pages deleted since the updated iteration, one per line.");
+
 		options.addOption(
 				"t",
 				"tracker",
@@ -115,6 +252,9 @@ public class IndexerCLI {
 				help();
 			}
 
+			if (cmd.hasOption("x"))
+				indexFile = cmd.getOptionValue("x");
+
 			if (cmd.hasOption("o"))
 				outputDir = cmd.getOptionValue("o");
 			else {
@@ -125,6 +265,52 @@ public class IndexerCLI {
 			if (cmd.hasOption("c"))
 				cleanup = true;
 
+			if (cmd.hasOption("b"))
+				binary = true;
+
+			if (cmd.hasOption("r"))
+				redirects = true;
+
+			if (cmd.hasOption("n"))
+				ids = true;
+
+			if (cmd.hasOption("a"))
+				backlinks = true;
+
+			if (cmd.hasOption("g"))
+				degrees = true;
+
+			if (cmd.hasOption("v"))
+				order = cmd.getOptionValue("v");
+
+			if (cmd.hasOption("e"))
+				redLinks = true;
+
+			if (cmd.hasOption("l"))
+				local = true;
+
+			if (cmd.hasOption("z"))
+				codec = cmd.getOptionValue("z");
+
+			if (cmd.hasOption("k"))
+				mapCodec = cmd.getOptionValue("k");
+
+			if (cmd.hasOption("m"))
+				reducers = getCount(cmd, "m");
+
+			if (cmd.hasOption("s"))
+				sorted = true;
+
+			if (cmd.hasOption("p"))
+				config.set(WikipediaInputFormat.NAMESPACES,
+						cmd.getOptionValue("p"));
+
+			if (cmd.hasOption("u"))
+				update = cmd.getOptionValue("u");
+
+			if (cmd.hasOption("d"))
+				deletedFile = cmd.getOptionValue("d");
+
 			if (cmd.hasOption("t"))
 				config.set("mapred.job.tracker", cmd.getOptionValue("t"));
 			else
@@ -141,65 +327,216 @@ public class IndexerCLI {
 		}
 	}
 
+	/**
+	 * Returns the value of an option that is a count, at least 1.
+	 */
+	private int getCount(CommandLine cmd, String option) {
+		int count = 0;
+		try {
+			count = Integer.parseInt(cmd.getOptionValue(option));
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		if (count < 1) {
+			log.error("The {} option needs to be a number of at least 1, not {}!",
+					options.getOption(option).getLongOpt(),
+					cmd.getOptionValue(option));
+			help();
+		}
+		return count;
+	}
+
 	/**
 	 * Run the wikipedia indexing jobs for pages and links on Hadoop.
+	 * 
+	 * The iteration is named after the checksum of the archive and the
+	 * options, and its completed phases are recorded in a state file in the
+	 * output directory. A rerun of a failed iteration skips the upload of an
+	 * archive that is already in HDFS, the completed phases and, within the
+	 * indexer, the jobs with complete output.
 	 */
 	private void run() {
 
 		long prev = System.currentTimeMillis();
 		long time = prev;
-		
-		String iteration = Long.toString(time);
-		String input = "wiki/input/input-" + iteration + ".txt";
+
+		String checksum;
+		try {
+			log.info("Computing the checksum of {}", inputFile);
+			checksum = RunState.checksum(new File(inputFile));
+		} catch (IOException e) {
+			log.error("Failed to read the wikipedia archive.", e);
+			return;
+		}
+		String iteration = getIteration(checksum);
+		RunReport report = new RunReport(iteration);
+
+		if (local) {
+			runLocal(iteration, report);
+			return;
+		}
+
+		String input = "wiki/input/input-" + checksum.substring(0, 12)
+				+ "/input" + getExtension(inputFile);
 		String links = "wiki/links/links-index-" + iteration;
 		String pages = "wiki/pages/pages-index-" + iteration;
+		String idsIndex = "wiki/ids/ids-index-" + iteration;
+		String graph = "wiki/graph/graph-index-" + iteration;
+		String backlinksIndex = "wiki/backlinks/backlinks-index-" + iteration;
+		String inDegrees = "wiki/indegrees/indegree-index-" + iteration;
+		String deleted = "wiki/deleted/deleted-" + iteration + ".txt";
 
 		try {
-			log.info("Starting the wikipedia indexer.");
+			log.info("Starting the wikipedia indexer, iteration {}.",
+					iteration);
+
+			new File(outputDir).mkdirs();
+			RunState state = new RunState(new File(outputDir, "run-"
+					+ iteration + ".properties"));
+			state.set("input.file", new File(inputFile).getAbsolutePath());
+			state.set("input.checksum", checksum);
 
-			log.info("Uploading wikipedia archive from {} to HDFS", inputFile);
 			fs = FileSystem.get(config);
-			this.upload(inputFile, input);
-
-			time = System.currentTimeMillis();
-			log.info("Uploaded archive in {} seconds", (time - prev) / 1000);
-			prev = time;
-			
-			log.info("Running the indexer");
-			config.set("wiki.indexer.input",
-					input.substring(0, input.lastIndexOf("/")));
-			config.set("wiki.indexer.links", links);
-			config.set("wiki.indexer.pages", pages);
-			int res = ToolRunner.run(config, new IndexerTool(), args);
-
-			time = System.currentTimeMillis();
-			log.info("Hadoop jobs finished in {} seconds", (time - prev) / 1000);
-			prev = time;
-			
-			if (res == 0)
+			if (state.isDone("index"))
+				log.info("Skipping upload, the index files of iteration {} are complete",
+						iteration);
+			else if (state.isDone("upload") && fs.exists(new Path(input)))
+				log.info("Skipping upload, the archive of iteration {} is in HDFS at {}",
+						iteration, input);
+			else {
+				if (isUploaded(inputFile, input))
+					log.info("Skipping upload, the archive is already in HDFS at {}",
+							input);
+				else {
+					log.info("Uploading wikipedia archive from {} to HDFS",
+							inputFile);
+					this.upload(inputFile, input);
+				}
+				if (update != null && deletedFile != null)
+					this.upload(deletedFile, deleted);
+				state.setDone("upload");
+
+				time = System.currentTimeMillis();
+				log.info("Uploaded archive in {} seconds", (time - prev) / 1000);
+				report.addPhase("upload", time - prev);
+				prev = time;
+			}
+
+			if (state.isDone("index"))
+				log.info("Skipping the indexer, the index files of iteration {} are complete",
+						iteration);
+			else {
+				log.info("Running the indexer");
+				config.set("wiki.indexer.input",
+						input.substring(0, input.lastIndexOf("/")));
+				if (indexFile != null)
+					config.set(WikipediaInputFormat.INDEX, new File(
+							indexFile).toURI().toString());
+				config.set("wiki.indexer.links", links);
+				config.set("wiki.indexer.pages", pages);
+				config.set(IndexerTool.FORMAT,
+						binary ? IndexerTool.FORMAT_BINARY
+								: IndexerTool.FORMAT_TEXT);
+				config.setBoolean(IndexerTool.REDIRECTS, redirects);
+				config.setBoolean(IndexerTool.RED_LINKS, redLinks);
+				config.setInt(IndexerTool.REDUCERS, reducers);
+				config.setBoolean(IndexerTool.TOTAL_ORDER, sorted);
+				if (codec != null)
+					config.set(IndexerTool.CODEC, codec);
+				if (mapCodec != null)
+					config.set(IndexerTool.MAP_CODEC, mapCodec);
+				if (update != null) {
+					config.set(IndexerTool.INCREMENTAL,
+							"wiki/links/links-index-" + update);
+					if (deletedFile != null)
+						config.set(IndexerTool.DELETED, deleted);
+				}
+				config.setBoolean(IndexerTool.DEGREES, degrees);
+				if (order != null)
+					config.set(IndexerTool.ORDER, order);
+				if (backlinks) {
+					config.set(IndexerTool.BACKLINKS, backlinksIndex);
+					config.set(IndexerTool.IN_DEGREES, inDegrees);
+				}
+				if (ids) {
+					config.set(IndexerTool.IDS, idsIndex);
+					config.set(IndexerTool.GRAPH, graph);
+				}
+				int res = ToolRunner.run(config, new IndexerTool(report),
+						args);
+
+				time = System.currentTimeMillis();
+				log.info("Hadoop jobs finished in {} seconds",
+						(time - prev) / 1000);
+				report.addPhase("index", time - prev);
+				prev = time;
+
+				if (res != 0) {
+					log.error(
+							"Indexer jobs exited with status code {}, rerun to resume iteration {}",
+							res, iteration);
+					writeReport(report, iteration);
+					return;
+				}
 				log.info("Indexer jobs finished successfully");
-			else
-				log.error("Indexer jobs exited with status code {}", res);
-
-			log.info("Downloading index files from HDFS to {}", new File(
-					outputDir).getAbsolutePath());
-			this.download(pages + "/part-r-00000", outputDir + "/pages-index-"
-					+ iteration + ".txt");
-			this.download(links + "/part-r-00000", outputDir + "/links-index-"
-					+ iteration + ".txt");
-
-			time = System.currentTimeMillis();
-			log.info("Download of index files finished in {} seconds", (time - prev) / 1000);
-			prev = time;
-			
-			if (cleanup) {
+				state.setDone("index");
+			}
+
+			if (state.isDone("download"))
+				log.info("Skipping download, the index files are in {}",
+						outputDir);
+			else {
+				log.info("Downloading index files from HDFS to {}", new File(
+						outputDir).getAbsolutePath());
+				String extension = getIndexExtension();
+				this.downloadIndex(pages, outputDir + "/pages-index-"
+						+ iteration + extension);
+				this.downloadIndex(links, outputDir + "/links-index-"
+						+ iteration + extension);
+				if (backlinks) {
+					this.downloadIndex(backlinksIndex, outputDir
+							+ "/backlinks-index-" + iteration + extension);
+					this.downloadIndex(inDegrees, outputDir
+							+ "/indegree-index-" + iteration + extension);
+				}
+				if (ids) {
+					this.downloadIndex(idsIndex, outputDir + "/ids-index-"
+							+ iteration + extension);
+					this.downloadIndex(graph, outputDir + "/graph-index-"
+							+ iteration + extension);
+				}
+				state.setDone("download");
+
+				time = System.currentTimeMillis();
+				log.info("Download of index files finished in {} seconds",
+						(time - prev) / 1000);
+				report.addPhase("download", time - prev);
+				prev = time;
+			}
+
+			if (cleanup && state.isDone("cleanup"))
+				log.info("Skipping cleanup, the HDFS files of iteration {} are deleted",
+						iteration);
+			else if (cleanup) {
 				log.info("Cleanup required. Deleting input, pages and links files from HDFS.");
-				this.delete(input, false);
+				this.delete(input.substring(0, input.lastIndexOf("/")), true);
+				if (update != null && deletedFile != null)
+					this.delete(deleted, false);
 				this.delete(pages, true);
 				this.delete(links, true);
-				
+				if (backlinks) {
+					this.delete(backlinksIndex, true);
+					this.delete(inDegrees, true);
+				}
+				if (ids) {
+					this.delete(idsIndex, true);
+					this.delete(graph, true);
+				}
+				state.setDone("cleanup");
+
 				time = System.currentTimeMillis();
 				log.info("Cleanup finished in {} seconds", (time - prev) / 1000);
+				report.addPhase("cleanup", time - prev);
 				prev = time;
 			}
 
@@ -207,10 +544,142 @@ public class IndexerCLI {
 			log.error("Wikipedia indexer exited with an exception.", e);
 		}
 
+		writeReport(report, iteration);
 		log.info("Wikipedia indexer finished.");
 
 	}
 
+	/**
+	 * Returns the name of the iteration for an input and the options that
+	 * change the index files, so a rerun with the same input and options
+	 * resumes the same iteration.
+	 * 
+	 * @param checksum
+	 *            checksum of the input
+	 * @return
+	 */
+	private String getIteration(String checksum) {
+		String settings = binary + "," + redirects + "," + redLinks + ","
+				+ ids + "," + backlinks + "," + degrees + "," + order + ","
+				+ reducers + "," + sorted + "," + update + ","
+				+ deletedFile + "," + codec + ","
+				+ config.get(WikipediaInputFormat.NAMESPACES) + ","
+				+ config.get(WikipediaInputFormat.SKIP_TITLES);
+		return checksum.substring(0, 12) + "-"
+				+ String.format("%08x", settings.hashCode());
+	}
+
+	/**
+	 * Check if a file was uploaded to HDFS completely.
+	 * 
+	 * @param localSource
+	 *            local file
+	 * @param remoteDestination
+	 *            remote destination
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean isUploaded(String localSource, String remoteDestination)
+			throws IOException {
+		Path remote = new Path(remoteDestination);
+		return fs.exists(remote)
+				&& fs.getFileStatus(remote).getLen() == new File(localSource)
+						.length();
+	}
+
+	/**
+	 * Run the wikipedia indexing of pages and links in this JVM.
+	 * 
+	 * @param iteration
+	 *            name of this iteration
+	 * @param report
+	 *            report of this run
+	 */
+	private void runLocal(String iteration, RunReport report) {
+		long time = System.currentTimeMillis();
+
+		if (binary || redirects || ids || redLinks || backlinks || degrees
+				|| codec != null)
+			log.warn("Binary or compressed index files, redirects, red links, backlinks, degrees and ids are not supported in local mode.");
+
+		try {
+			log.info("Starting the local wikipedia indexer.");
+
+			if (indexFile != null)
+				config.set(WikipediaInputFormat.INDEX, new File(indexFile)
+						.toURI().toString());
+
+			new File(outputDir).mkdirs();
+			LocalIndexer indexer = new LocalIndexer(config, Runtime
+					.getRuntime().availableProcessors());
+			indexer.run(inputFile, outputDir + "/links-index-" + iteration
+					+ ".txt", outputDir + "/pages-index-" + iteration + ".txt");
+
+			log.info("Local indexing finished in {} seconds",
+					(System.currentTimeMillis() - time) / 1000);
+			report.addPhase("local", System.currentTimeMillis() - time);
+		} catch (Exception e) {
+			log.error("Local wikipedia indexer exited with an exception.", e);
+		}
+
+		writeReport(report, iteration);
+		log.info("Wikipedia indexer finished.");
+	}
+
+	/**
+	 * Writes the report of this run next to the index files.
+	 * 
+	 * @param report
+	 * @param iteration
+	 *            name of this iteration
+	 */
+	private void writeReport(RunReport report, String iteration) {
+		File file = new File(outputDir, "report-" + iteration + ".json");
+		try {
+			new File(outputDir).mkdirs();
+			report.write(file);
+			log.info("Wrote the run report to {}", file.getAbsolutePath());
+		} catch (IOException e) {
+			log.error("Failed to write the run report.", e);
+		}
+	}
+
+	/**
+	 * Returns the extension of the archive, so Hadoop can pick the matching
+	 * compression codec for it.
+	 * 
+	 * @param file
+	 *            local archive file
+	 * @return
+	 */
+	private String getExtension(String file) {
+		String name = new File(file).getName();
+		if (name.endsWith(".bz2"))
+			return ".txt.bz2";
+		return ".txt";
+	}
+
+	/**
+	 * Returns the extension of the downloaded index files. Compressed text
+	 * index files get the extension of their codec, so the grapher can pick
+	 * the matching decompressor. Binary index files are compressed internally.
+	 * 
+	 * @return
+	 */
+	private String getIndexExtension() {
+		if (binary)
+			return ".seq";
+		if (codec == null)
+			return ".txt";
+
+		CompressionCodec compression = new CompressionCodecFactory(config)
+				.getCodecByName(codec);
+		if (compression == null)
+			throw new IllegalArgumentException("Unknown compression codec "
+					+ codec);
+		return ".txt" + compression.getDefaultExtension();
+	}
+
 	/**
 	 * Uploads a file from the local file system to HDFS.
 	 * 
@@ -246,6 +715,129 @@ public class IndexerCLI {
 		fs.copyToLocalFile(remote, localPath);
 	}
 
+	/**
+	 * Downloads all part files of an index from HDFS in parallel and combines
+	 * them into a single local index file. Text parts are concatenated in part
+	 * order, sequence file parts are merged into a single sequence file.
+	 * Compressed text parts are concatenated as they are, the gzip, bzip2 and
+	 * Hadoop block codecs all read a concatenation of streams as one stream.
+	 * 
+	 * @param remoteIndex
+	 *            remote index directory
+	 * @param localDestination
+	 *            local index file
+	 * @throws IOException
+	 *             if the index is missing or has no part files
+	 * @throws InterruptedException
+	 */
+	private void downloadIndex(String remoteIndex, String localDestination)
+			throws IOException, InterruptedException {
+		FileStatus[] parts = fs.globStatus(new Path(remoteIndex, "part-*"));
+		if (parts == null || parts.length == 0)
+			throw new IOException("No part files in index " + remoteIndex);
+		Arrays.sort(parts);
+
+		if (parts.length == 1) {
+			this.download(parts[0].getPath().toString(), localDestination);
+			return;
+		}
+
+		File localDir = new File(localDestination + ".parts");
+		localDir.mkdirs();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+				Math.min(parts.length, DOWNLOAD_THREADS)));
+		List<Future<File>> downloads = new ArrayList<Future<File>>();
+		try {
+			for (final FileStatus part : parts) {
+				final File localPart = new File(localDir, part.getPath()
+						.getName());
+				downloads.add(pool.submit(new Callable<File>() {
+					@Override
+					public File call() throws Exception {
+						download(part.getPath().toString(),
+								localPart.getAbsolutePath());
+						return localPart;
+					}
+				}));
+			}
+
+			List<File> localParts = new ArrayList<File>();
+			for (Future<File> download : downloads)
+				localParts.add(download.get());
+
+			log.info("Combining {} part files into {}", localParts.size(),
+					localDestination);
+			if (binary)
+				mergeSequenceFiles(localParts, new File(localDestination));
+			else
+				concatenate(localParts, new File(localDestination));
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to download " + remoteIndex,
+					e.getCause());
+		} finally {
+			pool.shutdown();
+			FileUtil.fullyDelete(localDir);
+		}
+	}
+
+	/**
+	 * Concatenates local text files.
+	 * 
+	 * @param parts
+	 * @param destination
+	 * @throws IOException
+	 */
+	private void concatenate(List<File> parts, File destination)
+			throws IOException {
+		try (OutputStream out = new FileOutputStream(destination)) {
+			for (File part : parts)
+				Files.copy(part.toPath(), out);
+		}
+	}
+
+	/**
+	 * Merges local sequence files with the same key and value classes into a
+	 * single block compressed sequence file.
+	 * 
+	 * @param parts
+	 * @param destination
+	 * @throws IOException
+	 */
+	private void mergeSequenceFiles(List<File> parts, File destination)
+			throws IOException {
+		Configuration local = new Configuration(config);
+		local.set("fs.defaultFS", "file:///");
+
+		SequenceFile.Writer writer = null;
+		try {
+			for (File part : parts) {
+				try (SequenceFile.Reader reader = new SequenceFile.Reader(local,
+						SequenceFile.Reader.file(new Path(part.toURI())))) {
+					if (writer == null)
+						writer = SequenceFile.createWriter(local,
+								SequenceFile.Writer.file(new Path(destination
+										.toURI())), SequenceFile.Writer
+										.keyClass(reader.getKeyClass()),
+								SequenceFile.Writer.valueClass(reader
+										.getValueClass()), SequenceFile.Writer
+										.compression(CompressionType.BLOCK,
+												reader.getCompressionCodec()));
+
+					Writable key = (Writable) ReflectionUtils.newInstance(
+							reader.getKeyClass(), local);
+					Writable value = (Writable) ReflectionUtils.newInstance(
+							reader.getValueClass(), local);
+					while (reader.next(key, value))
+						writer.append(key, value);
+				}
+			}
+		} finally {
+			if (writer != null)
+				writer.close();
+		}
+	}
+
 	/**
 	 * Deletes a file or directory from HDFS.
 	 * 
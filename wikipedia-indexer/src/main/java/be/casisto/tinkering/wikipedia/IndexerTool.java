@@ -1,20 +1,80 @@
 package be.casisto.tinkering.wikipedia;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
 import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.MultipleInputs;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.InputSampler;
+import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
+import org.apache.hadoop.mapreduce.lib.reduce.LongSumReducer;
 import org.apache.hadoop.util.Tool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import be.casisto.tinkering.wikipedia.indexer.AdjacencyOutputFormat;
+import be.casisto.tinkering.wikipedia.indexer.AdjacencyWritable;
+import be.casisto.tinkering.wikipedia.indexer.BacklinkMapper;
+import be.casisto.tinkering.wikipedia.indexer.DegreeOrderMapper;
+import be.casisto.tinkering.wikipedia.indexer.DegreeReducer;
+import be.casisto.tinkering.wikipedia.indexer.DegreeSampler;
+import be.casisto.tinkering.wikipedia.indexer.DeletedPageMapper;
+import be.casisto.tinkering.wikipedia.indexer.DeltaJoinReducer;
+import be.casisto.tinkering.wikipedia.indexer.DeltaLinkMapper;
+import be.casisto.tinkering.wikipedia.indexer.IdAdjacencyReducer;
+import be.casisto.tinkering.wikipedia.indexer.IdAdjacencyWritable;
+import be.casisto.tinkering.wikipedia.indexer.IdTargetMapper;
+import be.casisto.tinkering.wikipedia.indexer.InDegreeMapper;
+import be.casisto.tinkering.wikipedia.indexer.IndexLinkMapper;
+import be.casisto.tinkering.wikipedia.indexer.IndexerCounter;
+import be.casisto.tinkering.wikipedia.indexer.JoinKey;
+import be.casisto.tinkering.wikipedia.indexer.LinkIdReducer;
+import be.casisto.tinkering.wikipedia.indexer.LinkSourceMapper;
+import be.casisto.tinkering.wikipedia.indexer.LinkTargetMapper;
+import be.casisto.tinkering.wikipedia.indexer.LinkVertexMapper;
+import be.casisto.tinkering.wikipedia.indexer.OutDegreeMapper;
+import be.casisto.tinkering.wikipedia.indexer.PageAdjacencyReducer;
+import be.casisto.tinkering.wikipedia.indexer.PageLinkCombiner;
 import be.casisto.tinkering.wikipedia.indexer.PageLinkMapper;
 import be.casisto.tinkering.wikipedia.indexer.PageLinkReducer;
-import be.casisto.tinkering.wikipedia.indexer.PageTitleMapper;
-import be.casisto.tinkering.wikipedia.indexer.PageTitleReducer;
+import be.casisto.tinkering.wikipedia.indexer.RedirectChainMapper;
+import be.casisto.tinkering.wikipedia.indexer.RedirectJoinReducer;
+import be.casisto.tinkering.wikipedia.indexer.RedirectMapper;
+import be.casisto.tinkering.wikipedia.indexer.RedirectTargetMapper;
+import be.casisto.tinkering.wikipedia.indexer.TitleCombiner;
+import be.casisto.tinkering.wikipedia.indexer.TitleFilter;
+import be.casisto.tinkering.wikipedia.indexer.TitleFilterMapper;
+import be.casisto.tinkering.wikipedia.indexer.TitleFilterReducer;
+import be.casisto.tinkering.wikipedia.indexer.TitleIdMapper;
+import be.casisto.tinkering.wikipedia.indexer.TitleMapper;
+import be.casisto.tinkering.wikipedia.indexer.TitleReducer;
+import be.casisto.tinkering.wikipedia.indexer.TitleSampler;
 import be.casisto.tinkering.wikipedia.indexer.WikipediaInputFormat;
 
 /**
@@ -27,8 +87,148 @@ public class IndexerTool extends Configured implements Tool {
 	private static final Logger log = LoggerFactory
 			.getLogger(IndexerTool.class);
 
+	private static final String TITLE_FILTER_LINK = "titles.filter";
+
+	/**
+	 * Output format of the index files: text (default) for tab and comma
+	 * delimited lines, binary for block compressed sequence files.
+	 */
+	public static final String FORMAT = "wiki.indexer.format";
+
+	public static final String FORMAT_TEXT = "text";
+	public static final String FORMAT_BINARY = "binary";
+
+	/**
+	 * Rewrite links to redirect pages to the target of the redirect and drop
+	 * the redirect pages from the index.
+	 */
+	public static final String REDIRECTS = "wiki.indexer.redirects";
+
+	/**
+	 * Maximum number of joins to resolve chains of redirects.
+	 */
+	public static final String REDIRECT_ITERATIONS = "wiki.indexer.redirects.iterations";
+
+	/**
+	 * HDFS reference to the links index of a previous run. If set, the input
+	 * is an incremental (adds-changes) dump and its pages are merged into the
+	 * previous index instead of indexing a full dump. The previous index must
+	 * have the same format.
+	 */
+	public static final String INCREMENTAL = "wiki.indexer.incremental";
+
+	/**
+	 * HDFS reference to a text file with the titles of the pages deleted since
+	 * the previous run, one per line. Only used with an incremental dump.
+	 */
+	public static final String DELETED = "wiki.indexer.incremental.deleted";
+
+	/**
+	 * Drop links to pages that do not exist in the dump, the red links. A
+	 * first job builds a Bloom filter of the page titles that is shipped to
+	 * the link mappers through the distributed cache. Not supported for an
+	 * incremental dump, as it only holds the changed pages.
+	 */
+	public static final String RED_LINKS = "wiki.indexer.redlinks";
+
+	/**
+	 * HDFS reference for the ids index destination, with a contiguous int id
+	 * for every page in the {@link #ORDER} of the ids. No ids are assigned if
+	 * not set.
+	 */
+	public static final String IDS = "wiki.indexer.ids";
+
+	/**
+	 * Order of the ids of the pages: title (default) or degree. In degree
+	 * order the pages with the most links, in and out, get the lowest ids, so
+	 * the hubs that most links point to are numbered together. Implies
+	 * {@link #DEGREES}.
+	 */
+	public static final String ORDER = "wiki.indexer.ids.order";
+
+	public static final String ORDER_TITLE = "title";
+	public static final String ORDER_DEGREE = "degree";
+
+	/**
+	 * HDFS reference for the graph index destination, the links index with
+	 * the pages replaced by their ids.
+	 */
+	public static final String GRAPH = "wiki.indexer.graph";
+
+	/**
+	 * HDFS reference for the backlinks index destination, the links index
+	 * reversed: every page with the sorted pages that link to it, in the
+	 * format of the links index. No backlinks index is built if not set.
+	 */
+	public static final String BACKLINKS = "wiki.indexer.backlinks";
+
+	/**
+	 * HDFS reference for the in-degree index destination, written with the
+	 * backlinks index: every page with the number of pages that link to it.
+	 * The backlinks index reference with a -degrees suffix if not set.
+	 */
+	public static final String IN_DEGREES = "wiki.indexer.backlinks.degrees";
+
 	/**
-	 * Executes the tool logic.
+	 * Write the out-degree and in-degree of every page, tab delimited, as
+	 * value of the pages index. The pages index has empty values if not set.
+	 */
+	public static final String DEGREES = "wiki.indexer.degrees";
+
+	/**
+	 * Number of reduce tasks of the indexing jobs, 1 by default.
+	 */
+	public static final String REDUCERS = "wiki.indexer.reducers";
+
+	/**
+	 * Partition the links and pages index on sampled title ranges, so the
+	 * part files are sorted in title order.
+	 */
+	public static final String TOTAL_ORDER = "wiki.indexer.reducers.sorted";
+
+	/**
+	 * Compression codec of the index files, by alias (gzip, bzip2, lz4,
+	 * snappy, default) or class name. Text index files are not compressed by
+	 * default, binary index files are block compressed with the default codec.
+	 */
+	public static final String CODEC = "wiki.indexer.compress.codec";
+
+	/**
+	 * Compression codec of the intermediate map output and of the
+	 * intermediate files between the chained jobs, by alias or class name.
+	 * Not compressed if not set.
+	 */
+	public static final String MAP_CODEC = "wiki.indexer.compress.map";
+
+	private final RunReport report;
+
+	private boolean totalOrder = false;
+	private Path titleFilter;
+
+	/**
+	 * Creates a tool that does not report its jobs.
+	 */
+	public IndexerTool() {
+		this(null);
+	}
+
+	/**
+	 * Creates a tool that adds every job it runs to a report.
+	 * 
+	 * @param report
+	 *            report of the run, or null
+	 */
+	public IndexerTool(RunReport report) {
+		this.report = report;
+	}
+
+	/**
+	 * Executes the tool logic. Index files that are complete, with the
+	 * success marker of their job, are kept and their jobs skipped, so a
+	 * failed run can be resumed. The output of a failed job is deleted before
+	 * it is run again.
+	 * 
+	 * @return 0 on success, the exit code of the failed step otherwise
 	 */
 	@Override
 	public int run(String[] arg0) throws Exception {
@@ -36,28 +236,265 @@ public class IndexerTool extends Configured implements Tool {
 			String input = this.getConf().get("wiki.indexer.input");
 			String links = this.getConf().get("wiki.indexer.links");
 			String pages = this.getConf().get("wiki.indexer.pages");
+			String ids = this.getConf().get(IDS);
+			String graph = this.getConf().get(GRAPH);
+			String backlinks = this.getConf().get(BACKLINKS);
+			String order = this.getConf().get(ORDER, ORDER_TITLE);
+			if (!ORDER_TITLE.equals(order) && !ORDER_DEGREE.equals(order))
+				throw new IllegalArgumentException("Unknown order of ids "
+						+ order);
+			boolean degreeOrder = ids != null && ORDER_DEGREE.equals(order);
+			boolean degrees = degreeOrder
+					|| this.getConf().getBoolean(DEGREES, false);
 
-			log.info("Indexing wiki links");
-			boolean indexed = indexWikiLinks(input, links);
-			if (!indexed) {
-				log.error("Failed to complete indexing of wiki links");
-				System.exit(1);
+			int reducers = this.getConf().getInt(REDUCERS, 1);
+			this.getConf().setInt(MRJobConfig.NUM_REDUCES, reducers);
+
+			String mapCodec = this.getConf().get(MAP_CODEC);
+			if (mapCodec != null) {
+				this.getConf().setBoolean(MRJobConfig.MAP_OUTPUT_COMPRESS, true);
+				this.getConf().setClass(MRJobConfig.MAP_OUTPUT_COMPRESS_CODEC,
+						getCodec(mapCodec), CompressionCodec.class);
 			}
 
-			log.info("Indexing wiki pages");
-			boolean ranked = indexWikiPages(links, pages);
+			String previous = this.getConf().get(INCREMENTAL);
+			String partitions = links + "-partitions";
+			String filter = links + "-filter";
+			boolean sorted = reducers > 1
+					&& this.getConf().getBoolean(TOTAL_ORDER, false);
+			// the number of links of every page in the pages side output
+			this.getConf().setBoolean(PageLinkReducer.DEGREES, degrees);
+			if (isComplete(links)) {
+				log.info("Skipping the completed links index {}", links);
+				// the other index files are partitioned like the links index
+				if (sorted
+						&& FileSystem.get(this.getConf()).exists(
+								new Path(partitions))) {
+					TotalOrderPartitioner.setPartitionFile(this.getConf(),
+							new Path(partitions));
+					totalOrder = true;
+				} else if (sorted)
+					log.warn("No partition file {}, the links index is hash partitioned",
+							partitions);
+			} else {
+				// the output of a failed attempt
+				delete(links);
+
+				if (sorted) {
+					log.info("Sampling wiki page titles for {} partitions",
+							reducers);
+					totalOrder = samplePartitions(input, partitions, reducers);
+				}
+
+				if (this.getConf().getBoolean(RED_LINKS, false)) {
+					if (previous != null)
+						log.warn("Red links are only dropped for a full dump");
+					else {
+						log.info("Building the filter of wiki page titles");
+						if (!buildTitleFilter(input, filter)) {
+							log.error("Failed to complete building the title filter");
+							return 6;
+						}
+					}
+				}
+
+				boolean indexed;
+				if (previous != null) {
+					log.info(
+							"Merging changed wiki pages into the links index {}",
+							previous);
+					indexed = mergeLinks(input, previous, this.getConf()
+							.get(DELETED), links);
+				} else if (this.getConf().getBoolean(REDIRECTS, false)) {
+					log.info("Resolving wiki redirects");
+					String redirects = resolveRedirects(input, links);
+					if (redirects == null) {
+						log.error("Failed to complete resolving of wiki redirects");
+						return 3;
+					}
+
+					log.info("Indexing wiki links with resolved redirects");
+					indexed = indexResolvedLinks(input, redirects, links);
+				} else {
+					log.info("Indexing wiki links");
+					indexed = indexWikiLinks(input, links);
+				}
+				if (!indexed) {
+					log.error("Failed to complete indexing of wiki links");
+					return 1;
+				}
+			}
+
+			boolean ranked;
+			if (degrees && isComplete(pages)) {
+				log.info("Skipping the completed pages index {}", pages);
+				ranked = true;
+			} else if (degrees) {
+				log.info("Indexing the degrees of the wiki pages");
+				String outDegrees = pages + "-out";
+				ranked = movePages(links, outDegrees)
+						&& indexDegrees(outDegrees, links, pages);
+			} else
+				ranked = movePages(links, pages);
 			if (!ranked) {
 				log.error("Failed to complete indexing of wiki pages");
-				System.exit(2);
+				return 2;
+			}
+
+			if (backlinks != null) {
+				if (isComplete(backlinks))
+					log.info("Skipping the completed backlinks index {}",
+							backlinks);
+				else {
+					log.info("Indexing wiki backlinks");
+					delete(backlinks);
+					if (!indexBacklinks(links, backlinks)) {
+						log.error("Failed to complete indexing of wiki backlinks");
+						return 7;
+					}
+				}
+
+				if (!movePages(backlinks, this.getConf().get(IN_DEGREES,
+						backlinks + "-degrees"))) {
+					log.error("Failed to complete indexing of wiki in-degrees");
+					return 7;
+				}
+			}
+
+			if (ids != null) {
+				if (isComplete(ids))
+					log.info("Skipping the completed ids index {}", ids);
+				else {
+					log.info("Assigning ids to the wiki pages");
+					delete(ids);
+					boolean numbered = degreeOrder ? indexIds(pages,
+							DegreeOrderMapper.class, ids) : indexIds(links,
+							TitleMapper.class, ids);
+					if (!numbered) {
+						log.error("Failed to complete assigning ids to wiki pages");
+						return 4;
+					}
+				}
+
+				if (isComplete(graph))
+					log.info("Skipping the completed graph index {}", graph);
+				else {
+					log.info("Indexing the wiki graph by id");
+					delete(graph);
+					boolean graphed = indexGraph(links, ids, graph);
+					if (!graphed) {
+						log.error("Failed to complete indexing of the wiki graph");
+						return 5;
+					}
+				}
 			}
+
+			// kept until every index is complete, a resumed run partitions
+			// the remaining index files with it
+			delete(partitions);
+			delete(filter);
 		} catch (Exception e) {
 			log.error("IndexerTool failed to run successfully", e);
-			System.exit(99);
+			return 99;
 		}
 
 		return 0;
 	}
 
+	/**
+	 * Samples the page titles of the input to partition the index files on
+	 * title ranges.
+	 * 
+	 * @param input
+	 *            HDFS reference to the input file
+	 * @param partitions
+	 *            HDFS reference for the partition file
+	 * @param reducers
+	 *            number of partitions
+	 * @return false if the titles could not be partitioned
+	 * @throws Exception
+	 */
+	private boolean samplePartitions(String input, String partitions,
+			int reducers) throws Exception {
+		Job job = Job.getInstance(this.getConf());
+		FileInputFormat.addInputPath(job, new Path(input));
+		job.setNumReduceTasks(reducers);
+
+		TitleSampler sampler = new TitleSampler(10000, 10);
+		if (!sampler.writePartitionFile(job, new Path(partitions))) {
+			log.warn("Falling back to hash partitioning of the index files");
+			return false;
+		}
+
+		TotalOrderPartitioner.setPartitionFile(this.getConf(), new Path(
+				partitions));
+		return true;
+	}
+
+	/**
+	 * Initializes and executes a Hadoop MapReduce job to build the Bloom
+	 * filter of all page titles in the dump. The mappers only emit a hash per
+	 * title, a single reducer adds them to the filter.
+	 * 
+	 * @param input
+	 *            HDFS reference to the input file
+	 * @param filter
+	 *            HDFS reference for the title filter destination
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private boolean buildTitleFilter(String input, String filter)
+			throws Exception {
+		Path file = FileSystem.get(this.getConf()).makeQualified(
+				new Path(filter, "part-r-00000"));
+		if (isComplete(filter)) {
+			log.info("Skipping the completed title filter {}", filter);
+			titleFilter = file;
+			return true;
+		}
+		delete(filter);
+
+		Job job = Job.getInstance(this.getConf(), "WikiWiki_Filter_Titles");
+		job.setJarByClass(IndexerTool.class);
+
+		FileInputFormat.addInputPath(job, new Path(input));
+		job.setInputFormatClass(WikipediaInputFormat.class);
+		job.setMapperClass(TitleFilterMapper.class);
+		job.setMapOutputKeyClass(LongWritable.class);
+		job.setMapOutputValueClass(NullWritable.class);
+
+		FileOutputFormat.setOutputPath(job, new Path(filter));
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		job.setOutputKeyClass(NullWritable.class);
+		job.setOutputValueClass(TitleFilter.class);
+		job.setReducerClass(TitleFilterReducer.class);
+		job.setNumReduceTasks(1);
+
+		if (!waitForCompletion(job))
+			return false;
+
+		titleFilter = file;
+		return true;
+	}
+
+	/**
+	 * Ships the title filter to the link mappers of a job, if there is one.
+	 * 
+	 * @param job
+	 * @throws URISyntaxException
+	 */
+	private void setTitleFilter(Job job) throws URISyntaxException {
+		if (titleFilter == null)
+			return;
+
+		URI file = titleFilter.toUri();
+		job.addCacheFile(new URI(file.getScheme(), file.getAuthority(), file
+				.getPath(), null, TITLE_FILTER_LINK));
+		job.getConfiguration().set(PageLinkMapper.TITLE_FILTER,
+				TITLE_FILTER_LINK);
+	}
+
 	/**
 	 * Initializes and executes a Hadoop MapReduce job to extract all pages and
 	 * links from the wikipedia page format.
@@ -78,45 +515,663 @@ public class IndexerTool extends Configured implements Tool {
 		FileInputFormat.addInputPath(job, new Path(input));
 		job.setInputFormatClass(WikipediaInputFormat.class);
 		job.setMapperClass(PageLinkMapper.class);
+		job.setCombinerClass(PageLinkCombiner.class);
+		setTitleFilter(job);
 		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(Text.class);
 
-		FileOutputFormat.setOutputPath(job, new Path(links));
-		job.setOutputFormatClass(TextOutputFormat.class);
+		setLinksOutput(job, links);
+
+		return waitForCompletion(job);
+
+	}
+
+	/**
+	 * Initializes and executes the Hadoop MapReduce jobs to extract the
+	 * redirects from the wikipedia page format and to resolve chains of
+	 * redirects to their final target. Every job joins the redirects with
+	 * themselves on their target, until no redirect targets another redirect.
+	 * 
+	 * @param input
+	 *            HDFS reference to the input file
+	 * @param links
+	 *            HDFS reference for the links index file destination, used as
+	 *            base for the redirect files
+	 * 
+	 * @return HDFS reference to the resolved redirects or null
+	 * @throws Exception
+	 */
+	private String resolveRedirects(String input, String links)
+			throws Exception {
+		int iterations = this.getConf().getInt(REDIRECT_ITERATIONS, 10);
+
+		String redirects = null;
+		for (int i = 0; i < iterations; i++) {
+			Job job = Job.getInstance(this.getConf(),
+					"WikiWiki_Resolve_Redirects_" + i);
+			job.setJarByClass(IndexerTool.class);
+
+			if (redirects == null) {
+				FileInputFormat.addInputPath(job, new Path(input));
+				job.setInputFormatClass(WikipediaInputFormat.class);
+				job.setMapperClass(RedirectMapper.class);
+			} else {
+				FileInputFormat.addInputPath(job, new Path(redirects));
+				job.setInputFormatClass(SequenceFileInputFormat.class);
+				job.setMapperClass(RedirectChainMapper.class);
+			}
+			setJoin(job);
+			job.setReducerClass(RedirectJoinReducer.class);
+			job.setOutputKeyClass(Text.class);
+			job.setOutputValueClass(Text.class);
+
+			String output = links + "-redirects-" + i;
+			setIntermediateOutput(job, output);
+
+			if (!waitForCompletion(job))
+				return null;
+
+			if (redirects != null)
+				delete(redirects);
+			redirects = output;
+
+			long resolved = job.getCounters()
+					.findCounter(IndexerCounter.REDIRECTS_RESOLVED).getValue();
+			log.info("Resolved {} redirects to another redirect", resolved);
+			if (resolved == 0)
+				return redirects;
+		}
+
+		log.warn("Redirects not fully resolved after {} iterations", iterations);
+		return redirects;
+	}
+
+	/**
+	 * Initializes and executes the Hadoop MapReduce jobs to extract all links
+	 * from the wikipedia page format, rewritten to the target of the resolved
+	 * redirects. The first job joins the links with the redirects on the link
+	 * target, the second groups the rewritten links by page.
+	 * 
+	 * @param input
+	 *            HDFS reference to the input file
+	 * @param redirects
+	 *            HDFS reference to the resolved redirects
+	 * @param links
+	 *            HDFS reference for the links index file destination
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private boolean indexResolvedLinks(String input, String redirects,
+			String links) throws Exception {
+		String resolved = links + "-resolved";
+
+		Job job = Job.getInstance(this.getConf(), "WikiWiki_Join_Links");
+		job.setJarByClass(IndexerTool.class);
+		job.getConfiguration().setBoolean(PageLinkMapper.SKIP_REDIRECTS, true);
+
+		MultipleInputs.addInputPath(job, new Path(input),
+				WikipediaInputFormat.class, LinkTargetMapper.class);
+		setTitleFilter(job);
+		MultipleInputs.addInputPath(job, new Path(redirects),
+				SequenceFileInputFormat.class, RedirectTargetMapper.class);
+		setJoin(job);
+		job.setReducerClass(RedirectJoinReducer.class);
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(Text.class);
-		job.setReducerClass(PageLinkReducer.class);
 
-		return job.waitForCompletion(true);
+		setIntermediateOutput(job, resolved);
 
+		if (!waitForCompletion(job))
+			return false;
+		delete(redirects);
+
+		return groupLinks(resolved, links);
 	}
 
 	/**
-	 * Initializes and executes a Hadoop MapReduce job to extract all pages from
-	 * the links index file.
+	 * Initializes and executes the Hadoop MapReduce jobs to merge the pages of
+	 * an incremental dump into the links index of a previous run. The first
+	 * job joins the links of the changed pages, the deleted titles and the
+	 * previous links index on the page title. Changed and deleted pages
+	 * replace their previous links; renamed pages show up as a new page and a
+	 * changed (redirect) page under the old title. The second job groups the
+	 * merged links by page.
+	 * 
+	 * Redirects are not resolved in an incremental update, as the redirect
+	 * pages of the full dump are not at hand. If enabled, the redirect pages
+	 * of the incremental dump are only dropped from the index.
 	 * 
+	 * @param input
+	 *            HDFS reference to the incremental dump
+	 * @param previous
+	 *            HDFS reference to the previous links index
+	 * @param deleted
+	 *            HDFS reference to the deleted titles or null
 	 * @param links
-	 *            HDFS reference to the links index destination
+	 *            HDFS reference for the links index file destination
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private boolean mergeLinks(String input, String previous, String deleted,
+			String links) throws Exception {
+		String merged = links + "-merged";
+
+		Job job = Job.getInstance(this.getConf(), "WikiWiki_Merge_Links");
+		job.setJarByClass(IndexerTool.class);
+		job.getConfiguration().setBoolean(PageLinkMapper.SKIP_REDIRECTS,
+				this.getConf().getBoolean(REDIRECTS, false));
+
+		MultipleInputs.addInputPath(job, new Path(input),
+				WikipediaInputFormat.class, DeltaLinkMapper.class);
+		MultipleInputs.addInputPath(job, new Path(previous),
+				getIndexInputFormat(), IndexLinkMapper.class);
+		if (deleted != null)
+			MultipleInputs.addInputPath(job, new Path(deleted),
+					KeyValueTextInputFormat.class, DeletedPageMapper.class);
+		setJoin(job);
+		job.setReducerClass(DeltaJoinReducer.class);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		setIntermediateOutput(job, merged);
+
+		if (!waitForCompletion(job))
+			return false;
+
+		Counters counters = job.getCounters();
+		log.info("Merged {} changed and {} deleted pages", counters
+				.findCounter(IndexerCounter.CHANGED_PAGES).getValue(),
+				counters.findCounter(IndexerCounter.DELETED_PAGES).getValue());
+
+		return groupLinks(merged, links);
+	}
+
+	/**
+	 * Initializes and executes a Hadoop MapReduce job to group key=title
+	 * value=link pairs into the links index.
+	 * 
+	 * @param input
+	 *            HDFS reference to the link pairs, deleted afterwards
+	 * @param links
+	 *            HDFS reference for the links index file destination
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private boolean groupLinks(String input, String links) throws Exception {
+		Job job = Job.getInstance(this.getConf(), "WikiWiki_Index_Links");
+		job.setJarByClass(IndexerTool.class);
+
+		FileInputFormat.addInputPath(job, new Path(input));
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		job.setMapperClass(LinkVertexMapper.class);
+		job.setCombinerClass(PageLinkCombiner.class);
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(Text.class);
+
+		setLinksOutput(job, links);
+
+		boolean indexed = waitForCompletion(job);
+		delete(input);
+		return indexed;
+	}
+
+	/**
+	 * Initializes and executes a Hadoop MapReduce job to reverse the links
+	 * index into the backlinks index. The number of distinct backlinks of
+	 * every page is written as side output, like the pages index of the links
+	 * job.
+	 * 
+	 * @param links
+	 *            HDFS reference to the links index
+	 * @param backlinks
+	 *            HDFS reference for the backlinks index destination
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private boolean indexBacklinks(String links, String backlinks)
+			throws Exception {
+		Job job = Job.getInstance(this.getConf(), "WikiWiki_Index_Backlinks");
+		job.setJarByClass(IndexerTool.class);
+		job.getConfiguration().setBoolean(PageLinkReducer.DEGREES, true);
+
+		FileInputFormat.addInputPath(job, new Path(links));
+		job.setInputFormatClass(getIndexInputFormat());
+		job.setMapperClass(BacklinkMapper.class);
+		job.setCombinerClass(PageLinkCombiner.class);
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(Text.class);
+
+		setLinksOutput(job, backlinks);
+
+		return waitForCompletion(job);
+	}
+
+	/**
+	 * Initializes and executes a Hadoop MapReduce job to write the pages index
+	 * with the degrees of every page. The out-degrees of the pages side output
+	 * of the links job are summed with the in-degrees counted from the links
+	 * index.
+	 * 
+	 * @param outDegrees
+	 *            HDFS reference to the pages side output with out-degrees,
+	 *            deleted afterwards
+	 * @param links
+	 *            HDFS reference to the links index
 	 * @param pages
 	 *            HDFS reference for the pages index destination
 	 * 
 	 * @return
 	 * @throws Exception
 	 */
-	private boolean indexWikiPages(String links, String pages) throws Exception {
-		Job job = Job.getInstance(this.getConf(), "WikiWiki_Index_Pages");
+	private boolean indexDegrees(String outDegrees, String links, String pages)
+			throws Exception {
+		// the output of a failed attempt
+		delete(pages);
+
+		Job job = Job.getInstance(this.getConf(), "WikiWiki_Index_Degrees");
 		job.setJarByClass(IndexerTool.class);
 
-		FileInputFormat.addInputPath(job, new Path(links));
-		job.setMapperClass(PageTitleMapper.class);
+		MultipleInputs.addInputPath(job, new Path(outDegrees),
+				getIndexInputFormat(), OutDegreeMapper.class);
+		MultipleInputs.addInputPath(job, new Path(links),
+				getIndexInputFormat(), InDegreeMapper.class);
+		job.setCombinerClass(LongSumReducer.class);
 		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(LongWritable.class);
+		job.setReducerClass(DegreeReducer.class);
+		setTitlePartitioner(job);
 
 		FileOutputFormat.setOutputPath(job, new Path(pages));
-		job.setOutputFormatClass(TextOutputFormat.class);
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(Text.class);
-		job.setReducerClass(PageTitleReducer.class);
+		setOutputFormat(job);
+
+		if (!waitForCompletion(job))
+			return false;
+		delete(outDegrees);
+		return true;
+	}
+
+	/**
+	 * Initializes and executes the Hadoop MapReduce jobs to assign contiguous
+	 * ids to all pages. The first job sorts the distinct sort keys of the
+	 * pages with a total order partitioner and numbers them within each
+	 * partition. The second job adds the number of pages in the preceding
+	 * partitions to get the ids, and strips the sort prefix from the keys.
+	 * 
+	 * @param input
+	 *            HDFS reference to the links index, or to the pages index with
+	 *            degrees for the degree order
+	 * @param mapper
+	 *            mapper to the sort keys, the {@link TitleMapper} or the
+	 *            {@link DegreeOrderMapper}
+	 * @param ids
+	 *            HDFS reference for the ids index destination
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	@SuppressWarnings("rawtypes")
+	private boolean indexIds(String input, Class<? extends Mapper> mapper,
+			String ids) throws Exception {
+		String titles = ids + "-titles";
+		boolean degreeOrder = mapper == DegreeOrderMapper.class;
+
+		Job job = Job.getInstance(this.getConf(), "WikiWiki_Index_Titles");
+		job.setJarByClass(IndexerTool.class);
+
+		FileInputFormat.addInputPath(job, new Path(input));
+		job.setInputFormatClass(getIndexInputFormat());
+		job.setMapperClass(mapper);
+		job.setCombinerClass(TitleCombiner.class);
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(NullWritable.class);
+
+		setIntermediateOutput(job, titles);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(IntWritable.class);
+		job.setReducerClass(TitleReducer.class);
+
+		Path counts = new Path(titles + "-counts");
+		delete(counts.toString());
+		job.getConfiguration().set(TitleReducer.COUNTS, counts.toString());
+
+		Path partitions = new Path(titles + "-partitions");
+		if (job.getNumReduceTasks() > 1) {
+			job.setPartitionerClass(TotalOrderPartitioner.class);
+			TotalOrderPartitioner.setPartitionFile(job.getConfiguration(),
+					partitions);
+			// sample up to 10000 pages from the first 10 splits
+			if (degreeOrder)
+				InputSampler.writePartitionFile(job, new DegreeSampler(10000,
+						10));
+			else
+				InputSampler.writePartitionFile(job,
+						new InputSampler.RandomSampler<Text, Writable>(1.0,
+								10000, 10));
+		}
+
+		boolean sorted = waitForCompletion(job);
+		delete(partitions.toString());
+		if (!sorted)
+			return false;
+
+		// the first id of every partition
+		FileSystem fs = FileSystem.get(this.getConf());
+		String[] offsets = new String[job.getNumReduceTasks()];
+		long offset = 0;
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = Long.toString(offset);
+			Path count = new Path(counts, Integer.toString(i));
+			if (fs.exists(count)) {
+				try (FSDataInputStream in = fs.open(count)) {
+					offset += in.readLong();
+				}
+			}
+		}
+		delete(counts.toString());
+		log.info("Assigning ids to {} pages", offset);
+
+		job = Job.getInstance(this.getConf(), "WikiWiki_Index_Ids");
+		job.setJarByClass(IndexerTool.class);
+		job.getConfiguration().setStrings(TitleIdMapper.OFFSETS, offsets);
+		if (degreeOrder)
+			job.getConfiguration().setInt(TitleIdMapper.PREFIX,
+					DegreeOrderMapper.PREFIX);
+
+		FileInputFormat.addInputPath(job, new Path(titles));
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		job.setMapperClass(TitleIdMapper.class);
+		job.setNumReduceTasks(0);
+
+		FileOutputFormat.setOutputPath(job, new Path(ids));
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(IntWritable.class);
+		setOutputFormat(job);
+
+		boolean numbered = waitForCompletion(job);
+		delete(titles);
+		return numbered;
+	}
+
+	/**
+	 * Initializes and executes the Hadoop MapReduce jobs to rewrite the links
+	 * index with ids. The first job joins the links with the ids on the link
+	 * target, the second joins the link ids with the ids on the link source
+	 * and groups them by page.
+	 * 
+	 * @param links
+	 *            HDFS reference to the links index
+	 * @param ids
+	 *            HDFS reference to the ids index
+	 * @param graph
+	 *            HDFS reference for the graph index destination
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private boolean indexGraph(String links, String ids, String graph)
+			throws Exception {
+		String joined = graph + "-joined";
+
+		Job job = Job.getInstance(this.getConf(), "WikiWiki_Join_Link_Ids");
+		job.setJarByClass(IndexerTool.class);
+
+		MultipleInputs.addInputPath(job, new Path(ids), getIndexInputFormat(),
+				IdTargetMapper.class);
+		MultipleInputs.addInputPath(job, new Path(links),
+				getIndexInputFormat(), LinkSourceMapper.class);
+		setJoin(job);
+		job.setReducerClass(LinkIdReducer.class);
+
+		setIntermediateOutput(job, joined);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		if (!waitForCompletion(job))
+			return false;
+
+		job = Job.getInstance(this.getConf(), "WikiWiki_Index_Graph");
+		job.setJarByClass(IndexerTool.class);
+
+		MultipleInputs.addInputPath(job, new Path(ids), getIndexInputFormat(),
+				IdTargetMapper.class);
+		MultipleInputs.addInputPath(job, new Path(joined),
+				SequenceFileInputFormat.class, Mapper.class);
+		setJoin(job);
+		job.setReducerClass(IdAdjacencyReducer.class);
+
+		FileOutputFormat.setOutputPath(job, new Path(graph));
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(IdAdjacencyWritable.class);
+		setOutputFormat(job);
 
-		return job.waitForCompletion(true);
+		boolean graphed = waitForCompletion(job);
+		delete(joined);
+		return graphed;
+	}
+
+	/**
+	 * Submits a job, waits for it to complete and adds it to the report.
+	 * 
+	 * @param job
+	 * @return true if the job completed successfully
+	 * @throws Exception
+	 */
+	private boolean waitForCompletion(Job job) throws Exception {
+		long start = System.currentTimeMillis();
+		boolean completed = job.waitForCompletion(true);
+		long millis = System.currentTimeMillis() - start;
+
+		log.info("Job {} finished in {} seconds", job.getJobName(),
+				millis / 1000);
+		if (report != null)
+			report.addJob(job, completed, millis);
+		return completed;
+	}
+
+	/**
+	 * Returns the input format to read an index file as key=title value=index
+	 * entry.
+	 * 
+	 * @return
+	 */
+	@SuppressWarnings("rawtypes")
+	private Class<? extends InputFormat> getIndexInputFormat() {
+		return isBinary() ? SequenceFileInputFormat.class
+				: KeyValueTextInputFormat.class;
+	}
+
+	/**
+	 * Configures the output format of a job that writes an index file other
+	 * than the links index.
+	 * 
+	 * @param job
+	 */
+	private void setOutputFormat(Job job) {
+		if (isBinary())
+			job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		else
+			job.setOutputFormatClass(TextOutputFormat.class);
+		setOutputCompression(job);
+	}
+
+	/**
+	 * Configures the compression of an index file: block compressed sequence
+	 * files for the binary format, whole file compression with the index codec
+	 * for the text format. The codec extension is added to the text part
+	 * files, so they are decompressed when read by a later job.
+	 * 
+	 * @param job
+	 */
+	private void setOutputCompression(Job job) {
+		String codec = this.getConf().get(CODEC);
+		if (isBinary())
+			SequenceFileOutputFormat.setOutputCompressionType(job,
+					CompressionType.BLOCK);
+		else if (codec == null)
+			return;
+
+		FileOutputFormat.setCompressOutput(job, true);
+		if (codec != null)
+			FileOutputFormat.setOutputCompressorClass(job, getCodec(codec));
+	}
+
+	/**
+	 * Configures the sequence file output of a job that writes an
+	 * intermediate file for the next job, block compressed with the map output
+	 * codec if there is one.
+	 * 
+	 * @param job
+	 * @param output
+	 *            HDFS reference for the intermediate file
+	 * @throws IOException
+	 */
+	private void setIntermediateOutput(Job job, String output)
+			throws IOException {
+		// the output of a failed attempt
+		delete(output);
+		FileOutputFormat.setOutputPath(job, new Path(output));
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+		String codec = this.getConf().get(MAP_CODEC);
+		if (codec != null) {
+			FileOutputFormat.setCompressOutput(job, true);
+			FileOutputFormat.setOutputCompressorClass(job, getCodec(codec));
+			SequenceFileOutputFormat.setOutputCompressionType(job,
+					CompressionType.BLOCK);
+		}
+	}
+
+	/**
+	 * Returns the compression codec with the given alias or class name.
+	 * 
+	 * @param codec
+	 * @return
+	 */
+	private Class<? extends CompressionCodec> getCodec(String codec) {
+		Class<? extends CompressionCodec> codecClass = new CompressionCodecFactory(
+				this.getConf()).getCodecClassByName(codec);
+		if (codecClass == null)
+			throw new IllegalArgumentException("Unknown compression codec "
+					+ codec);
+		return codecClass;
+	}
+
+	/**
+	 * Configures the output of a job that writes the links index, with the
+	 * pages index as side output.
+	 * 
+	 * @param job
+	 * @param links
+	 *            HDFS reference for the links index file destination
+	 */
+	private void setLinksOutput(Job job, String links) {
+		setTitlePartitioner(job);
+		FileOutputFormat.setOutputPath(job, new Path(links));
+		job.setOutputKeyClass(Text.class);
+		if (isBinary()) {
+			job.setOutputFormatClass(AdjacencyOutputFormat.class);
+			job.setOutputValueClass(AdjacencyWritable.class);
+			job.setReducerClass(PageAdjacencyReducer.class);
+			MultipleOutputs.addNamedOutput(job, PageLinkReducer.PAGES,
+					SequenceFileOutputFormat.class, Text.class, Text.class);
+		} else {
+			job.setOutputFormatClass(TextOutputFormat.class);
+			job.setOutputValueClass(Text.class);
+			job.setReducerClass(PageLinkReducer.class);
+			MultipleOutputs.addNamedOutput(job, PageLinkReducer.PAGES,
+					TextOutputFormat.class, Text.class, Text.class);
+		}
+		setOutputCompression(job);
+	}
+
+	/**
+	 * Partitions a job on the sampled title ranges, if there are any.
+	 * 
+	 * @param job
+	 */
+	private void setTitlePartitioner(Job job) {
+		if (totalOrder)
+			job.setPartitionerClass(TotalOrderPartitioner.class);
+	}
+
+	/**
+	 * Configures a job that joins on a page title.
+	 * 
+	 * @param job
+	 */
+	private void setJoin(Job job) {
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(Text.class);
+		job.setPartitionerClass(JoinKey.TitlePartitioner.class);
+		job.setGroupingComparatorClass(JoinKey.TitleComparator.class);
+	}
+
+	/**
+	 * Deletes an intermediate output directory.
+	 * 
+	 * @param path
+	 * @throws IOException
+	 */
+	private void delete(String path) throws IOException {
+		FileSystem.get(this.getConf()).delete(new Path(path), true);
+	}
+
+	/**
+	 * Check if the job that writes an output directory has completed, by its
+	 * success marker.
+	 * 
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean isComplete(String path) throws IOException {
+		return FileSystem.get(this.getConf()).exists(
+				new Path(path, FileOutputCommitter.SUCCEEDED_FILE_NAME));
+	}
+
+	/**
+	 * Moves the pages side output of the links or backlinks job to its own
+	 * index destination. Parts that were already moved by a previous attempt
+	 * are kept.
+	 * 
+	 * @param links
+	 *            HDFS reference to the links or backlinks index
+	 * @param pages
+	 *            HDFS reference for the pages or in-degree index destination
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean movePages(String links, String pages) throws IOException {
+		FileSystem fs = FileSystem.get(this.getConf());
+		Path destination = new Path(pages);
+		fs.mkdirs(destination);
+
+		FileStatus[] parts = fs.globStatus(new Path(links,
+				PageLinkReducer.PAGES + "-*"));
+		for (FileStatus part : parts) {
+			String name = part.getPath().getName()
+					.substring(PageLinkReducer.PAGES.length());
+			if (!fs.rename(part.getPath(), new Path(destination, "part" + name)))
+				return false;
+		}
+		log.info("Moved {} side output files to {}", parts.length, pages);
+		return true;
+	}
+
+	/**
+	 * Check if the index files are written in the binary format.
+	 * 
+	 * @return
+	 */
+	private boolean isBinary() {
+		return FORMAT_BINARY.equals(this.getConf().get(FORMAT, FORMAT_TEXT));
 	}
 
 }
@@ -0,0 +1,165 @@
+package be.casisto.tinkering.wikipedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Job;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+/**
+ * Machine readable report of an indexer run: the timings of the phases of the
+ * run and, for every Hadoop job, its timing and all of its counters. Written
+ * as a JSON file per iteration, to compare the throughput of runs on
+ * different dumps.
+ *
+ * @author jiri
+ */
+public class RunReport {
+
+	private final String iteration;
+
+	private final List<Phase> phases = new ArrayList<Phase>();
+	private final List<JobRun> jobs = new ArrayList<JobRun>();
+
+	/**
+	 * Timing of a phase of the run.
+	 */
+	private static class Phase {
+
+		private final String name;
+		private final long millis;
+
+		private Phase(String name, long millis) {
+			this.name = name;
+			this.millis = millis;
+		}
+
+	}
+
+	/**
+	 * Timing and counters of a completed job.
+	 */
+	private static class JobRun {
+
+		private final String name;
+		private final String id;
+		private final boolean successful;
+		private final long millis;
+		private final Map<String, Map<String, Long>> counters = new LinkedHashMap<String, Map<String, Long>>();
+
+		private JobRun(String name, String id, boolean successful, long millis) {
+			this.name = name;
+			this.id = id;
+			this.successful = successful;
+			this.millis = millis;
+		}
+
+	}
+
+	/**
+	 * Creates a new, empty report.
+	 *
+	 * @param iteration
+	 *            name of the iteration of the run
+	 */
+	public RunReport(String iteration) {
+		this.iteration = iteration;
+	}
+
+	/**
+	 * Adds the timing of a phase of the run.
+	 *
+	 * @param name
+	 *            name of the phase
+	 * @param millis
+	 *            duration of the phase in milliseconds
+	 */
+	public synchronized void addPhase(String name, long millis) {
+		phases.add(new Phase(name, millis));
+	}
+
+	/**
+	 * Adds a completed job with its counters.
+	 *
+	 * @param job
+	 *            the completed job
+	 * @param successful
+	 *            true if the job completed successfully
+	 * @param millis
+	 *            duration of the job in milliseconds
+	 * @throws IOException
+	 */
+	public synchronized void addJob(Job job, boolean successful, long millis)
+			throws IOException {
+		JobRun run = new JobRun(job.getJobName(), String.valueOf(job
+				.getJobID()), successful, millis);
+
+		if (job.getCounters() != null) {
+			for (CounterGroup group : job.getCounters()) {
+				Map<String, Long> values = new LinkedHashMap<String, Long>();
+				for (Counter counter : group)
+					values.put(counter.getName(), counter.getValue());
+				run.counters.put(group.getName(), values);
+			}
+		}
+		jobs.add(run);
+	}
+
+	/**
+	 * Writes the report as a JSON file.
+	 *
+	 * @param file
+	 *            local report file
+	 * @throws IOException
+	 */
+	public synchronized void write(File file) throws IOException {
+		try (JsonGenerator json = new JsonFactory().createJsonGenerator(file,
+				JsonEncoding.UTF8)) {
+			json.useDefaultPrettyPrinter();
+			json.writeStartObject();
+			json.writeStringField("iteration", iteration);
+
+			json.writeArrayFieldStart("phases");
+			for (Phase phase : phases) {
+				json.writeStartObject();
+				json.writeStringField("name", phase.name);
+				json.writeNumberField("millis", phase.millis);
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+
+			json.writeArrayFieldStart("jobs");
+			for (JobRun run : jobs) {
+				json.writeStartObject();
+				json.writeStringField("name", run.name);
+				json.writeStringField("id", run.id);
+				json.writeBooleanField("successful", run.successful);
+				json.writeNumberField("millis", run.millis);
+				json.writeObjectFieldStart("counters");
+				for (Map.Entry<String, Map<String, Long>> group : run.counters
+						.entrySet()) {
+					json.writeObjectFieldStart(group.getKey());
+					for (Map.Entry<String, Long> counter : group.getValue()
+							.entrySet())
+						json.writeNumberField(counter.getKey(),
+								counter.getValue());
+					json.writeEndObject();
+				}
+				json.writeEndObject();
+				json.writeEndObject();
+			}
+			json.writeEndArray();
+
+			json.writeEndObject();
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package be.casisto.tinkering.wikipedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Persistent state of an indexer run, stored as a properties file in the
+ * output directory. The state records the checksum of the input and the
+ * phases of the run that completed, so a rerun on the same input can skip
+ * them.
+ *
+ * @author jiri
+ */
+public class RunState {
+
+	/**
+	 * Bytes of the input read for its checksum.
+	 */
+	private static final int CHECKSUM_BLOCK = 1 << 20;
+	private static final int CHECKSUM_BLOCKS = 64;
+
+	private static final String DONE = "done.";
+
+	private final File file;
+	private final Properties properties = new Properties();
+
+	/**
+	 * Loads the state from a file, empty if the file does not exist yet.
+	 *
+	 * @param file
+	 *            local state file
+	 * @throws IOException
+	 */
+	public RunState(File file) throws IOException {
+		this.file = file;
+		if (file.exists()) {
+			try (InputStream in = Files.newInputStream(file.toPath())) {
+				properties.load(in);
+			}
+		}
+	}
+
+	/**
+	 * Check if a phase of the run has completed.
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public boolean isDone(String phase) {
+		return properties.containsKey(DONE + phase);
+	}
+
+	/**
+	 * Records a completed phase and stores the state.
+	 *
+	 * @param phase
+	 * @throws IOException
+	 */
+	public void setDone(String phase) throws IOException {
+		properties.setProperty(DONE + phase,
+				Long.toString(System.currentTimeMillis()));
+		store();
+	}
+
+	/**
+	 * Returns a value of the state.
+	 *
+	 * @param key
+	 * @return the value or null
+	 */
+	public String get(String key) {
+		return properties.getProperty(key);
+	}
+
+	/**
+	 * Sets a value of the state and stores the state.
+	 *
+	 * @param key
+	 * @param value
+	 * @throws IOException
+	 */
+	public void set(String key, String value) throws IOException {
+		properties.setProperty(key, value);
+		store();
+	}
+
+	/**
+	 * Stores the state, replacing the state file at once so a crash never
+	 * leaves a partial state file.
+	 *
+	 * @throws IOException
+	 */
+	private void store() throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+			properties.store(out, "Wikipedia indexer run state");
+		}
+		Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Computes the checksum of an input file: the MD5 digest of its length and
+	 * of 64 blocks of 1 MB spread evenly over the file. Reading the whole of a
+	 * dump of tens of gigabytes would take minutes, the sampled blocks tell
+	 * different dumps apart.
+	 *
+	 * @param input
+	 *            local input file
+	 * @return the hex encoded checksum
+	 * @throws IOException
+	 */
+	public static String checksum(File input) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+
+		try (RandomAccessFile in = new RandomAccessFile(input, "r")) {
+			long length = in.length();
+			digest.update(Long.toString(length).getBytes("UTF-8"));
+
+			byte[] block = new byte[CHECKSUM_BLOCK];
+			long stride = Math.max(CHECKSUM_BLOCK, length / CHECKSUM_BLOCKS);
+			for (long pos = 0; pos < length; pos += stride) {
+				in.seek(pos);
+				int n = (int) Math.min(block.length, length - pos);
+				in.readFully(block, 0, n);
+				digest.update(block, 0, n);
+			}
+		}
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest())
+			hex.append(String.format("%02x", b & 0xff));
+		return hex.toString();
+	}
+
+}
@@ -0,0 +1,64 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Output format for the binary links index. Writes block compressed sequence
+ * files with the page title as key and its adjacency list as value.
+ * 
+ * @author jiri
+ */
+public class AdjacencyOutputFormat extends
+		SequenceFileOutputFormat<Text, AdjacencyWritable> {
+
+	/**
+	 * Creates a block compressed sequence file writer. The codec can be
+	 * changed through the usual output compression settings.
+	 */
+	@Override
+	public RecordWriter<Text, AdjacencyWritable> getRecordWriter(
+			TaskAttemptContext context) throws IOException,
+			InterruptedException {
+		Configuration conf = context.getConfiguration();
+
+		Class<? extends CompressionCodec> codecClass = getOutputCompressorClass(
+				context, DefaultCodec.class);
+		CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+
+		Path file = getDefaultWorkFile(context, "");
+		FileSystem fs = file.getFileSystem(conf);
+
+		final SequenceFile.Writer out = SequenceFile.createWriter(fs, conf,
+				file, Text.class, AdjacencyWritable.class,
+				CompressionType.BLOCK, codec, context);
+
+		return new RecordWriter<Text, AdjacencyWritable>() {
+
+			@Override
+			public void write(Text key, AdjacencyWritable value)
+					throws IOException {
+				out.append(key, value);
+			}
+
+			@Override
+			public void close(TaskAttemptContext context) throws IOException {
+				out.close();
+			}
+
+		};
+	}
+
+}
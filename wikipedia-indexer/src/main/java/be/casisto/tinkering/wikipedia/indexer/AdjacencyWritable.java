@@ -0,0 +1,125 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Writable for a sorted adjacency list of page titles. The list is written
+ * as the varint number of links, followed by the links in UTF-8. Each link is
+ * front coded against the previous one: the varint length of the prefix they
+ * share, the varint length of the rest and the rest of the bytes. As the
+ * links are sorted, neighbouring titles often share a long prefix.
+ * 
+ * @author jiri
+ */
+public class AdjacencyWritable implements Writable {
+
+	private final LinkSet links = new LinkSet();
+
+	private byte[] buffer = new byte[256];
+
+	/**
+	 * Returns the links of the adjacency list. The links need to be sorted
+	 * before the list is written.
+	 * 
+	 * @return
+	 */
+	public LinkSet getLinks() {
+		return links;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		byte[] bytes = links.getBytes();
+		int size = links.size();
+
+		WritableUtils.writeVInt(out, size);
+
+		int previousStart = 0;
+		int previousLength = 0;
+		for (int i = 0; i < size; i++) {
+			int start = links.getStart(i);
+			int length = links.getLength(i);
+
+			int prefix = 0;
+			int max = Math.min(length, previousLength);
+			while (prefix < max
+					&& bytes[start + prefix] == bytes[previousStart + prefix])
+				prefix++;
+
+			WritableUtils.writeVInt(out, prefix);
+			WritableUtils.writeVInt(out, length - prefix);
+			out.write(bytes, start + prefix, length - prefix);
+
+			previousStart = start;
+			previousLength = length;
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		links.clear();
+
+		int size = WritableUtils.readVInt(in);
+
+		for (int i = 0; i < size; i++) {
+			int prefix = WritableUtils.readVInt(in);
+			int suffix = WritableUtils.readVInt(in);
+
+			// the previous link is still at the start of the buffer
+			int length = prefix + suffix;
+			if (length > buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2,
+						length));
+			in.readFully(buffer, prefix, suffix);
+
+			links.add(buffer, 0, length);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof AdjacencyWritable))
+			return false;
+
+		LinkSet other = ((AdjacencyWritable) o).links;
+		if (links.size() != other.size())
+			return false;
+
+		for (int i = 0; i < links.size(); i++) {
+			if (WritableComparator.compareBytes(links.getBytes(),
+					links.getStart(i), links.getLength(i), other.getBytes(),
+					other.getStart(i), other.getLength(i)) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = links.size();
+		for (int i = 0; i < links.size(); i++)
+			hash = 31 * hash
+					+ WritableComparator.hashBytes(links.getBytes(),
+							links.getStart(i), links.getLength(i));
+		return hash;
+	}
+
+	/**
+	 * Returns the comma-delimited list of links, as in the text index.
+	 */
+	@Override
+	public String toString() {
+		Text list = new Text();
+		links.join(list, (byte) ',');
+		return list.toString();
+	}
+
+}
@@ -0,0 +1,35 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the backlinks index. Maps every link of the links
+ * index reversed, as key=linked page value=title pair, and adds a vertex
+ * marker for every page of the links index, so pages without incoming links
+ * are in the in-degree side output too.
+ * 
+ * @author jiri
+ */
+public class BacklinkMapper extends LinkListMapper<Text, Text> {
+
+	private final Text vertex = new Text();
+
+	@Override
+	protected void page(Text title,
+			Mapper<Text, Writable, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		context.write(title, vertex);
+	}
+
+	@Override
+	protected void link(Text title, Text link,
+			Mapper<Text, Writable, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		context.write(link, title);
+	}
+
+}
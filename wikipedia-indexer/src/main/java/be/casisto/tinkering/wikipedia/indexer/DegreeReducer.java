@@ -0,0 +1,47 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Reducer implementation for the pages index with degrees. The out-degree and
+ * in-degree counts of a page are packed in a single long, the out-degree in
+ * the high and the in-degree in the low 32 bits, so both are summed at once
+ * by a LongSumReducer combiner.
+ *
+ * @author jiri
+ */
+public class DegreeReducer extends Reducer<Text, LongWritable, Text, Text> {
+
+	/**
+	 * Count of a single outgoing link.
+	 */
+	public static final long OUT = 1L << 32;
+
+	/**
+	 * Count of a single incoming link.
+	 */
+	public static final long IN = 1L;
+
+	private final Text degrees = new Text();
+
+	/**
+	 * Reduces the counts of a page to key=title value=out-degree TAB
+	 * in-degree.
+	 */
+	@Override
+	protected void reduce(Text key, Iterable<LongWritable> values,
+			Reducer<Text, LongWritable, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		long sum = 0;
+		for (LongWritable value : values)
+			sum += value.get();
+
+		degrees.set((sum >>> 32) + "\t" + (sum & 0xffffffffL));
+		context.write(key, degrees);
+	}
+
+}
@@ -0,0 +1,96 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.partition.InputSampler;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the pages index with degrees for the partition file of a
+ * TotalOrderPartitioner on the sort keys of the {@link DegreeOrderMapper}.
+ * The random sampler of Hadoop samples the keys of the input format, the
+ * titles, while the job is partitioned on degree and title.
+ *
+ * @author jiri
+ */
+public class DegreeSampler implements InputSampler.Sampler<Text, Text> {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(DegreeSampler.class);
+
+	private final int samples;
+	private final int maxSplits;
+
+	/**
+	 * Creates a new sampler.
+	 *
+	 * @param samples
+	 *            maximum number of pages to sample
+	 * @param maxSplits
+	 *            maximum number of splits to read
+	 */
+	public DegreeSampler(int samples, int maxSplits) {
+		this.samples = samples;
+		this.maxSplits = maxSplits;
+	}
+
+	/**
+	 * Reads the pages from evenly spaced splits, keeping a random sample of
+	 * their sort keys.
+	 */
+	@Override
+	public Text[] getSample(InputFormat<Text, Text> inf, Job job)
+			throws IOException, InterruptedException {
+		List<InputSplit> splits = inf.getSplits(job);
+		int step = Math.max(1, splits.size() / maxSplits);
+
+		Random random = new Random(splits.size());
+		List<Text> keys = new ArrayList<Text>();
+		long seen = 0;
+
+		for (int i = 0; i < splits.size(); i += step) {
+			TaskAttemptContext context = new TaskAttemptContextImpl(
+					job.getConfiguration(), new TaskAttemptID());
+			RecordReader<Text, Text> reader = inf.createRecordReader(
+					splits.get(i), context);
+			try {
+				reader.initialize(splits.get(i), context);
+				while (reader.nextKeyValue()) {
+					// reservoir sampling
+					seen++;
+					if (keys.size() < samples) {
+						Text key = new Text();
+						DegreeOrderMapper.sortKey(reader.getCurrentKey(),
+								reader.getCurrentValue(), key);
+						keys.add(key);
+					} else {
+						long k = (long) (random.nextDouble() * seen);
+						if (k < samples)
+							DegreeOrderMapper.sortKey(reader.getCurrentKey(),
+									reader.getCurrentValue(),
+									keys.get((int) k));
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		log.info("Sampled {} of {} pages from {} splits", keys.size(), seen,
+				(splits.size() + step - 1) / step);
+		return keys.toArray(new Text[keys.size()]);
+	}
+
+}
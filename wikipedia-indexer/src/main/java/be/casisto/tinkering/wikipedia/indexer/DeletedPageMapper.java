@@ -0,0 +1,32 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for a list of deleted page titles, one per line.
+ * Writes the same empty marker as a changed page without links, so the
+ * previous links of the page are dropped by the merge.
+ * 
+ * @author jiri
+ */
+public class DeletedPageMapper extends Mapper<Text, Text, Text, Text> {
+
+	private final Text join = new Text();
+	private final Text marker = new Text();
+
+	@Override
+	protected void map(Text key, Text value,
+			Mapper<Text, Text, Text, Text>.Context context) throws IOException,
+			InterruptedException {
+		if (key.getLength() == 0)
+			return;
+
+		JoinKey.set(join, key, JoinKey.TARGET);
+		context.write(join, marker);
+		context.getCounter(IndexerCounter.DELETED_PAGES).increment(1);
+	}
+
+}
@@ -0,0 +1,50 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Reducer implementation for the merge of an incremental dump with the
+ * previous links index. The values of a title are the links from the
+ * incremental dump, if the page changed, followed by its links in the previous
+ * index. The key is updated while iterating, so its tag tells the side of
+ * every value. The links of a changed or deleted page replace the previous
+ * ones, the links of the other pages are kept.
+ * 
+ * @author jiri
+ */
+public class DeltaJoinReducer extends Reducer<Text, Text, Text, Text> {
+
+	private final Text title = new Text();
+
+	/**
+	 * Reduces the key=title value=link pairs of both sides to the key=title
+	 * value=link pairs of the merged index.
+	 */
+	@Override
+	protected void reduce(Text key, Iterable<Text> values,
+			Reducer<Text, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+
+		JoinKey.getTitle(key, title);
+		boolean changed = JoinKey.getTag(key) == JoinKey.TARGET;
+
+		long kept = 0;
+		for (Text value : values) {
+			if (JoinKey.getTag(key) == JoinKey.TARGET) {
+				if (value.getLength() > 0)
+					context.write(title, value);
+			} else if (!changed) {
+				context.write(title, value);
+				kept++;
+			}
+		}
+
+		if (!changed)
+			context.getCounter(IndexerCounter.UNCHANGED_LINKS).increment(kept);
+
+	}
+
+}
@@ -0,0 +1,38 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the changed pages of an incremental dump.
+ * Extracts the links like the PageLinkMapper, but tags them as the delta
+ * side of the merge with the previous links index. Every page also writes an
+ * empty marker, so a changed page replaces its previous links even when it
+ * has no links left.
+ * 
+ * @author jiri
+ */
+public class DeltaLinkMapper extends PageLinkMapper {
+
+	private final Text join = new Text();
+	private final Text marker = new Text();
+
+	@Override
+	protected void page(Mapper<LongWritable, Text, Text, Text>.Context context,
+			Text title) throws IOException, InterruptedException {
+		JoinKey.set(join, title, JoinKey.TARGET);
+		context.write(join, marker);
+		context.getCounter(IndexerCounter.CHANGED_PAGES).increment(1);
+	}
+
+	@Override
+	protected void write(Mapper<LongWritable, Text, Text, Text>.Context context,
+			Text title, Text link) throws IOException, InterruptedException {
+		JoinKey.set(join, title, JoinKey.TARGET);
+		context.write(join, link);
+	}
+
+}
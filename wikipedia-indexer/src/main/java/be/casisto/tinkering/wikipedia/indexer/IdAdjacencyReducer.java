@@ -0,0 +1,62 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Reducer implementation for the page id join. The values of a linking page
+ * are its id followed by the ids of the pages it links to. Writes the sorted
+ * ids of the linked pages as the adjacency list of the id of the page.
+ * 
+ * @author jiri
+ */
+public class IdAdjacencyReducer extends
+		Reducer<Text, Text, IntWritable, IdAdjacencyWritable> {
+
+	private final IntWritable id = new IntWritable();
+	private final IdAdjacencyWritable adjacency = new IdAdjacencyWritable();
+
+	/**
+	 * Reduces the key=title value=id or linked id pairs to a single output pair
+	 * with key=id value=adjacency list.
+	 */
+	@Override
+	protected void reduce(Text key, Iterable<Text> values,
+			Reducer<Text, Text, IntWritable, IdAdjacencyWritable>.Context context)
+			throws IOException, InterruptedException {
+
+		Iterator<Text> it = values.iterator();
+		if (JoinKey.getTag(key) != JoinKey.TARGET)
+			return; // every title has an id
+
+		id.set(parseInt(it.next()));
+
+		adjacency.clear();
+		while (it.hasNext())
+			adjacency.add(parseInt(it.next()));
+
+		// pages that are only linked to have no adjacency list
+		if (adjacency.size() == 0)
+			return;
+
+		adjacency.sort();
+		context.write(id, adjacency);
+
+	}
+
+	/**
+	 * Parses a non-negative decimal id from the bytes of the text.
+	 */
+	private static int parseInt(Text text) {
+		byte[] bytes = text.getBytes();
+		int value = 0;
+		for (int i = 0; i < text.getLength(); i++)
+			value = value * 10 + (bytes[i] - '0');
+		return value;
+	}
+
+}
@@ -0,0 +1,125 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Writable for a sorted adjacency list of page ids. The list is written as
+ * the varint number of ids, followed by the varint differences between
+ * consecutive ids, starting from zero.
+ * 
+ * @author jiri
+ */
+public class IdAdjacencyWritable implements Writable {
+
+	private int[] ids = new int[64];
+	private int size = 0;
+
+	/**
+	 * Adds an id to the list.
+	 * 
+	 * @param id
+	 */
+	public void add(int id) {
+		if (size == ids.length)
+			ids = Arrays.copyOf(ids, size * 2);
+		ids[size++] = id;
+	}
+
+	/**
+	 * Sorts the ids and removes duplicate ids.
+	 */
+	public void sort() {
+		Arrays.sort(ids, 0, size);
+
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (distinct == 0 || ids[i] != ids[distinct - 1])
+				ids[distinct++] = ids[i];
+		}
+		size = distinct;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int get(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * Removes all ids from the list.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, size);
+
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			WritableUtils.writeVInt(out, ids[i] - previous);
+			previous = ids[i];
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		clear();
+
+		int count = WritableUtils.readVInt(in);
+
+		int previous = 0;
+		for (int i = 0; i < count; i++) {
+			previous += WritableUtils.readVInt(in);
+			add(previous);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof IdAdjacencyWritable))
+			return false;
+
+		IdAdjacencyWritable other = (IdAdjacencyWritable) o;
+		if (size != other.size)
+			return false;
+
+		for (int i = 0; i < size; i++) {
+			if (ids[i] != other.ids[i])
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = size;
+		for (int i = 0; i < size; i++)
+			hash = 31 * hash + ids[i];
+		return hash;
+	}
+
+	/**
+	 * Returns the comma-delimited list of ids, as in the text index.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder list = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				list.append(',');
+			list.append(ids[i]);
+		}
+		return list.toString();
+	}
+
+}
@@ -0,0 +1,34 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the id side of the id joins. Maps every title of
+ * the ids index, text or binary, as its id on the title.
+ * 
+ * @author jiri
+ */
+public class IdTargetMapper extends Mapper<Text, Writable, Text, Text> {
+
+	private final Text join = new Text();
+	private final Text id = new Text();
+
+	@Override
+	protected void map(Text key, Writable value,
+			Mapper<Text, Writable, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+
+		JoinKey.set(join, key, JoinKey.TARGET);
+		if (value instanceof IntWritable)
+			id.set(Integer.toString(((IntWritable) value).get()));
+		else
+			id.set((Text) value);
+		context.write(join, id);
+	}
+
+}
@@ -0,0 +1,28 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the degrees of the pages index. Maps every link of
+ * the links index to a key=linked page value=in-degree count pair. The links
+ * of a page are distinct, so every count is a page linking to the key.
+ *
+ * @author jiri
+ */
+public class InDegreeMapper extends LinkListMapper<Text, LongWritable> {
+
+	private final LongWritable count = new LongWritable(DegreeReducer.IN);
+
+	@Override
+	protected void link(Text title, Text link,
+			Mapper<Text, Writable, Text, LongWritable>.Context context)
+			throws IOException, InterruptedException {
+		context.write(link, count);
+	}
+
+}
@@ -0,0 +1,28 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the previous links index in the merge with an
+ * incremental dump. Maps every link as key=title value=link pair, tagged as
+ * the link side of the join.
+ * 
+ * @author jiri
+ */
+public class IndexLinkMapper extends LinkListMapper<Text, Text> {
+
+	private final Text join = new Text();
+
+	@Override
+	protected void link(Text title, Text link,
+			Mapper<Text, Writable, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		JoinKey.set(join, title, JoinKey.LINK);
+		context.write(join, link);
+	}
+
+}
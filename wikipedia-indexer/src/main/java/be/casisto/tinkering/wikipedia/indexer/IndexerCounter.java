@@ -0,0 +1,90 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+/**
+ * Hadoop counters of the indexer jobs.
+ * 
+ * @author jiri
+ */
+public enum IndexerCounter {
+
+	/**
+	 * Pages passed to the link mapper by the record reader.
+	 */
+	PAGES_READ,
+
+	/**
+	 * Uncompressed bytes of the dump scanned by the record reader.
+	 */
+	BYTES_SCANNED,
+
+	/**
+	 * Pages skipped by the mapper for a missing title or text.
+	 */
+	MALFORMED_PAGES,
+
+	/**
+	 * Pages skipped by the mapper for a colon in their title, i.e. pages
+	 * outside the main namespace.
+	 */
+	SPECIAL_PAGES,
+
+	/**
+	 * Distinct links emitted by the link mapper.
+	 */
+	LINKS_EMITTED,
+
+	/**
+	 * Nanoseconds spent by the link mapper in parsing pages and extracting
+	 * links, without the time to emit them.
+	 */
+	PARSE_NANOS,
+
+	/**
+	 * Pages skipped by the record reader for their namespace or title prefix.
+	 */
+	FILTERED_PAGES,
+
+	/**
+	 * Duplicate link records that were not emitted by the mapper or combiner.
+	 * The empty records that mark a linked page as a vertex are not counted.
+	 */
+	LINK_RECORDS_SAVED,
+
+	/**
+	 * Links to pages that are not in the title filter, dropped by the mapper.
+	 */
+	RED_LINKS,
+
+	/**
+	 * Redirect pages that were skipped as a source of links.
+	 */
+	REDIRECT_PAGES,
+
+	/**
+	 * Redirects or links that were rewritten to the target of a redirect.
+	 */
+	REDIRECTS_RESOLVED,
+
+	/**
+	 * Pages of an incremental dump that replace their previous links.
+	 */
+	CHANGED_PAGES,
+
+	/**
+	 * Deleted pages that were removed from the previous links index.
+	 */
+	DELETED_PAGES,
+
+	/**
+	 * Links of the previous links index that were kept by an incremental
+	 * update.
+	 */
+	UNCHANGED_LINKS,
+
+	/**
+	 * Distinct page titles added to the title filter, which is sized for
+	 * them.
+	 */
+	FILTERED_TITLES
+
+}
@@ -0,0 +1,115 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Map output key for the reduce-side joins on a page title. The key is the
+ * title followed by a zero byte and a tag for the side of the join. Keys are
+ * partitioned and grouped on the title only, so all records of a title reach
+ * the same reduce call, sorted with the target record before the links.
+ * 
+ * @author jiri
+ */
+public class JoinKey {
+
+	/**
+	 * Tag of the record with the target of the title: its redirect target or
+	 * its id.
+	 */
+	public static final byte TARGET = 0;
+
+	/**
+	 * Tag of the records of pages that link to the title.
+	 */
+	public static final byte LINK = 1;
+
+	private static final int SUFFIX_LENGTH = 2;
+
+	private static final byte[][] SUFFIXES = { { 0, TARGET }, { 0, LINK } };
+
+	private JoinKey() {
+	}
+
+	/**
+	 * Sets the join key for a title.
+	 * 
+	 * @param key
+	 *            the join key
+	 * @param title
+	 *            page title
+	 * @param tag
+	 *            side of the join
+	 */
+	public static void set(Text key, Text title, byte tag) {
+		key.set(title);
+		key.append(SUFFIXES[tag], 0, SUFFIX_LENGTH);
+	}
+
+	/**
+	 * Returns the side of the join of the key.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public static byte getTag(Text key) {
+		return key.getBytes()[key.getLength() - 1];
+	}
+
+	/**
+	 * Sets the title of the join key.
+	 * 
+	 * @param key
+	 * @param title
+	 */
+	public static void getTitle(Text key, Text title) {
+		title.set(key.getBytes(), 0, key.getLength() - SUFFIX_LENGTH);
+	}
+
+	/**
+	 * Partitions the join keys on their title.
+	 */
+	public static class TitlePartitioner extends Partitioner<Text, Text> {
+
+		@Override
+		public int getPartition(Text key, Text value, int numPartitions) {
+			int hash = WritableComparator.hashBytes(key.getBytes(),
+					key.getLength() - SUFFIX_LENGTH);
+			return (hash & Integer.MAX_VALUE) % numPartitions;
+		}
+
+	}
+
+	/**
+	 * Groups the join keys on their title.
+	 */
+	public static class TitleComparator extends WritableComparator {
+
+		public TitleComparator() {
+			super(Text.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+			int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+			return compareBytes(b1, s1 + n1, l1 - n1 - SUFFIX_LENGTH, b2, s2
+					+ n2, l2 - n2 - SUFFIX_LENGTH);
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public int compare(WritableComparable a, WritableComparable b) {
+			Text t1 = (Text) a;
+			Text t2 = (Text) b;
+			return compareBytes(t1.getBytes(), 0, t1.getLength()
+					- SUFFIX_LENGTH, t2.getBytes(), 0, t2.getLength()
+					- SUFFIX_LENGTH);
+		}
+
+	}
+
+}
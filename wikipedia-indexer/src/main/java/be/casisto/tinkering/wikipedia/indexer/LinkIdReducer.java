@@ -0,0 +1,39 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Reducer implementation for the link id join. The values of a linked page
+ * are its id followed by the pages that link to it. Every link is written as
+ * the id of the linked page, keyed on the join key of the linking page for
+ * the join with the ids of the linking pages.
+ * 
+ * @author jiri
+ */
+public class LinkIdReducer extends Reducer<Text, Text, Text, Text> {
+
+	private final Text id = new Text();
+	private final Text join = new Text();
+
+	@Override
+	protected void reduce(Text key, Iterable<Text> values,
+			Reducer<Text, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+
+		Iterator<Text> it = values.iterator();
+		if (JoinKey.getTag(key) != JoinKey.TARGET)
+			return; // every title has an id
+
+		id.set(it.next());
+		while (it.hasNext()) {
+			JoinKey.set(join, it.next(), JoinKey.LINK);
+			context.write(join, id);
+		}
+
+	}
+
+}
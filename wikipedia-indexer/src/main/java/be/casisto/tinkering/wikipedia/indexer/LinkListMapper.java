@@ -0,0 +1,82 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Base class for the mappers that read the links index, in the text format
+ * (key=title value=comma delimited links) as well as in the binary format
+ * (key=title value=adjacency list). Every link of the page is passed to
+ * {@link #link(Text, Text, Mapper.Context)}.
+ * 
+ * @author jiri
+ */
+public abstract class LinkListMapper<KEYOUT, VALUEOUT> extends
+		Mapper<Text, Writable, KEYOUT, VALUEOUT> {
+
+	private final Text link = new Text();
+
+	@Override
+	protected void map(Text key, Writable value,
+			Mapper<Text, Writable, KEYOUT, VALUEOUT>.Context context)
+			throws IOException, InterruptedException {
+
+		page(key, context);
+
+		if (value instanceof AdjacencyWritable) {
+			LinkSet links = ((AdjacencyWritable) value).getLinks();
+			for (int i = 0; i < links.size(); i++) {
+				links.get(i, link);
+				link(key, link, context);
+			}
+			return;
+		}
+
+		Text list = (Text) value;
+		byte[] bytes = list.getBytes();
+		int length = list.getLength();
+
+		int start = 0;
+		while (start < length) {
+			int end = WikiPage.indexOf(bytes, start, length, (byte) ',');
+			if (end < 0)
+				end = length;
+			link.set(bytes, start, end - start);
+			link(key, link, context);
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Called for every page of the links index.
+	 * 
+	 * @param title
+	 *            title of the page
+	 * @param context
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	protected void page(Text title,
+			Mapper<Text, Writable, KEYOUT, VALUEOUT>.Context context)
+			throws IOException, InterruptedException {
+	}
+
+	/**
+	 * Called for every link of a page of the links index.
+	 * 
+	 * @param title
+	 *            title of the page
+	 * @param link
+	 *            title of the linked page
+	 * @param context
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	protected abstract void link(Text title, Text link,
+			Mapper<Text, Writable, KEYOUT, VALUEOUT>.Context context)
+			throws IOException, InterruptedException;
+
+}
@@ -0,0 +1,222 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.util.IndexedSortable;
+import org.apache.hadoop.util.QuickSort;
+
+/**
+ * Set of links, stored as UTF-8 bytes in a single growing byte array. The set
+ * is cleared and reused for every page or key, so adding links does not
+ * allocate any objects once the arrays are large enough.
+ *
+ * The links can be sorted in the byte order of Text and joined into a single
+ * delimited list in linear time.
+ *
+ * @author jiri
+ */
+public class LinkSet implements IndexedSortable {
+
+	private static final QuickSort sorter = new QuickSort();
+
+	private byte[] bytes = new byte[4096];
+	private int length = 0;
+
+	private int[] starts = new int[64];
+	private int[] lengths = new int[64];
+	private int[] hashes = new int[64];
+	private int size = 0;
+
+	// open addressing hash table with link index + 1, 0 for an empty slot
+	private int[] table = new int[128];
+
+	private byte[] joined = new byte[4096];
+
+	/**
+	 * Adds a link if it is not in the set yet.
+	 *
+	 * @param link
+	 * @return true if the link was added
+	 */
+	public boolean add(Text link) {
+		return add(link.getBytes(), 0, link.getLength());
+	}
+
+	/**
+	 * Adds a link if it is not in the set yet.
+	 *
+	 * @param link
+	 *            bytes of the link
+	 * @param start
+	 *            start of the link
+	 * @param len
+	 *            length of the link
+	 * @return true if the link was added
+	 */
+	public boolean add(byte[] link, int start, int len) {
+		int hash = WritableComparator.hashBytes(link, start, len);
+
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		while (table[slot] != 0) {
+			int i = table[slot] - 1;
+			if (hashes[i] == hash
+					&& WritableComparator.compareBytes(bytes, starts[i],
+							lengths[i], link, start, len) == 0)
+				return false;
+			slot = (slot + 1) & mask;
+		}
+
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+			hashes = Arrays.copyOf(hashes, size * 2);
+		}
+		if (length + len > bytes.length)
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length
+					+ len));
+
+		System.arraycopy(link, start, bytes, length, len);
+		starts[size] = length;
+		lengths[size] = len;
+		hashes[size] = hash;
+		length += len;
+		table[slot] = ++size;
+
+		// keep the load factor below one half
+		if (size * 2 > table.length)
+			rehash(table.length * 2);
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of links in the set.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sets the link at the given index, in the order the links were added.
+	 *
+	 * @param index
+	 * @param link
+	 */
+	public void get(int index, Text link) {
+		link.set(bytes, starts[index], lengths[index]);
+	}
+
+	/**
+	 * Returns the bytes that hold all links of the set.
+	 *
+	 * @return
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the start of the link with the given index in the bytes of the
+	 * set.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getStart(int index) {
+		return starts[index];
+	}
+
+	/**
+	 * Returns the length of the link with the given index.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	/**
+	 * Sorts the links in the byte order of Text.
+	 */
+	public void sort() {
+		if (size < 2)
+			return;
+
+		sorter.sort(this, 0, size);
+		rehash(table.length);
+	}
+
+	/**
+	 * Joins the links, in their current order, into a delimited list.
+	 *
+	 * @param list
+	 *            output for the list
+	 * @param delimiter
+	 *            delimiter between the links
+	 */
+	public void join(Text list, byte delimiter) {
+		int len = Math.max(0, length + size - 1);
+		if (len > joined.length)
+			joined = new byte[Math.max(joined.length * 2, len)];
+
+		int pos = 0;
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				joined[pos++] = delimiter;
+			System.arraycopy(bytes, starts[i], joined, pos, lengths[i]);
+			pos += lengths[i];
+		}
+
+		list.set(joined, 0, len);
+	}
+
+	@Override
+	public int compare(int i, int j) {
+		return WritableComparator.compareBytes(bytes, starts[i], lengths[i],
+				bytes, starts[j], lengths[j]);
+	}
+
+	@Override
+	public void swap(int i, int j) {
+		swap(starts, i, j);
+		swap(lengths, i, j);
+		swap(hashes, i, j);
+	}
+
+	private static void swap(int[] array, int i, int j) {
+		int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+
+	/**
+	 * Removes all links from the set.
+	 */
+	public void clear() {
+		// don't keep clearing a large table after a hub page
+		if (table.length > 1024)
+			table = new int[128];
+		else if (size > 0)
+			Arrays.fill(table, 0);
+		size = 0;
+		length = 0;
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = hashes[i] & mask;
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+			table[slot] = i + 1;
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the link side of the link id join. Maps every
+ * link of the links index as its source on the title of the linked page.
+ * 
+ * @author jiri
+ */
+public class LinkSourceMapper extends LinkListMapper<Text, Text> {
+
+	private final Text join = new Text();
+
+	@Override
+	protected void link(Text title, Text link,
+			Mapper<Text, Writable, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		JoinKey.set(join, link, JoinKey.LINK);
+		context.write(join, title);
+	}
+
+}
@@ -0,0 +1,27 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the link side of the link join. Extracts the
+ * links like the PageLinkMapper, but maps them as key=link value=title pairs
+ * so they can be joined with the redirects on the link target.
+ * 
+ * @author jiri
+ */
+public class LinkTargetMapper extends PageLinkMapper {
+
+	private final Text join = new Text();
+
+	@Override
+	protected void write(Mapper<LongWritable, Text, Text, Text>.Context context,
+			Text title, Text link) throws IOException, InterruptedException {
+		JoinKey.set(join, link, JoinKey.LINK);
+		context.write(join, title);
+	}
+
+}
@@ -0,0 +1,27 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the resolved links. Passes the key=title
+ * value=link pairs on and adds a vertex marker for the linked page, like the
+ * PageLinkMapper does.
+ * 
+ * @author jiri
+ */
+public class LinkVertexMapper extends Mapper<Text, Text, Text, Text> {
+
+	private final Text vertex = new Text();
+
+	@Override
+	protected void map(Text key, Text value,
+			Mapper<Text, Text, Text, Text>.Context context) throws IOException,
+			InterruptedException {
+		context.write(key, value);
+		context.write(value, vertex);
+	}
+
+}
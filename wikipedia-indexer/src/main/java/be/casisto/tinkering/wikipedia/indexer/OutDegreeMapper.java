@@ -0,0 +1,31 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the degrees of the pages index. Maps every page of
+ * the pages side output of the links job, with the number of distinct links
+ * of the page as value, to a key=title value=out-degree count pair.
+ *
+ * @author jiri
+ */
+public class OutDegreeMapper extends
+		Mapper<Text, Text, Text, LongWritable> {
+
+	private final LongWritable count = new LongWritable();
+
+	@Override
+	protected void map(Text key, Text value,
+			Mapper<Text, Text, Text, LongWritable>.Context context)
+			throws IOException, InterruptedException {
+		long degree = value.getLength() == 0 ? 0 : Long.parseLong(value
+				.toString());
+		count.set(degree * DegreeReducer.OUT);
+		context.write(key, count);
+	}
+
+}
@@ -0,0 +1,82 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+/**
+ * Reducer implementation for the binary links index. Writes the sorted and
+ * distinct outgoing links of a wiki page as an adjacency list, and every page
+ * to the pages side output, optionally with its number of distinct links.
+ * 
+ * @author jiri
+ */
+public class PageAdjacencyReducer extends
+		Reducer<Text, Text, Text, AdjacencyWritable> {
+
+	private final AdjacencyWritable adjacency = new AdjacencyWritable();
+	private final Text degree = new Text();
+
+	private boolean degrees = false;
+	private MultipleOutputs<Text, AdjacencyWritable> outputs;
+
+	@Override
+	protected void setup(
+			Reducer<Text, Text, Text, AdjacencyWritable>.Context context)
+			throws IOException, InterruptedException {
+		degrees = context.getConfiguration().getBoolean(
+				PageLinkReducer.DEGREES, false);
+		outputs = createOutputs(context);
+	}
+
+	/**
+	 * Reduces the key=title value=link pairs to a single output pair with
+	 * key=title value=adjacency list. The empty vertex markers are skipped.
+	 */
+	@Override
+	protected void reduce(Text key, Iterable<Text> values,
+			Reducer<Text, Text, Text, AdjacencyWritable>.Context context)
+			throws IOException, InterruptedException {
+
+		LinkSet links = adjacency.getLinks();
+
+		links.clear();
+		for (Text value : values) {
+			if (value.getLength() > 0)
+				links.add(value);
+		}
+
+		degree.clear();
+		if (degrees)
+			degree.set(Integer.toString(links.size()));
+		outputs.write(PageLinkReducer.PAGES, key, degree);
+
+		if (links.size() == 0)
+			return;
+		links.sort();
+
+		context.write(key, adjacency);
+
+	}
+
+	/**
+	 * Creates the side outputs of the reducer.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	protected MultipleOutputs<Text, AdjacencyWritable> createOutputs(
+			Reducer<Text, Text, Text, AdjacencyWritable>.Context context) {
+		return new MultipleOutputs<Text, AdjacencyWritable>(context);
+	}
+
+	@Override
+	protected void cleanup(
+			Reducer<Text, Text, Text, AdjacencyWritable>.Context context)
+			throws IOException, InterruptedException {
+		outputs.close();
+	}
+
+}
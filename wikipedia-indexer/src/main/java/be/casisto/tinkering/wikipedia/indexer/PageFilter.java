@@ -0,0 +1,106 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Decides from the head of a page, the xml up to its first revision, whether
+ * the page is indexed at all. Pages outside the allowed namespaces and pages
+ * with a title that starts with one of the skipped prefixes are filtered, so
+ * the scanner can skip their text without copying it.
+ * 
+ * Pages without a namespace element, as in older dumps, pass the namespace
+ * check.
+ * 
+ * @author jiri
+ */
+public class PageFilter {
+
+	private static final byte[] TITLE_START_TAG = WikiPage.bytes("<title>");
+	private static final byte[] TITLE_END_TAG = WikiPage.bytes("</title>");
+	private static final byte[] NS_START_TAG = WikiPage.bytes("<ns>");
+
+	private final int[] namespaces;
+	private final byte[][] prefixes;
+
+	/**
+	 * Creates a new filter.
+	 * 
+	 * @param namespaces
+	 *            the allowed namespace ids, all namespaces are allowed if
+	 *            empty
+	 * @param prefixes
+	 *            title prefixes of the pages to skip
+	 */
+	public PageFilter(int[] namespaces, String[] prefixes) {
+		this.namespaces = namespaces.clone();
+		Arrays.sort(this.namespaces);
+
+		this.prefixes = new byte[prefixes.length][];
+		for (int i = 0; i < prefixes.length; i++) {
+			Text prefix = new Text(prefixes[i]);
+			this.prefixes[i] = Arrays.copyOf(prefix.getBytes(),
+					prefix.getLength());
+		}
+	}
+
+	/**
+	 * Check if the page is indexed.
+	 * 
+	 * @param bytes
+	 *            head of the page xml
+	 * @param length
+	 *            length of the head
+	 * @return
+	 */
+	public boolean accept(byte[] bytes, int length) {
+		int ns = WikiPage.indexOf(bytes, 0, length, NS_START_TAG);
+		if (ns >= 0 && namespaces.length > 0
+				&& Arrays.binarySearch(namespaces, parseInt(bytes, ns
+						+ NS_START_TAG.length, length)) < 0)
+			return false;
+
+		if (prefixes.length == 0)
+			return true;
+
+		int titleStart = WikiPage.indexOf(bytes, 0, length, TITLE_START_TAG);
+		if (titleStart < 0)
+			return true;
+		titleStart += TITLE_START_TAG.length;
+		int titleEnd = WikiPage.indexOf(bytes, titleStart, length,
+				TITLE_END_TAG);
+		if (titleEnd < 0)
+			return true;
+
+		for (byte[] prefix : prefixes) {
+			if (startsWith(bytes, titleStart, titleEnd, prefix))
+				return false;
+		}
+		return true;
+	}
+
+	private static int parseInt(byte[] bytes, int from, int to) {
+		int i = from;
+		boolean negative = i < to && bytes[i] == '-';
+		if (negative)
+			i++;
+
+		int value = 0;
+		for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++)
+			value = value * 10 + (bytes[i] - '0');
+		return negative ? -value : value;
+	}
+
+	private static boolean startsWith(byte[] bytes, int from, int to,
+			byte[] prefix) {
+		if (to - from < prefix.length)
+			return false;
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[from + i] != prefix[i])
+				return false;
+		}
+		return true;
+	}
+
+}
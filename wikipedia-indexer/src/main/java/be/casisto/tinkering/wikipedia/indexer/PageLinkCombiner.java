@@ -0,0 +1,42 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Combiner implementation that removes duplicate links of a page before the
+ * shuffle.
+ * 
+ * @author jiri
+ */
+public class PageLinkCombiner extends Reducer<Text, Text, Text, Text> {
+
+	private final LinkSet links = new LinkSet();
+
+	/**
+	 * Reduces the key=title value=link pairs to the distinct links of the page.
+	 */
+	@Override
+	protected void reduce(Text key, Iterable<Text> values,
+			Reducer<Text, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+
+		links.clear();
+
+		long duplicates = 0;
+		for (Text value : values) {
+			if (links.add(value))
+				context.write(key, value);
+			else if (value.getLength() > 0)
+				// the empty markers of linked pages are not link records
+				duplicates++;
+		}
+
+		context.getCounter(IndexerCounter.LINK_RECORDS_SAVED).increment(
+				duplicates);
+
+	}
+
+}
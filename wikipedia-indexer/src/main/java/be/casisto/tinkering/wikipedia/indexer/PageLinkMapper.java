@@ -1,10 +1,11 @@
 package be.casisto.tinkering.wikipedia.indexer;
 
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.CharacterCodingException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.net.URI;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
@@ -14,6 +15,21 @@ import org.slf4j.LoggerFactory;
 /**
  * Mapper implementation to extract and map all links in a wikipedia page.
  * 
+ * The page is parsed directly on its UTF-8 bytes and the key and value
+ * objects are reused, so no objects are allocated per page or link. Every
+ * link is only emitted once per page.
+ * 
+ * Every link target is also emitted with an empty vertex marker, so the
+ * reducer sees every page of the graph and can write the pages index as a
+ * side output.
+ * 
+ * With a title filter in the distributed cache, links to titles that are not
+ * in the filter, the red links, are dropped before the shuffle.
+ * 
+ * The page and link counts and the parse time are kept in fields and added
+ * to the task counters when the mapper is done, as are the bracketed spans
+ * rejected per link rule of the tokenizer.
+ * 
  * @author jiri
  */
 public class PageLinkMapper extends Mapper<LongWritable, Text, Text, Text> {
@@ -21,162 +37,191 @@ public class PageLinkMapper extends Mapper<LongWritable, Text, Text, Text> {
 	private static final Logger log = LoggerFactory
 			.getLogger(PageLinkMapper.class);
 
-	private static final Pattern linkPattern = Pattern.compile("\\[.+?\\]");
-
-	private static final String TITLE_START_TAG = "<title>";
-	private static final String TITLE_END_TAG = "</title>";
+	/**
+	 * Skip the links of redirect pages, for when the redirects are resolved.
+	 */
+	public static final String SKIP_REDIRECTS = "wiki.indexer.redirects.skip";
 
 	/**
-	 * Parse the wiki page and extract links. Mapper extracts links to pages and
-	 * outputs key=<title> value=<comma-delimited links> pairs.
+	 * Name of the title filter in the distributed cache. Links to pages that
+	 * do not exist are dropped if set.
 	 */
-	@Override
-	protected void map(LongWritable key, Text value,
-			Mapper<LongWritable, Text, Text, Text>.Context context)
-			throws IOException, InterruptedException {
+	public static final String TITLE_FILTER = "wiki.indexer.redlinks.filter";
 
-		// extract the page title and content
-		String[] titleAndText = parseTitleAndText(value);
+	private boolean skipRedirects = false;
+	private TitleFilter titles;
 
-		if (!isValidPage(titleAndText[0]))
-			return;
+	private final WikiPage page = new WikiPage();
+	private final WikiLinkTokenizer tokenizer = new WikiLinkTokenizer();
+	private final LinkSet links = new LinkSet();
 
-		log.debug("Extracted wiki page with title {}", titleAndText[0]);
+	private final Text title = new Text();
+	private final Text link = new Text();
+	private final Text vertex = new Text();
 
-		// prepare the Text key
-		Text page = new Text(titleAndText[0]);
+	private long pages = 0;
+	private long malformed = 0;
+	private long special = 0;
+	private long emitted = 0;
+	private long parseNanos = 0;
 
-		// extract the links in the page content
-		Matcher matcher = linkPattern.matcher(titleAndText[1]);
-		long count = 0;
-		while (matcher.find()) {
-			String link = matcher.group();
+	@Override
+	protected void setup(Mapper<LongWritable, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		Configuration conf = context.getConfiguration();
+		skipRedirects = conf.getBoolean(SKIP_REDIRECTS, false);
 
-			// Filter non-wiki links out
-			link = parseWikiLink(link);
-			if (link != null) {
-				log.debug("Added link {} to page {}.", ++count, link);
-				context.write(page, new Text(link));
-			}
-		}
+		String filter = conf.get(TITLE_FILTER);
+		if (filter != null)
+			titles = TitleFilter.read(conf, getCacheFile(context, filter));
 	}
 
 	/**
-	 * Extracts the title and page content from the wikipedia page.
+	 * Finds a file of the distributed cache: the local link in the working
+	 * directory if there is one, the cached file itself otherwise.
 	 * 
-	 * @param value
-	 *            raw content of the wiki page
+	 * @param context
+	 * @param name
+	 *            name of the link to the cached file
 	 * @return
-	 * @throws CharacterCodingException
+	 * @throws IOException
 	 */
-	private String[] parseTitleAndText(Text value)
-			throws CharacterCodingException {
-		String[] titleAndText = new String[2];
-
-		int start = value.find(TITLE_START_TAG);
-		int end = value.find(TITLE_END_TAG);
-
-		start += 7; // add the length of the start tag itself;
-
-		// extract the title from the page xml
-		titleAndText[0] = Text.decode(value.getBytes(), start, end - start);
-
-		start = value.find("<text");
-		start = value.find(">", start); // text tag contains additional info:
-										// <text xml:space="preserve"
-										// bytes="17745">
-		end = value.find("</text>", start);
-		start += 1;
-
-		if (start == -1 || end == -1) {
-			return new String[] { "", "" };
+	private static Path getCacheFile(
+			Mapper<LongWritable, Text, Text, Text>.Context context, String name)
+			throws IOException {
+		File link = new File(name);
+		if (link.exists())
+			return new Path(link.getAbsoluteFile().toURI());
+
+		URI[] files = context.getCacheFiles();
+		if (files != null) {
+			for (URI file : files) {
+				if (name.equals(file.getFragment()))
+					return new Path(file.getScheme(), file.getAuthority(),
+							file.getPath());
+			}
 		}
-
-		titleAndText[1] = Text.decode(value.getBytes(), start, end - start);
-
-		return titleAndText;
+		throw new IOException("Title filter " + name
+				+ " not found in the distributed cache");
 	}
 
 	/**
-	 * Parse wiki links to extract the wiki page from the link.
-	 * 
-	 * @param link
-	 * @return
+	 * Parse the wiki page and extract links. Mapper extracts links to pages and
+	 * outputs key=<title> value=<link> pairs.
 	 */
-	private String parseWikiLink(String link) {
+	@Override
+	protected void map(LongWritable key, Text value,
+			Mapper<LongWritable, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
 
-		if (!isWikiLink(link))
-			return null;
+		long start = System.nanoTime();
+		pages++;
 
-		int start = link.startsWith("[[") ? 2 : 1;
-		int end = link.indexOf("]");
+		// extract the page title and content
+		if (!page.parse(value)) {
+			malformed++;
+			parseNanos += System.nanoTime() - start;
+			return;
+		}
+		if (!page.isValidPage()) {
+			special++;
+			parseNanos += System.nanoTime() - start;
+			return;
+		}
 
-		int pipe = link.indexOf("|");
-		if (pipe > 0)
-			end = pipe;
+		page.getTitle(title);
+		page(context, title);
 
-		int part = link.indexOf("#");
-		if (part > 0)
-			end = part;
+		if (skipRedirects && page.isRedirect()) {
+			context.getCounter(IndexerCounter.REDIRECT_PAGES).increment(1);
+			parseNanos += System.nanoTime() - start;
+			return;
+		}
+
+		if (log.isDebugEnabled())
+			log.debug("Extracted wiki page with title {}", title);
+
+		// extract the distinct links in the page content
+		links.clear();
+		long duplicates = 0;
+		long redLinks = 0;
+
+		tokenizer.reset(page.getBytes(), page.getTextStart(),
+				page.getTextEnd());
+		while (tokenizer.next()) {
+			if (links.add(page.getBytes(), tokenizer.getLinkStart(),
+					tokenizer.getLinkLength())) {
+				if (titles != null
+						&& !titles.contains(page.getBytes(),
+								tokenizer.getLinkStart(),
+								tokenizer.getLinkLength())) {
+					redLinks++;
+					continue;
+				}
+				tokenizer.getLink(link);
+
+				long written = System.nanoTime();
+				write(context, title, link);
+				start += System.nanoTime() - written;
+				emitted++;
+			} else
+				duplicates++;
+		}
+		parseNanos += System.nanoTime() - start;
 
-		link = link.substring(start, end);
-		link.replaceAll("\\s", " ");
-		link.replaceAll(",", "");
-		link.replaceAll("&amp", "&");
+		context.getCounter(IndexerCounter.LINK_RECORDS_SAVED).increment(
+				duplicates);
+		if (redLinks > 0)
+			context.getCounter(IndexerCounter.RED_LINKS).increment(redLinks);
+	}
 
-		return link;
+	@Override
+	protected void cleanup(
+			Mapper<LongWritable, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		context.getCounter(IndexerCounter.PAGES_READ).increment(pages);
+		context.getCounter(IndexerCounter.MALFORMED_PAGES)
+				.increment(malformed);
+		context.getCounter(IndexerCounter.SPECIAL_PAGES).increment(special);
+		context.getCounter(IndexerCounter.LINKS_EMITTED).increment(emitted);
+		context.getCounter(IndexerCounter.PARSE_NANOS).increment(parseNanos);
+
+		for (WikiLinkTokenizer.Rule rule : WikiLinkTokenizer.Rule.values()) {
+			long rejected = tokenizer.getRejected(rule);
+			if (rejected > 0)
+				context.getCounter(rule).increment(rejected);
+		}
 	}
 
 	/**
-	 * Check is the link is a page vs category.
+	 * Called for every valid page, before its links are written.
 	 * 
+	 * @param context
 	 * @param title
-	 * @return
+	 *            title of the page
+	 * @throws IOException
+	 * @throws InterruptedException
 	 */
-	public boolean isValidPage(String title) {
-		return !title.contains(":");
+	protected void page(Mapper<LongWritable, Text, Text, Text>.Context context,
+			Text title) throws IOException, InterruptedException {
 	}
 
 	/**
-	 * Check if the link is a valid link to a wiki page.
+	 * Writes a distinct link of the page, and a vertex marker for the linked
+	 * page.
 	 * 
+	 * @param context
+	 * @param title
+	 *            title of the page
 	 * @param link
-	 * @return
+	 *            title of the linked page
+	 * @throws IOException
+	 * @throws InterruptedException
 	 */
-	private boolean isWikiLink(String link) {
-		int start = 1;
-
-		if (link.startsWith("[["))
-			start = 2;
-
-		if (link.length() < start + 2 || link.length() > 100)
-			return false;
-
-		char firstChar = link.charAt(start);
-
-		if (firstChar == '#')
-			return false;
-		if (firstChar == ',')
-			return false;
-		if (firstChar == '.')
-			return false;
-		if (firstChar == '&')
-			return false;
-		if (firstChar == '\'')
-			return false;
-		if (firstChar == '-')
-			return false;
-		if (firstChar == '{')
-			return false;
-
-		if (link.contains(":"))
-			return false; // Matches: external links and translations links
-		if (link.contains(","))
-			return false; // Matches: external links and translations links
-		if (link.contains("&"))
-			return false;
-
-		return true;
+	protected void write(Mapper<LongWritable, Text, Text, Text>.Context context,
+			Text title, Text link) throws IOException, InterruptedException {
+		context.write(title, link);
+		context.write(link, vertex);
 	}
 
 }
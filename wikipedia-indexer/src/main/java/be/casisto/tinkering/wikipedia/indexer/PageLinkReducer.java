@@ -4,37 +4,88 @@ import java.io.IOException;
 
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 
 /**
  * Reducer implementation for listing all outgoing links on a particular wiki
- * page.
+ * page. Every page, with or without outgoing links, is also written to the
+ * pages side output, optionally with its number of distinct links as value.
  * 
  * @author jiri
  */
 public class PageLinkReducer extends Reducer<Text, Text, Text, Text> {
 
+	/**
+	 * Name of the side output with the pages index.
+	 */
+	public static final String PAGES = "pages";
+
+	/**
+	 * Write the number of distinct links of a page as value of the pages
+	 * side output, instead of an empty value.
+	 */
+	public static final String DEGREES = "wiki.indexer.pages.degrees";
+
+	private final LinkSet links = new LinkSet();
+	private final Text linkList = new Text();
+	private final Text degree = new Text();
+
+	private boolean degrees = false;
+	private MultipleOutputs<Text, Text> outputs;
+
+	@Override
+	protected void setup(Reducer<Text, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		degrees = context.getConfiguration().getBoolean(DEGREES, false);
+		outputs = createOutputs(context);
+	}
+
 	/**
 	 * Reduces the key=title value=link to a single output pair with key=title
-	 * value=comma-delimited list of links.
+	 * value=comma-delimited list of links. The links are sorted and listed
+	 * only once. The empty vertex markers are skipped.
 	 */
 	@Override
 	protected void reduce(Text key, Iterable<Text> values,
 			Reducer<Text, Text, Text, Text>.Context context)
 			throws IOException, InterruptedException {
 
-		String links = "";
-		boolean first = true;
-
+		links.clear();
 		for (Text value : values) {
-			if (!first)
-				links += ",";
-
-			links += value.toString();
-			first = false;
+			if (value.getLength() > 0)
+				links.add(value);
 		}
 
-		context.write(key, new Text(links));
+		degree.clear();
+		if (degrees)
+			degree.set(Integer.toString(links.size()));
+		outputs.write(PAGES, key, degree);
+
+		if (links.size() == 0)
+			return;
+
+		links.sort();
+		links.join(linkList, (byte) ',');
+
+		context.write(key, linkList);
+
+	}
+
+	/**
+	 * Creates the side outputs of the reducer.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	protected MultipleOutputs<Text, Text> createOutputs(
+			Reducer<Text, Text, Text, Text>.Context context) {
+		return new MultipleOutputs<Text, Text>(context);
+	}
 
+	@Override
+	protected void cleanup(Reducer<Text, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+		outputs.close();
 	}
 
 }
@@ -0,0 +1,35 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the next joins of the redirect chains. Every
+ * redirect is mapped as its target on the title of the redirect and as a
+ * source on its target.
+ * 
+ * @author jiri
+ */
+public class RedirectChainMapper extends Mapper<Text, Text, Text, Text> {
+
+	private final Text join = new Text();
+
+	/**
+	 * Maps the key=title value=target redirect to key=title value=target and
+	 * key=target value=title join pairs.
+	 */
+	@Override
+	protected void map(Text key, Text value,
+			Mapper<Text, Text, Text, Text>.Context context) throws IOException,
+			InterruptedException {
+
+		JoinKey.set(join, key, JoinKey.TARGET);
+		context.write(join, value);
+
+		JoinKey.set(join, value, JoinKey.LINK);
+		context.write(join, key);
+	}
+
+}
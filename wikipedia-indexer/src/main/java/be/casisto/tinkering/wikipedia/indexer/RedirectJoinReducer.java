@@ -0,0 +1,58 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Reducer implementation for the redirect joins. The values of a title are
+ * its redirect target, if the title is a redirect, followed by the pages that
+ * link or redirect to the title. Every such page is written with the final
+ * target: the redirect target if there is one, the title itself otherwise.
+ * 
+ * Applied to the redirects themselves, every join collapses the redirect
+ * chains by one level, so chains of length n are resolved in log(n) joins.
+ * 
+ * @author jiri
+ */
+public class RedirectJoinReducer extends Reducer<Text, Text, Text, Text> {
+
+	private final Text title = new Text();
+	private final Text target = new Text();
+
+	/**
+	 * Reduces the key=title value=redirect target or source pairs to
+	 * key=source value=target pairs.
+	 */
+	@Override
+	protected void reduce(Text key, Iterable<Text> values,
+			Reducer<Text, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+
+		JoinKey.getTitle(key, title);
+
+		Iterator<Text> it = values.iterator();
+		boolean redirect = JoinKey.getTag(key) == JoinKey.TARGET;
+		if (redirect)
+			target.set(it.next());
+		else
+			target.set(title);
+
+		// a redirect to itself is not resolved
+		boolean resolved = redirect && !target.equals(title);
+
+		long count = 0;
+		while (it.hasNext()) {
+			context.write(it.next(), target);
+			count++;
+		}
+
+		if (resolved)
+			context.getCounter(IndexerCounter.REDIRECTS_RESOLVED).increment(
+					count);
+
+	}
+
+}
@@ -0,0 +1,48 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation to extract the redirects from the wikipedia pages,
+ * for the first join of the redirect chains. A redirect is mapped as its
+ * target on the title of the redirect and as a source on its target.
+ * 
+ * @author jiri
+ */
+public class RedirectMapper extends Mapper<LongWritable, Text, Text, Text> {
+
+	private final WikiPage page = new WikiPage();
+
+	private final Text title = new Text();
+	private final Text target = new Text();
+	private final Text key = new Text();
+
+	/**
+	 * Parse the wiki page and output key=title value=target and key=target
+	 * value=title join pairs for redirect pages.
+	 */
+	@Override
+	protected void map(LongWritable offset, Text value,
+			Mapper<LongWritable, Text, Text, Text>.Context context)
+			throws IOException, InterruptedException {
+
+		if (!page.parse(value) || !page.isValidPage() || !page.isRedirect())
+			return;
+
+		page.getTitle(title);
+		page.getRedirect(target);
+
+		context.getCounter(IndexerCounter.REDIRECT_PAGES).increment(1);
+
+		JoinKey.set(key, title, JoinKey.TARGET);
+		context.write(key, target);
+
+		JoinKey.set(key, target, JoinKey.LINK);
+		context.write(key, title);
+	}
+
+}
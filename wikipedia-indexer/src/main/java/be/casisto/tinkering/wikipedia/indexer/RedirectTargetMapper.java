@@ -0,0 +1,34 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation for the redirect side of the link join. Maps every
+ * resolved redirect as its target on the title of the redirect.
+ * 
+ * @author jiri
+ */
+public class RedirectTargetMapper extends Mapper<Text, Text, Text, Text> {
+
+	private final Text join = new Text();
+
+	/**
+	 * Maps the key=title value=target redirect to a key=title value=target join
+	 * pair, unless the redirect is part of a loop.
+	 */
+	@Override
+	protected void map(Text key, Text value,
+			Mapper<Text, Text, Text, Text>.Context context) throws IOException,
+			InterruptedException {
+
+		if (key.equals(value))
+			return;
+
+		JoinKey.set(join, key, JoinKey.TARGET);
+		context.write(join, value);
+	}
+
+}
@@ -0,0 +1,24 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Combiner implementation that removes duplicate titles before the shuffle.
+ * 
+ * @author jiri
+ */
+public class TitleCombiner extends
+		Reducer<Text, NullWritable, Text, NullWritable> {
+
+	@Override
+	protected void reduce(Text key, Iterable<NullWritable> values,
+			Reducer<Text, NullWritable, Text, NullWritable>.Context context)
+			throws IOException, InterruptedException {
+		context.write(key, NullWritable.get());
+	}
+
+}
@@ -0,0 +1,182 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Bloom filter of page titles, to drop links to pages that do not exist (red
+ * links) before the shuffle. Titles are hashed in their normalized form:
+ * underscores are spaces, surrounding spaces are ignored and the first letter
+ * is upper case, as wiki links are matched to page titles that way. Only an
+ * ASCII first letter is upper cased.
+ * 
+ * Every title is hashed to a single long, the bit positions are derived from
+ * its two halves, so the titles can be shipped as longs to build the filter.
+ * Hashing and lookups do not allocate any objects.
+ * 
+ * @author jiri
+ */
+public class TitleFilter implements Writable {
+
+	private static final double LN2 = Math.log(2);
+
+	private int size;
+	private int hashes;
+	private long[] bits;
+
+	/**
+	 * Creates an empty filter, for deserialization.
+	 */
+	public TitleFilter() {
+		this.bits = new long[0];
+	}
+
+	/**
+	 * Creates a filter for the expected number of titles.
+	 * 
+	 * @param titles
+	 *            expected number of titles
+	 * @param falsePositives
+	 *            acceptable rate of false positives
+	 */
+	public TitleFilter(long titles, double falsePositives) {
+		long n = Math.max(1, titles);
+		long m = (long) Math.ceil(-n * Math.log(falsePositives) / (LN2 * LN2));
+		this.size = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+		this.hashes = Math.max(1, (int) Math.round((double) size / n * LN2));
+		this.bits = new long[(size + 63) / 64];
+	}
+
+	/**
+	 * Adds a title hash.
+	 * 
+	 * @param hash
+	 *            hash of the title, see {@link #hash(byte[], int, int)}
+	 */
+	public void add(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < hashes; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+			bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Check if a title hash might have been added.
+	 * 
+	 * @param hash
+	 * @return false if the title was certainly not added
+	 */
+	public boolean contains(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < hashes; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+			if ((bits[bit >>> 6] & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check if a title might have been added.
+	 * 
+	 * @param bytes
+	 *            UTF-8 bytes of the title
+	 * @param start
+	 * @param length
+	 * @return false if the title was certainly not added
+	 */
+	public boolean contains(byte[] bytes, int start, int length) {
+		return contains(hash(bytes, start, length));
+	}
+
+	/**
+	 * Hashes the normalized form of a title.
+	 * 
+	 * @param bytes
+	 *            UTF-8 bytes of the title
+	 * @param start
+	 * @param length
+	 * @return
+	 */
+	public static long hash(byte[] bytes, int start, int length) {
+		int from = start;
+		int to = start + length;
+		while (from < to && isSpace(bytes[from]))
+			from++;
+		while (to > from && isSpace(bytes[to - 1]))
+			to--;
+
+		// 64 bit FNV-1a over the normalized bytes
+		long hash = 0xcbf29ce484222325L;
+		for (int i = from; i < to; i++) {
+			byte b = bytes[i];
+			if (b == '_')
+				b = ' ';
+			else if (i == from && b >= 'a' && b <= 'z')
+				b -= 'a' - 'A';
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		// final mix, so both halves of the hash are usable
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Reads the filter from the sequence file written by the
+	 * TitleFilterReducer.
+	 * 
+	 * @param conf
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static TitleFilter read(Configuration conf, Path file)
+			throws IOException {
+		TitleFilter filter = new TitleFilter();
+		try (SequenceFile.Reader reader = new SequenceFile.Reader(conf,
+				SequenceFile.Reader.file(file))) {
+			if (!reader.next(NullWritable.get(), filter))
+				throw new IOException("No title filter in " + file);
+		}
+		return filter;
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '_';
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(hashes);
+		out.writeInt(bits.length);
+		for (long word : bits)
+			out.writeLong(word);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		size = in.readInt();
+		hashes = in.readInt();
+		bits = new long[in.readInt()];
+		for (int i = 0; i < bits.length; i++)
+			bits[i] = in.readLong();
+	}
+
+}
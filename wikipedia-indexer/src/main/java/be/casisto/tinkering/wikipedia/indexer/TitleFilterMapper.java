@@ -0,0 +1,36 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation that maps every page of the dump to the hash of its
+ * title, to build the title filter.
+ * 
+ * @author jiri
+ */
+public class TitleFilterMapper extends
+		Mapper<LongWritable, Text, LongWritable, NullWritable> {
+
+	private final WikiPage page = new WikiPage();
+	private final Text title = new Text();
+	private final LongWritable hash = new LongWritable();
+
+	@Override
+	protected void map(LongWritable key, Text value,
+			Mapper<LongWritable, Text, LongWritable, NullWritable>.Context context)
+			throws IOException, InterruptedException {
+
+		if (!page.parse(value) || !page.isValidPage())
+			return;
+
+		page.getTitle(title);
+		hash.set(TitleFilter.hash(title.getBytes(), 0, title.getLength()));
+		context.write(hash, NullWritable.get());
+	}
+
+}
@@ -0,0 +1,79 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reducer implementation that adds all title hashes to a single title filter.
+ * Meant to run as the only reduce task: the distinct hashes are buffered, 8
+ * bytes per title, and the filter is sized for their number and written when
+ * all hashes are in.
+ * 
+ * @author jiri
+ */
+public class TitleFilterReducer extends
+		Reducer<LongWritable, NullWritable, NullWritable, TitleFilter> {
+
+	private static Logger log = LoggerFactory
+			.getLogger(TitleFilterReducer.class);
+
+	/**
+	 * Expected number of page titles, the initial capacity of the buffer of
+	 * title hashes; 1 million by default. The filter is sized for the actual
+	 * number of titles.
+	 */
+	public static final String TITLES = "wiki.indexer.redlinks.titles";
+
+	/**
+	 * Acceptable rate of links to missing pages that pass the filter, 1% by
+	 * default.
+	 */
+	public static final String FALSE_POSITIVES = "wiki.indexer.redlinks.fpp";
+
+	private long[] hashes;
+	private int count = 0;
+
+	@Override
+	protected void setup(
+			Reducer<LongWritable, NullWritable, NullWritable, TitleFilter>.Context context)
+			throws IOException, InterruptedException {
+		hashes = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(16,
+				context.getConfiguration().getLong(TITLES, 1 << 20)))];
+	}
+
+	@Override
+	protected void reduce(LongWritable key, Iterable<NullWritable> values,
+			Reducer<LongWritable, NullWritable, NullWritable, TitleFilter>.Context context)
+			throws IOException, InterruptedException {
+		if (count == hashes.length)
+			hashes = Arrays.copyOf(hashes, (int) Math.min(
+					Integer.MAX_VALUE - 8, (long) count << 1));
+		hashes[count++] = key.get();
+	}
+
+	@Override
+	protected void cleanup(
+			Reducer<LongWritable, NullWritable, NullWritable, TitleFilter>.Context context)
+			throws IOException, InterruptedException {
+		long expected = context.getConfiguration().getLong(TITLES, 0);
+		if (expected > 0 && count > expected)
+			log.warn("{} titles in the filter, more than the {} expected",
+					count, expected);
+		log.info("Sizing the title filter for {} titles", count);
+
+		TitleFilter filter = new TitleFilter(count, context.getConfiguration()
+				.getDouble(FALSE_POSITIVES, 0.01));
+		for (int i = 0; i < count; i++)
+			filter.add(hashes[i]);
+		hashes = null;
+		context.getCounter(IndexerCounter.FILTERED_TITLES).increment(count);
+		context.write(NullWritable.get(), filter);
+	}
+
+}
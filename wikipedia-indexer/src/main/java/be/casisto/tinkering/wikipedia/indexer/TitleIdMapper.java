@@ -0,0 +1,65 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Mapper implementation that turns the index of a title within its partition
+ * into a global id, by adding the number of titles in the preceding
+ * partitions.
+ * 
+ * @author jiri
+ */
+public class TitleIdMapper extends
+		Mapper<Text, IntWritable, Text, IntWritable> {
+
+	/**
+	 * The first id of every partition.
+	 */
+	public static final String OFFSETS = "wiki.indexer.ids.offsets";
+
+	/**
+	 * Length of the sort prefix of the keys, stripped to get the titles. 0 by
+	 * default, for keys sorted on the title alone.
+	 */
+	public static final String PREFIX = "wiki.indexer.ids.prefix";
+
+	private final IntWritable id = new IntWritable();
+	private final Text title = new Text();
+
+	private int offset;
+	private int prefix;
+
+	@Override
+	protected void setup(
+			Mapper<Text, IntWritable, Text, IntWritable>.Context context)
+			throws IOException, InterruptedException {
+		// the partition is part of the file name: part-r-00003
+		String name = ((FileSplit) context.getInputSplit()).getPath()
+				.getName();
+		int partition = Integer.parseInt(name.substring(name
+				.lastIndexOf('-') + 1));
+
+		offset = context.getConfiguration().getInts(OFFSETS)[partition];
+		prefix = context.getConfiguration().getInt(PREFIX, 0);
+	}
+
+	@Override
+	protected void map(Text key, IntWritable value,
+			Mapper<Text, IntWritable, Text, IntWritable>.Context context)
+			throws IOException, InterruptedException {
+		id.set(offset + value.get());
+		if (prefix == 0) {
+			context.write(key, id);
+			return;
+		}
+
+		title.set(key.getBytes(), prefix, key.getLength() - prefix);
+		context.write(title, id);
+	}
+
+}
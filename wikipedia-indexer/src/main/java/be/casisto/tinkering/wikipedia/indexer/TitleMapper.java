@@ -0,0 +1,32 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * Mapper implementation to extract the titles of all pages, linking or linked,
+ * from the links index.
+ * 
+ * @author jiri
+ */
+public class TitleMapper extends LinkListMapper<Text, NullWritable> {
+
+	@Override
+	protected void page(Text title,
+			Mapper<Text, Writable, Text, NullWritable>.Context context)
+			throws IOException, InterruptedException {
+		context.write(title, NullWritable.get());
+	}
+
+	@Override
+	protected void link(Text title, Text link,
+			Mapper<Text, Writable, Text, NullWritable>.Context context)
+			throws IOException, InterruptedException {
+		context.write(link, NullWritable.get());
+	}
+
+}
@@ -0,0 +1,58 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Reducer implementation that numbers the distinct titles of a total order
+ * partition. The number of titles in the partition is written to a file named
+ * after the partition in the {@link #COUNTS} directory, so the partitions can
+ * be given contiguous ranges of ids. A counter per partition would exceed the
+ * counter limit of a job with many reducers.
+ * 
+ * @author jiri
+ */
+public class TitleReducer extends
+		Reducer<Text, NullWritable, Text, IntWritable> {
+
+	/**
+	 * Directory for the number of titles per partition.
+	 */
+	public static final String COUNTS = "wiki.indexer.ids.counts";
+
+	private final IntWritable index = new IntWritable();
+
+	private int count = 0;
+
+	/**
+	 * Reduces the titles to key=title value=index within the partition pairs.
+	 */
+	@Override
+	protected void reduce(Text key, Iterable<NullWritable> values,
+			Reducer<Text, NullWritable, Text, IntWritable>.Context context)
+			throws IOException, InterruptedException {
+		index.set(count++);
+		context.write(key, index);
+	}
+
+	@Override
+	protected void cleanup(
+			Reducer<Text, NullWritable, Text, IntWritable>.Context context)
+			throws IOException, InterruptedException {
+		int partition = context.getTaskAttemptID().getTaskID().getId();
+		Path file = new Path(context.getConfiguration().get(COUNTS),
+				Integer.toString(partition));
+		// a retried attempt overwrites the count of the failed one
+		try (FSDataOutputStream out = file.getFileSystem(
+				context.getConfiguration()).create(file, true)) {
+			out.writeLong(count);
+		}
+	}
+
+}
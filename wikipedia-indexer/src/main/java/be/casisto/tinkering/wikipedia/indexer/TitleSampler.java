@@ -0,0 +1,150 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.casisto.tinkering.wikipedia.indexer.WikipediaInputFormat.WikiXmlReader;
+
+/**
+ * Samples the page titles of a wikipedia dump to write the partition file of
+ * a TotalOrderPartitioner. The input sampler of Hadoop samples the keys of
+ * the input format, which are file offsets for the dump, while the jobs are
+ * partitioned on page titles.
+ * 
+ * @author jiri
+ */
+public class TitleSampler {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(TitleSampler.class);
+
+	private final int samples;
+	private final int maxSplits;
+
+	/**
+	 * Creates a new sampler.
+	 * 
+	 * @param samples
+	 *            maximum number of titles to sample
+	 * @param maxSplits
+	 *            maximum number of splits to read
+	 */
+	public TitleSampler(int samples, int maxSplits) {
+		this.samples = samples;
+		this.maxSplits = maxSplits;
+	}
+
+	/**
+	 * Samples the titles of the input of the job, read with the
+	 * WikipediaInputFormat, and writes the partition file for the number of
+	 * reduce tasks of the job.
+	 * 
+	 * @param job
+	 *            job with the dump as input
+	 * @param partitions
+	 *            destination of the partition file
+	 * @return false if there are not enough distinct titles for the partitions
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public boolean writePartitionFile(Job job, Path partitions)
+			throws IOException, InterruptedException {
+		Configuration conf = job.getConfiguration();
+		int numPartitions = job.getNumReduceTasks();
+
+		List<Text> titles = sample(job);
+		Collections.sort(titles);
+
+		// evenly spaced distinct split points
+		List<Text> splitPoints = new ArrayList<Text>();
+		float step = titles.size() / (float) numPartitions;
+		for (int i = 1; i < numPartitions; i++) {
+			int k = Math.round(step * i);
+			while (k < titles.size() && !splitPoints.isEmpty()
+					&& titles.get(k).compareTo(
+							splitPoints.get(splitPoints.size() - 1)) <= 0)
+				k++;
+			if (k >= titles.size())
+				break;
+			splitPoints.add(titles.get(k));
+		}
+
+		if (splitPoints.size() != numPartitions - 1) {
+			log.warn("Sampled {} titles, not enough for {} partitions",
+					titles.size(), numPartitions);
+			return false;
+		}
+
+		try (SequenceFile.Writer writer = SequenceFile.createWriter(conf,
+				SequenceFile.Writer.file(partitions),
+				SequenceFile.Writer.keyClass(Text.class),
+				SequenceFile.Writer.valueClass(NullWritable.class))) {
+			for (Text splitPoint : splitPoints)
+				writer.append(splitPoint, NullWritable.get());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads the titles from evenly spaced splits, keeping a random sample.
+	 */
+	private List<Text> sample(Job job) throws IOException,
+			InterruptedException {
+		List<InputSplit> splits = new WikipediaInputFormat().getSplits(job);
+		int step = Math.max(1, splits.size() / maxSplits);
+
+		Random random = new Random(splits.size());
+		List<Text> titles = new ArrayList<Text>();
+		WikiPage page = new WikiPage();
+		long seen = 0;
+
+		for (int i = 0; i < splits.size(); i += step) {
+			WikiXmlReader reader = new WikiXmlReader(
+					(FileSplit) splits.get(i), new TaskAttemptContextImpl(
+							job.getConfiguration(), new TaskAttemptID()));
+			try {
+				while (reader.nextKeyValue()) {
+					if (!page.parse(reader.getCurrentValue())
+							|| !page.isValidPage())
+						continue;
+
+					// reservoir sampling
+					seen++;
+					if (titles.size() < samples) {
+						Text title = new Text();
+						page.getTitle(title);
+						titles.add(title);
+					} else {
+						long k = (long) (random.nextDouble() * seen);
+						if (k < samples)
+							page.getTitle(titles.get((int) k));
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		log.info("Sampled {} of {} titles from {} splits", titles.size(),
+				seen, (splits.size() + step - 1) / step);
+		return titles;
+	}
+
+}
@@ -0,0 +1,267 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Extracts wiki links from the UTF-8 bytes of a page text. Link spans are
+ * found the same way as the regular expression \[.+?\] does: the shortest
+ * bracketed span on a single line. The span is then filtered and reduced to
+ * the linked page title, e.g. [[target|label]] gives target.
+ *
+ * The tokenizer works in place on the page bytes and does not allocate any
+ * objects, so a single instance can be reused for every page. The bracketed
+ * spans that are not a link to a wiki page are counted per rule that rejected
+ * them, over all pages.
+ *
+ * @author jiri
+ */
+public class WikiLinkTokenizer {
+
+	private static final int MAX_LINK_LENGTH = 100;
+
+	/**
+	 * The rules that reject a bracketed span as a link to a wiki page, also
+	 * used as Hadoop counters.
+	 */
+	public enum Rule {
+
+		/**
+		 * Spans shorter than a single character link or longer than the
+		 * maximum link length.
+		 */
+		LENGTH,
+
+		/**
+		 * Spans starting with a character that does not start a page title,
+		 * e.g. a section link [[#section]].
+		 */
+		FIRST_CHARACTER,
+
+		/**
+		 * Spans with a colon: external, interwiki, translation, file and
+		 * category links.
+		 */
+		COLON,
+
+		/**
+		 * Spans with a comma, mostly external links with a label.
+		 */
+		COMMA,
+
+		/**
+		 * Spans with an ampersand, mostly escaped markup.
+		 */
+		AMPERSAND
+
+	}
+
+	private byte[] bytes;
+	private int pos;
+	private int end;
+
+	private int linkStart;
+	private int linkEnd;
+
+	private final long[] rejected = new long[Rule.values().length];
+
+	/**
+	 * Starts tokenizing a new page text.
+	 *
+	 * @param bytes
+	 *            page bytes
+	 * @param start
+	 *            start of the text, inclusive
+	 * @param end
+	 *            end of the text, exclusive
+	 */
+	public void reset(byte[] bytes, int start, int end) {
+		this.bytes = bytes;
+		this.pos = start;
+		this.end = end;
+	}
+
+	/**
+	 * Advances to the next valid wiki link.
+	 *
+	 * @return false if there are no more links in the text
+	 */
+	public boolean next() {
+		while (pos < end) {
+			int open = WikiPage.indexOf(bytes, pos, end, (byte) '[');
+			if (open < 0) {
+				pos = end;
+				return false;
+			}
+
+			int close = findClose(open);
+			if (close < 0) {
+				// no link on this line, retry from the next character
+				pos = open + 1;
+				continue;
+			}
+
+			pos = close + 1;
+			if (parseWikiLink(open, close))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the title of the current link.
+	 *
+	 * @param link
+	 */
+	public void getLink(Text link) {
+		link.set(bytes, linkStart, linkEnd - linkStart);
+	}
+
+	public int getLinkStart() {
+		return linkStart;
+	}
+
+	public int getLinkLength() {
+		return linkEnd - linkStart;
+	}
+
+	/**
+	 * Returns the number of spans rejected by a rule since the tokenizer was
+	 * created.
+	 *
+	 * @param rule
+	 * @return
+	 */
+	public long getRejected(Rule rule) {
+		return rejected[rule.ordinal()];
+	}
+
+	/**
+	 * Finds the closing bracket of the link, at least one character after the
+	 * opening bracket and before the end of the line.
+	 *
+	 * @param open
+	 *            index of the opening bracket
+	 * @return index of the closing bracket or -1
+	 */
+	private int findClose(int open) {
+		for (int i = open + 1; i < end; i++) {
+			byte b = bytes[i];
+			if (isLineTerminator(i))
+				return -1;
+			if (b == ']' && i > open + 1)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Check for the line terminators that are not matched by the '.' of a
+	 * regular expression: carriage return, line feed, next line and the
+	 * unicode line and paragraph separators.
+	 */
+	private boolean isLineTerminator(int i) {
+		byte b = bytes[i];
+		if (b == '\n' || b == '\r')
+			return true;
+		if (b == (byte) 0xc2)
+			return i + 1 < end && bytes[i + 1] == (byte) 0x85;
+		if (b == (byte) 0xe2)
+			return i + 2 < end && bytes[i + 1] == (byte) 0x80
+					&& (bytes[i + 2] == (byte) 0xa8 || bytes[i + 2] == (byte) 0xa9);
+		return false;
+	}
+
+	/**
+	 * Parse wiki links to extract the wiki page from the link.
+	 *
+	 * @param open
+	 *            index of the opening bracket
+	 * @param close
+	 *            index of the closing bracket
+	 * @return false if it is not a link to a wiki page
+	 */
+	private boolean parseWikiLink(int open, int close) {
+		if (!isWikiLink(open, close))
+			return false;
+
+		linkStart = open + (bytes[open + 1] == '[' ? 2 : 1);
+		linkEnd = WikiPage.indexOf(bytes, open, close + 1, (byte) ']');
+
+		int pipe = WikiPage.indexOf(bytes, open, close + 1, (byte) '|');
+		if (pipe > open)
+			linkEnd = pipe;
+
+		int part = WikiPage.indexOf(bytes, open, close + 1, (byte) '#');
+		if (part > open)
+			linkEnd = part;
+
+		return true;
+	}
+
+	/**
+	 * Check if the link is a valid link to a wiki page.
+	 *
+	 * @param open
+	 *            index of the opening bracket
+	 * @param close
+	 *            index of the closing bracket
+	 * @return
+	 */
+	private boolean isWikiLink(int open, int close) {
+		int start = bytes[open + 1] == '[' ? 2 : 1;
+
+		int length = charLength(open, close + 1);
+		if (length < start + 2 || length > MAX_LINK_LENGTH)
+			return reject(Rule.LENGTH);
+
+		byte firstChar = bytes[open + start];
+
+		if (firstChar == '#')
+			return reject(Rule.FIRST_CHARACTER);
+		if (firstChar == ',')
+			return reject(Rule.FIRST_CHARACTER);
+		if (firstChar == '.')
+			return reject(Rule.FIRST_CHARACTER);
+		if (firstChar == '&')
+			return reject(Rule.FIRST_CHARACTER);
+		if (firstChar == '\'')
+			return reject(Rule.FIRST_CHARACTER);
+		if (firstChar == '-')
+			return reject(Rule.FIRST_CHARACTER);
+		if (firstChar == '{')
+			return reject(Rule.FIRST_CHARACTER);
+
+		// the whole link is searched for one character at a time: a link
+		// with a colon is counted as such, wherever its comma or ampersand is
+		if (WikiPage.indexOf(bytes, open, close + 1, (byte) ':') >= 0)
+			return reject(Rule.COLON); // Matches: external links and translations links
+		if (WikiPage.indexOf(bytes, open, close + 1, (byte) ',') >= 0)
+			return reject(Rule.COMMA); // Matches: external links and translations links
+		if (WikiPage.indexOf(bytes, open, close + 1, (byte) '&') >= 0)
+			return reject(Rule.AMPERSAND);
+
+		return true;
+	}
+
+	private boolean reject(Rule rule) {
+		rejected[rule.ordinal()]++;
+		return false;
+	}
+
+	/**
+	 * Counts the UTF-16 characters in a range of UTF-8 bytes, to apply the same
+	 * length limits as on a String.
+	 */
+	private int charLength(int from, int to) {
+		int length = 0;
+		for (int i = from; i < to; i++) {
+			int b = bytes[i] & 0xff;
+			if ((b & 0xc0) != 0x80)
+				length++; // not a continuation byte
+			if (b >= 0xf0)
+				length++; // supplementary character, surrogate pair
+		}
+		return length;
+	}
+
+}
@@ -0,0 +1,181 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Locates the title and the text of a wikipedia page directly in the UTF-8
+ * bytes of the page xml. Instances are meant to be reused for every page, so
+ * no objects are allocated while parsing.
+ *
+ * @author jiri
+ */
+public class WikiPage {
+
+	private static final byte[] TITLE_START_TAG = bytes("<title>");
+	private static final byte[] TITLE_END_TAG = bytes("</title>");
+	private static final byte[] TEXT_START_TAG = bytes("<text");
+	private static final byte[] TEXT_END_TAG = bytes("</text>");
+	private static final byte[] REDIRECT_TAG = bytes("<redirect title=\"");
+
+	private byte[] bytes;
+	private int titleStart;
+	private int titleEnd;
+	private int textStart;
+	private int textEnd;
+	private int redirectStart;
+	private int redirectEnd;
+
+	/**
+	 * Parses the page xml.
+	 *
+	 * @param page
+	 *            raw content of the wiki page
+	 * @return false if the page has no title or text
+	 */
+	public boolean parse(Text page) {
+		return parse(page.getBytes(), page.getLength());
+	}
+
+	/**
+	 * Parses the page xml.
+	 *
+	 * @param bytes
+	 *            raw content of the wiki page
+	 * @param length
+	 *            number of valid bytes
+	 * @return false if the page has no title or text
+	 */
+	public boolean parse(byte[] bytes, int length) {
+		this.bytes = bytes;
+
+		titleStart = indexOf(bytes, 0, length, TITLE_START_TAG);
+		if (titleStart < 0)
+			return false;
+		titleStart += TITLE_START_TAG.length;
+
+		titleEnd = indexOf(bytes, titleStart, length, TITLE_END_TAG);
+		if (titleEnd < 0)
+			return false;
+
+		// text tag contains additional info: <text xml:space="preserve"
+		// bytes="17745">
+		textStart = indexOf(bytes, 0, length, TEXT_START_TAG);
+		if (textStart < 0)
+			return false;
+		textStart = indexOf(bytes, textStart, length, (byte) '>');
+		if (textStart < 0)
+			return false;
+		textStart += 1;
+
+		textEnd = indexOf(bytes, textStart - 1, length, TEXT_END_TAG);
+		if (textEnd < textStart)
+			return false;
+
+		// redirect pages have a <redirect title="target" /> element before the
+		// revision
+		redirectStart = indexOf(bytes, titleEnd, textStart, REDIRECT_TAG);
+		redirectEnd = -1;
+		if (redirectStart >= 0) {
+			redirectStart += REDIRECT_TAG.length;
+			redirectEnd = indexOf(bytes, redirectStart, textStart, (byte) '"');
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check if the page is an article vs category, template, ...
+	 *
+	 * @return
+	 */
+	public boolean isValidPage() {
+		return indexOf(bytes, titleStart, titleEnd, (byte) ':') < 0;
+	}
+
+	/**
+	 * Sets the page title.
+	 *
+	 * @param title
+	 */
+	public void getTitle(Text title) {
+		title.set(bytes, titleStart, titleEnd - titleStart);
+	}
+
+	/**
+	 * Check if the page is a redirect to another page.
+	 *
+	 * @return
+	 */
+	public boolean isRedirect() {
+		return redirectEnd > redirectStart;
+	}
+
+	/**
+	 * Sets the title of the page this page redirects to.
+	 *
+	 * @param redirect
+	 */
+	public void getRedirect(Text redirect) {
+		redirect.set(bytes, redirectStart, redirectEnd - redirectStart);
+	}
+
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public int getTextStart() {
+		return textStart;
+	}
+
+	public int getTextEnd() {
+		return textEnd;
+	}
+
+	/**
+	 * Finds the first occurrence of a byte sequence.
+	 *
+	 * @param bytes
+	 *            bytes to search
+	 * @param from
+	 *            start index, inclusive
+	 * @param to
+	 *            end index, exclusive
+	 * @param what
+	 *            bytes to find
+	 * @return index or -1 if not found
+	 */
+	static int indexOf(byte[] bytes, int from, int to, byte[] what) {
+		byte first = what[0];
+		int last = to - what.length;
+		for (int i = from; i <= last; i++) {
+			if (bytes[i] != first)
+				continue;
+
+			int j = 1;
+			while (j < what.length && bytes[i + j] == what[j])
+				j++;
+			if (j == what.length)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the first occurrence of a byte.
+	 */
+	static int indexOf(byte[] bytes, int from, int to, byte what) {
+		for (int i = from; i < to; i++) {
+			if (bytes[i] == what)
+				return i;
+		}
+		return -1;
+	}
+
+	static byte[] bytes(String ascii) {
+		byte[] bytes = new byte[ascii.length()];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) ascii.charAt(i);
+		return bytes;
+	}
+
+}
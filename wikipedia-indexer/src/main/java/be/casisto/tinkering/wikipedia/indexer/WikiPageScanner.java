@@ -0,0 +1,336 @@
+package be.casisto.tinkering.wikipedia.indexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hadoop.io.DataOutputBuffer;
+
+/**
+ * Scans a wikipedia xml stream for pages. The stream is read in large chunks
+ * that are searched for the page tags with a Boyer-Moore-Horspool search, and
+ * page content is copied to the output buffer in bulk.
+ *
+ * A page belongs to the scanner if the position reported after reading the
+ * first byte of its start tag does not exceed the end position. For plain
+ * input that is the exact byte position. For block compressed input, the
+ * position is the one reported after reading the chunk, which is constant
+ * within a compressed block.
+ *
+ * With a page filter, only the head of a page up to its first revision is
+ * copied before the filter decides on the page. The text of a filtered page is
+ * skipped without copying. The head of a page without a revision ends at its
+ * end tag, so it is never merged with the next page.
+ *
+ * @author jiri
+ */
+public class WikiPageScanner {
+
+	private static final byte[] PAGE_START_TAG = WikiPage.bytes("<page>");
+	private static final byte[] PAGE_END_TAG = WikiPage.bytes("</page>");
+	private static final byte[] REVISION_TAG = WikiPage.bytes("<revision>");
+
+	private static final int[] PAGE_START_SHIFT = shift(PAGE_START_TAG);
+	private static final int[] PAGE_END_SHIFT = shift(PAGE_END_TAG);
+
+	private final InputStream in;
+	private final Seekable position;
+	private final boolean exact;
+	private final long end;
+
+	private final byte[] buffer;
+	private int offset = 0;
+	private int length = 0;
+	private long bufferPos;
+
+	private long matchPos;
+	private boolean done = false;
+
+	private PageFilter filter;
+	private long filtered = 0;
+	private long scanned = 0;
+
+	/**
+	 * Creates a new scanner.
+	 *
+	 * @param in
+	 *            the (decompressed) xml stream
+	 * @param position
+	 *            reports the position of the stream in the input file
+	 * @param exact
+	 *            true if the position is the exact byte position of the xml
+	 *            stream, false if it is only reported per compressed block
+	 * @param end
+	 *            the end position of the split
+	 * @param bufferSize
+	 *            size of the read buffer
+	 * @throws IOException
+	 */
+	public WikiPageScanner(InputStream in, Seekable position, boolean exact,
+			long end, int bufferSize) throws IOException {
+		this.in = in;
+		this.position = position;
+		this.exact = exact;
+		this.end = end;
+		this.buffer = new byte[bufferSize];
+		this.bufferPos = position.getPos();
+	}
+
+	/**
+	 * Sets the filter for the pages to copy.
+	 *
+	 * @param filter
+	 *            the filter, or null to copy all pages
+	 */
+	public void setFilter(PageFilter filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * Copies the next page that belongs to this scanner and passes the filter,
+	 * including its start and end tags, to the output buffer.
+	 *
+	 * @param out
+	 *            empty buffer for the page content, reset when a page is
+	 *            filtered
+	 * @return false if there are no more pages
+	 * @throws IOException
+	 */
+	public boolean nextPage(DataOutputBuffer out) throws IOException {
+		while (!done) {
+			if (!scan(PAGE_START_TAG, PAGE_START_SHIFT, null, end)
+					|| matchPos > end)
+				break;
+
+			out.write(PAGE_START_TAG);
+			if (filter != null) {
+				byte[] head = scanHead(out);
+				if (head == null)
+					break;
+
+				if (!filter.accept(out.getData(), out.getLength())) {
+					out.reset();
+					filtered++;
+					if (head == REVISION_TAG
+							&& !scan(PAGE_END_TAG, PAGE_END_SHIFT, null,
+									Long.MAX_VALUE))
+						break;
+					continue;
+				}
+
+				// a page without a revision is complete
+				if (head == PAGE_END_TAG)
+					return true;
+			}
+
+			if (!scan(PAGE_END_TAG, PAGE_END_SHIFT, out, Long.MAX_VALUE))
+				break;
+
+			return true;
+		}
+
+		done = true;
+		return false;
+	}
+
+	/**
+	 * Returns the number of pages skipped by the filter.
+	 *
+	 * @return
+	 */
+	public long getFiltered() {
+		return filtered;
+	}
+
+	/**
+	 * Returns the number of (decompressed) bytes read from the stream.
+	 *
+	 * @return
+	 */
+	public long getScanned() {
+		return scanned;
+	}
+
+	/**
+	 * Returns the position after the last scanned byte.
+	 *
+	 * @return
+	 */
+	public long getPos() {
+		return exact ? bufferPos + offset : bufferPos;
+	}
+
+	/**
+	 * Scans the stream until the tag is found.
+	 *
+	 * @param tag
+	 *            the tag to find
+	 * @param shift
+	 *            the Horspool shift table for the tag
+	 * @param out
+	 *            copy the scanned bytes, including the tag, if not null
+	 * @param limit
+	 *            stop scanning once the position is past this limit
+	 * @return true if the tag was found
+	 * @throws IOException
+	 */
+	private boolean scan(byte[] tag, int[] shift, DataOutputBuffer out,
+			long limit) throws IOException {
+		int partial = 0;
+		long partialPos = 0;
+
+		while (true) {
+			if (offset >= length && !fill())
+				return false;
+
+			// complete a tag that straddles the previous chunk
+			if (partial > 0) {
+				int n = Math.min(tag.length - partial, length - offset);
+				if (matches(offset, tag, partial, n)) {
+					if (out != null)
+						out.write(buffer, offset, n);
+					offset += n;
+					partial += n;
+					if (partial == tag.length) {
+						matchPos = partialPos;
+						return true;
+					}
+					continue;
+				}
+				partial = 0;
+			}
+
+			int i = indexOf(tag, shift, offset, length);
+			if (i >= 0) {
+				matchPos = posAfter(i);
+				if (out != null)
+					out.write(buffer, offset, i + tag.length - offset);
+				offset = i + tag.length;
+				return true;
+			}
+
+			// remember a tag prefix at the end of the chunk
+			for (int p = Math.max(offset, length - tag.length + 1); p < length; p++) {
+				if (matches(p, tag, 0, length - p)) {
+					partial = length - p;
+					partialPos = posAfter(p);
+					break;
+				}
+			}
+
+			if (out != null)
+				out.write(buffer, offset, length - offset);
+			offset = length;
+
+			if ((partial > 0 ? partialPos : posAfter(length - 1)) > limit)
+				return false;
+		}
+	}
+
+	/**
+	 * Scans the head of a page up to its first revision or, for a page without
+	 * a revision, its end tag, and copies it. The head is short, so it is
+	 * matched byte by byte against both tags: they only contain a '<' as their
+	 * first byte, so a mismatch restarts at the current byte.
+	 *
+	 * @param out
+	 *            copy the scanned bytes, including the tag
+	 * @return the tag found, or null at the end of the stream
+	 * @throws IOException
+	 */
+	private byte[] scanHead(DataOutputBuffer out) throws IOException {
+		int revision = 0;
+		int pageEnd = 0;
+
+		while (true) {
+			if (offset >= length && !fill())
+				return null;
+
+			for (int i = offset; i < length; i++) {
+				byte b = buffer[i];
+				revision = b == REVISION_TAG[revision] ? revision + 1
+						: b == '<' ? 1 : 0;
+				pageEnd = b == PAGE_END_TAG[pageEnd] ? pageEnd + 1
+						: b == '<' ? 1 : 0;
+
+				if (revision == REVISION_TAG.length
+						|| pageEnd == PAGE_END_TAG.length) {
+					out.write(buffer, offset, i + 1 - offset);
+					offset = i + 1;
+					return revision == REVISION_TAG.length ? REVISION_TAG
+							: PAGE_END_TAG;
+				}
+			}
+
+			out.write(buffer, offset, length - offset);
+			offset = length;
+		}
+	}
+
+	/**
+	 * Reads the next chunk from the stream into the buffer. A single read is
+	 * done, so a chunk of block compressed input never spans two blocks.
+	 *
+	 * @return false at the end of the stream
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException {
+		if (exact)
+			bufferPos = position.getPos();
+
+		int n = in.read(buffer, 0, buffer.length);
+		if (n <= 0)
+			return false;
+		scanned += n;
+
+		if (!exact)
+			bufferPos = position.getPos();
+
+		offset = 0;
+		length = n;
+		return true;
+	}
+
+	/**
+	 * Returns the position after reading the byte at the given buffer index.
+	 */
+	private long posAfter(int index) {
+		return exact ? bufferPos + index + 1 : bufferPos;
+	}
+
+	/**
+	 * Horspool search for the tag in the buffer.
+	 */
+	private int indexOf(byte[] tag, int[] shift, int from, int to) {
+		int last = tag.length - 1;
+		int i = from;
+		while (i + last < to) {
+			int j = last;
+			while (buffer[i + j] == tag[j]) {
+				if (j == 0)
+					return i;
+				j--;
+			}
+			i += shift[buffer[i + last] & 0xff];
+		}
+		return -1;
+	}
+
+	private boolean matches(int from, byte[] tag, int tagFrom, int len) {
+		for (int i = 0; i < len; i++) {
+			if (buffer[from + i] != tag[tagFrom + i])
+				return false;
+		}
+		return true;
+	}
+
+	private static int[] shift(byte[] tag) {
+		int[] shift = new int[256];
+		for (int i = 0; i < shift.length; i++)
+			shift[i] = tag.length;
+		for (int i = 0; i < tag.length - 1; i++)
+			shift[tag[i] & 0xff] = tag.length - 1 - i;
+		return shift;
+	}
+
+}
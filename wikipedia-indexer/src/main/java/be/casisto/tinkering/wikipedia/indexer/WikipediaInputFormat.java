@@ -1,15 +1,31 @@
 package be.casisto.tinkering.wikipedia.indexer;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
 import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Seekable;
 import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.SplitCompressionInputStream;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
@@ -21,6 +37,11 @@ import org.slf4j.LoggerFactory;
  * This class provides an input format implementation specific to wikipedia's
  * xml format.
  * 
+ * Both the plain xml and the bzip2 compressed (multistream) dumps can be read
+ * directly. Compressed dumps are split on bzip2 block boundaries, or on the
+ * stream boundaries listed in the multistream index file when one is
+ * configured through {@link #INDEX}.
+ * 
  * @author jiri
  */
 public class WikipediaInputFormat extends TextInputFormat {
@@ -28,8 +49,34 @@ public class WikipediaInputFormat extends TextInputFormat {
 	private static final Logger log = LoggerFactory
 			.getLogger(WikipediaInputFormat.class);
 
-	private static final String PAGE_START_TAG = "<page>";
-	private static final String PAGE_END_TAG = "</page>";
+	/**
+	 * Optional multistream index file of the bzip2 compressed dump. Every line
+	 * has the format offset:id:title, where offset is the start of the bzip2
+	 * stream that holds the page.
+	 */
+	public static final String INDEX = "wiki.indexer.input.index";
+
+	/**
+	 * Size in bytes of the read buffer of the record reader.
+	 */
+	public static final String BUFFER_SIZE = "wiki.indexer.reader.buffer";
+
+	/**
+	 * Comma separated ids of the namespaces to index, 0 (articles) by default.
+	 * Pages in other namespaces are skipped by the record reader without
+	 * copying their text. Set to an empty value to read all namespaces.
+	 */
+	public static final String NAMESPACES = "wiki.indexer.namespaces";
+
+	/**
+	 * Comma separated title prefixes of pages that are skipped by the record
+	 * reader, none by default.
+	 */
+	public static final String SKIP_TITLES = "wiki.indexer.titles.skip";
+
+	private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	private static final double SPLIT_SLOP = 1.1;
 
 	/**
 	 * Initializes a new record reader.
@@ -46,21 +93,176 @@ public class WikipediaInputFormat extends TextInputFormat {
 		}
 	}
 
+	/**
+	 * Creates the page filter of the configured namespaces and title prefixes.
+	 * 
+	 * @param conf
+	 *            the job configuration
+	 * @return
+	 */
+	public static PageFilter getPageFilter(Configuration conf) {
+		String[] ids = conf.getTrimmedStrings(NAMESPACES, "0");
+		int[] namespaces = new int[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			namespaces[i] = Integer.parseInt(ids[i]);
+
+		return new PageFilter(namespaces, conf.getTrimmedStrings(SKIP_TITLES));
+	}
+
+	/**
+	 * Generates the input splits. If a multistream index is configured for a
+	 * single compressed input file, the splits are aligned on the bzip2 stream
+	 * offsets listed in the index. Otherwise the default splits are used.
+	 */
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		String index = job.getConfiguration().get(INDEX);
+		if (index == null)
+			return super.getSplits(job);
+
+		List<FileStatus> files = listStatus(job);
+		if (files.size() != 1) {
+			log.warn("Ignoring multistream index {} for {} input files", index,
+					files.size());
+			return super.getSplits(job);
+		}
+
+		FileStatus file = files.get(0);
+		if (!isSplitable(job, file.getPath())) {
+			log.warn("Ignoring multistream index {} for unsplittable input {}",
+					index, file.getPath());
+			return super.getSplits(job);
+		}
+
+		long[] offsets = readStreamOffsets(new Path(index),
+				job.getConfiguration());
+		long splitSize = computeSplitSize(file.getBlockSize(),
+				getFormatMinSplitSize(), getMaxSplitSize(job));
+
+		return alignSplits(file, offsets, splitSize, job.getConfiguration());
+	}
+
+	/**
+	 * Creates splits of roughly the given size, cutting only on the given
+	 * stream offsets.
+	 * 
+	 * @param file
+	 *            the compressed input file
+	 * @param offsets
+	 *            sorted stream start offsets
+	 * @param splitSize
+	 *            target size of a split
+	 * @param conf
+	 *            the job configuration
+	 * @return
+	 * @throws IOException
+	 */
+	private List<InputSplit> alignSplits(FileStatus file, long[] offsets,
+			long splitSize, Configuration conf) throws IOException {
+		Path path = file.getPath();
+		long length = file.getLen();
+
+		FileSystem fs = path.getFileSystem(conf);
+		BlockLocation[] blocks = fs.getFileBlockLocations(file, 0, length);
+
+		List<InputSplit> splits = new ArrayList<InputSplit>();
+		long start = 0;
+		for (long offset : offsets) {
+			if (offset - start < splitSize)
+				continue;
+			if (((double) (length - start)) / splitSize <= SPLIT_SLOP)
+				break;
+
+			splits.add(makeSplit(path, start, offset - start,
+					blocks[getBlockIndex(blocks, start)].getHosts()));
+			start = offset;
+		}
+
+		if (start < length)
+			splits.add(makeSplit(path, start, length - start,
+					blocks[getBlockIndex(blocks, start)].getHosts()));
+
+		log.info("Aligned {} splits on {} bzip2 streams of {}", splits.size(),
+				offsets.length, path);
+
+		return splits;
+	}
+
+	/**
+	 * Reads the distinct stream offsets from a (possibly compressed)
+	 * multistream index file.
+	 * 
+	 * @param index
+	 *            path to the index file
+	 * @param conf
+	 *            the job configuration
+	 * @return sorted stream offsets
+	 * @throws IOException
+	 */
+	private long[] readStreamOffsets(Path index, Configuration conf)
+			throws IOException {
+		FileSystem fs = index.getFileSystem(conf);
+		CompressionCodec codec = new CompressionCodecFactory(conf)
+				.getCodec(index);
+
+		InputStream in = fs.open(index);
+		if (codec != null)
+			in = codec.createInputStream(in);
+
+		long[] offsets = new long[1024];
+		int count = 0;
+		long previous = -1;
+
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(in,
+				"UTF-8"))) {
+			String line = br.readLine();
+			while (line != null) {
+				int colon = line.indexOf(':');
+				if (colon > 0) {
+					long offset = Long.parseLong(line.substring(0, colon));
+					if (offset != previous) {
+						if (count == offsets.length)
+							offsets = Arrays.copyOf(offsets,
+									count * 2);
+						offsets[count++] = offset;
+						previous = offset;
+					}
+				}
+				line = br.readLine();
+			}
+		}
+
+		offsets = Arrays.copyOf(offsets, count);
+		Arrays.sort(offsets);
+		return offsets;
+	}
+
 	/**
 	 * This class parses wikipedia xml files to search for page content.
 	 * 
+	 * A page belongs to the split in which its start tag is read. For
+	 * compressed input, positions are only known per bzip2 block, so pages are
+	 * assigned to the split that contains the start of their block. The
+	 * scanning itself is done by a {@link WikiPageScanner}.
+	 * 
 	 * @author jiri
 	 */
 	public static class WikiXmlReader extends RecordReader<LongWritable, Text> {
 
-		private final long start;
-		private final long end;
+		private long start;
+		private long end;
 		private final FSDataInputStream fsdin;
+		private final InputStream in;
+		private final Seekable position;
+		private final WikiPageScanner scanner;
+		private Decompressor decompressor;
 		private final DataOutputBuffer dob = new DataOutputBuffer();
 
 		private LongWritable key = new LongWritable();
 		private Text value = new Text();
 
+		private final TaskAttemptContext context;
+
 		/**
 		 * Constructor that initializes the parser for a wikipedia page xml
 		 * file.
@@ -74,6 +276,7 @@ public class WikipediaInputFormat extends TextInputFormat {
 		public WikiXmlReader(FileSplit split, TaskAttemptContext context)
 				throws IOException {
 			Configuration conf = context.getConfiguration();
+			this.context = context;
 
 			Path file = split.getPath();
 			FileSystem fs = file.getFileSystem(conf);
@@ -83,7 +286,34 @@ public class WikipediaInputFormat extends TextInputFormat {
 			start = split.getStart();
 			end = start + split.getLength();
 
-			fsdin.seek(start);
+			CompressionCodec codec = new CompressionCodecFactory(conf)
+					.getCodec(file);
+
+			if (codec == null) {
+				fsdin.seek(start);
+				in = fsdin;
+				position = fsdin;
+			} else {
+				decompressor = CodecPool.getDecompressor(codec);
+				if (codec instanceof SplittableCompressionCodec) {
+					SplitCompressionInputStream cin = ((SplittableCompressionCodec) codec)
+							.createInputStream(fsdin, decompressor, start, end,
+									SplittableCompressionCodec.READ_MODE.BYBLOCK);
+					start = cin.getAdjustedStart();
+					end = cin.getAdjustedEnd();
+					in = cin;
+					position = cin;
+				} else {
+					// not splittable, so this split covers the whole file
+					in = codec.createInputStream(fsdin, decompressor);
+					position = fsdin;
+					end = Long.MAX_VALUE;
+				}
+			}
+
+			scanner = new WikiPageScanner(in, position, codec == null, end,
+					conf.getInt(BUFFER_SIZE, DEFAULT_BUFFER_SIZE));
+			scanner.setFilter(getPageFilter(conf));
 		}
 
 		/**
@@ -100,20 +330,15 @@ public class WikipediaInputFormat extends TextInputFormat {
 		@Override
 		public boolean nextKeyValue() throws IOException, InterruptedException {
 			log.debug("Looking for next wiki page start tag");
-			if (fsdin.getPos() < end) {
-				if (readUntilMatch(PAGE_START_TAG.getBytes(), false)) {
-					try {
-						log.debug("Wiki page content found");
-						dob.write(PAGE_START_TAG.getBytes());
-						if (readUntilMatch(PAGE_END_TAG.getBytes(), true)) {
-							key.set(fsdin.getPos());
-							value.set(dob.getData(), 0, dob.getLength());
-							return true;
-						}
-					} finally {
-						dob.reset();
-					}
+			try {
+				if (scanner.nextPage(dob)) {
+					log.debug("Wiki page content found");
+					key.set(scanner.getPos());
+					value.set(dob.getData(), 0, dob.getLength());
+					return true;
 				}
+			} finally {
+				dob.reset();
 			}
 
 			log.debug("No page start tag found");
@@ -139,50 +364,37 @@ public class WikipediaInputFormat extends TextInputFormat {
 
 		@Override
 		public void close() throws IOException {
-			fsdin.close();
-		}
+			increment(IndexerCounter.FILTERED_PAGES, scanner.getFiltered());
+			increment(IndexerCounter.BYTES_SCANNED, scanner.getScanned());
 
-		@Override
-		public float getProgress() throws IOException, InterruptedException {
-			return (fsdin.getPos() - start) / (float) (end - start);
+			try {
+				in.close();
+			} finally {
+				if (decompressor != null) {
+					CodecPool.returnDecompressor(decompressor);
+					decompressor = null;
+				}
+			}
 		}
 
 		/**
-		 * Reads through the input file until a match is found or until the end.
-		 * 
-		 * @param match
-		 *            String to match. Page start or end tag.
-		 * @param inPage
-		 *            Copy the content to the output buffer if true
-		 * @return
-		 * @throws IOException
+		 * Increments a counter of the task, if the context has counters. The
+		 * Counter enum inherited from FileInputFormat hides an imported
+		 * Counter interface in this class.
 		 */
-		private boolean readUntilMatch(byte[] match, boolean inPage)
-				throws IOException {
-			int i = 0;
-			while (true) {
-				int b = fsdin.read();
-
-				// end of file
-				if (b == -1)
-					return false;
-
-				// copy content to buffer
-				if (inPage)
-					dob.write(b);
-
-				// check for match
-				if (b == match[i]) {
-					i++;
-					if (i >= match.length)
-						return true;
-				} else
-					i = 0;
-
-				// check if we're past the end point
-				if (!inPage && i == 0 && fsdin.getPos() >= end)
-					return false;
-			}
+		private void increment(IndexerCounter name, long value) {
+			org.apache.hadoop.mapreduce.Counter counter = context
+					.getCounter(name);
+			if (counter != null)
+				counter.increment(value);
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			if (end == Long.MAX_VALUE)
+				return 0.0f;
+			return Math.min(1.0f, (position.getPos() - start)
+					/ (float) (end - start));
 		}
 
 	}
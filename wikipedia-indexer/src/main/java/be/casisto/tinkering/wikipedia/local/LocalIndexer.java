@@ -0,0 +1,353 @@
+package be.casisto.tinkering.wikipedia.local;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import be.casisto.tinkering.wikipedia.indexer.LinkSet;
+import be.casisto.tinkering.wikipedia.indexer.WikiLinkTokenizer;
+import be.casisto.tinkering.wikipedia.indexer.WikiPage;
+import be.casisto.tinkering.wikipedia.indexer.WikiPageScanner;
+import be.casisto.tinkering.wikipedia.indexer.WikipediaInputFormat;
+import be.casisto.tinkering.wikipedia.indexer.WikipediaInputFormat.WikiXmlReader;
+
+/**
+ * Indexes a wikipedia dump on the local file system in a single JVM, without
+ * Hadoop jobs or HDFS. Writes the same links and pages index files as the
+ * IndexerTool in text format.
+ * 
+ * The dump is cut in page aligned splits, like the WikipediaInputFormat does
+ * for the MapReduce jobs, and the splits are indexed in parallel on a fork
+ * join pool. Plain xml splits are memory mapped, compressed splits are read
+ * per bzip2 block. Every split is written as sorted run files, which are
+ * merged into the index files at the end.
+ * 
+ * @author jiri
+ */
+public class LocalIndexer {
+
+	private static final Logger log = LoggerFactory
+			.getLogger(LocalIndexer.class);
+
+	/**
+	 * Maximum size in bytes of a split of the dump.
+	 */
+	public static final String SPLIT_SIZE = "wiki.indexer.local.split";
+
+	private static final long DEFAULT_SPLIT_SIZE = 64 * 1024 * 1024;
+
+	private final Configuration conf;
+	private final int threads;
+
+	private final AtomicLong pages = new AtomicLong();
+	private final AtomicLong links = new AtomicLong();
+
+	/**
+	 * Creates a local indexer.
+	 * 
+	 * @param conf
+	 *            configuration with the optional multistream index, buffer and
+	 *            split sizes
+	 * @param threads
+	 *            number of splits indexed in parallel
+	 */
+	public LocalIndexer(Configuration conf, int threads) {
+		this.conf = new Configuration(conf);
+		this.conf.set("fs.defaultFS", "file:///");
+		this.threads = threads;
+	}
+
+	/**
+	 * Indexes the dump.
+	 * 
+	 * @param input
+	 *            local wikipedia xml or bzip2 compressed archive
+	 * @param linksIndex
+	 *            local links index file destination
+	 * @param pagesIndex
+	 *            local pages index file destination
+	 * @throws IOException
+	 */
+	public void run(String input, String linksIndex, String pagesIndex)
+			throws IOException {
+		Path inputFile = Paths.get(input).toAbsolutePath();
+		Path linksFile = Paths.get(linksIndex).toAbsolutePath();
+		Path pagesFile = Paths.get(pagesIndex).toAbsolutePath();
+
+		List<FileSplit> splits = getSplits(inputFile);
+		log.info("Indexing {} splits of {} with {} threads", splits.size(),
+				inputFile, threads);
+
+		Path runs = Files.createTempDirectory(linksFile.getParent(),
+				"local-index");
+		try {
+			List<Path> linkRuns = new ArrayList<Path>();
+			List<Path> pageRuns = new ArrayList<Path>();
+			for (int i = 0; i < splits.size(); i++) {
+				linkRuns.add(runs.resolve("links-" + i));
+				pageRuns.add(runs.resolve("pages-" + i));
+			}
+
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				pool.invoke(new IndexTask(splits, linkRuns, pageRuns, 0,
+						splits.size()));
+			} finally {
+				pool.shutdown();
+			}
+			log.info("Indexed {} pages with {} links", pages.get(),
+					links.get());
+
+			RunMerger merger = new RunMerger();
+			long count = merger.merge(linkRuns, linksFile);
+			log.info("Wrote {} pages to the links index {}", count, linksFile);
+
+			count = merger.merge(pageRuns, pagesFile);
+			log.info("Wrote {} pages to the pages index {}", count, pagesFile);
+		} finally {
+			for (Path run : Files.newDirectoryStream(runs))
+				Files.delete(run);
+			Files.delete(runs);
+		}
+	}
+
+	/**
+	 * Cuts the dump in splits with the WikipediaInputFormat.
+	 */
+	private List<FileSplit> getSplits(Path input) throws IOException {
+		Job job = Job.getInstance(conf);
+		FileInputFormat.addInputPath(job,
+				new org.apache.hadoop.fs.Path(input.toUri()));
+		FileInputFormat.setMaxInputSplitSize(job,
+				conf.getLong(SPLIT_SIZE, DEFAULT_SPLIT_SIZE));
+
+		List<FileSplit> splits = new ArrayList<FileSplit>();
+		for (InputSplit split : new WikipediaInputFormat().getSplits(job))
+			splits.add((FileSplit) split);
+		return splits;
+	}
+
+	/**
+	 * Indexes the pages of a split into a links and a pages run file.
+	 */
+	private void index(FileSplit split, Path linkRun, Path pageRun)
+			throws IOException {
+		WikiPage page = new WikiPage();
+		WikiLinkTokenizer tokenizer = new WikiLinkTokenizer();
+		LinkSet pageLinks = new LinkSet();
+		LinkSet targets = new LinkSet();
+
+		Text title = new Text();
+		Text list = new Text();
+		RunWriter run = new RunWriter();
+
+		long linkCount = 0;
+		try (PageSource source = open(split)) {
+			while (source.next()) {
+				if (!page.parse(source.getBytes(), source.getLength())
+						|| !page.isValidPage())
+					continue;
+
+				pageLinks.clear();
+				tokenizer.reset(page.getBytes(), page.getTextStart(),
+						page.getTextEnd());
+				while (tokenizer.next()) {
+					if (pageLinks.add(page.getBytes(),
+							tokenizer.getLinkStart(), tokenizer.getLinkLength()))
+						targets.add(page.getBytes(), tokenizer.getLinkStart(),
+								tokenizer.getLinkLength());
+				}
+				if (pageLinks.size() == 0)
+					continue;
+
+				page.getTitle(title);
+				targets.add(title);
+				pageLinks.sort();
+				pageLinks.join(list, (byte) ',');
+				run.add(title, list);
+				linkCount += pageLinks.size();
+			}
+		}
+		run.write(linkRun);
+
+		RunWriter pageRunWriter = new RunWriter();
+		Text target = new Text();
+		Text empty = new Text();
+		for (int i = 0; i < targets.size(); i++) {
+			targets.get(i, target);
+			pageRunWriter.add(target, empty);
+		}
+		pageRunWriter.write(pageRun);
+
+		pages.addAndGet(run.size());
+		links.addAndGet(linkCount);
+	}
+
+	/**
+	 * Opens the pages of a split: memory mapped for plain xml, through the
+	 * WikiXmlReader for compressed input.
+	 */
+	private PageSource open(FileSplit split) throws IOException {
+		if (new CompressionCodecFactory(conf).getCodec(split.getPath()) == null)
+			return new MappedPageSource(split);
+		return new ReaderPageSource(split);
+	}
+
+	/**
+	 * Fork join task that indexes a range of splits.
+	 */
+	private class IndexTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<FileSplit> splits;
+		private final List<Path> linkRuns;
+		private final List<Path> pageRuns;
+		private final int from;
+		private final int to;
+
+		IndexTask(List<FileSplit> splits, List<Path> linkRuns,
+				List<Path> pageRuns, int from, int to) {
+			this.splits = splits;
+			this.linkRuns = linkRuns;
+			this.pageRuns = pageRuns;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new IndexTask(splits, linkRuns, pageRuns, from,
+						middle), new IndexTask(splits, linkRuns, pageRuns,
+						middle, to));
+				return;
+			}
+
+			if (from == to)
+				return;
+
+			try {
+				index(splits.get(from), linkRuns.get(from), pageRuns.get(from));
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to index split "
+						+ splits.get(from), e);
+			}
+		}
+
+	}
+
+	/**
+	 * The raw pages of a split.
+	 */
+	private interface PageSource extends AutoCloseable {
+
+		boolean next() throws IOException;
+
+		byte[] getBytes();
+
+		int getLength();
+
+		@Override
+		void close() throws IOException;
+
+	}
+
+	private class MappedPageSource implements PageSource {
+
+		private final MappedInputStream in;
+		private final WikiPageScanner scanner;
+		private final DataOutputBuffer dob = new DataOutputBuffer();
+
+		MappedPageSource(FileSplit split) throws IOException {
+			in = new MappedInputStream(Paths.get(split.getPath().toUri()),
+					split.getStart());
+			scanner = new WikiPageScanner(in, in, true, split.getStart()
+					+ split.getLength(), conf.getInt(
+					WikipediaInputFormat.BUFFER_SIZE, 1024 * 1024));
+			scanner.setFilter(WikipediaInputFormat.getPageFilter(conf));
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			dob.reset();
+			return scanner.nextPage(dob);
+		}
+
+		@Override
+		public byte[] getBytes() {
+			return dob.getData();
+		}
+
+		@Override
+		public int getLength() {
+			return dob.getLength();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+	}
+
+	private class ReaderPageSource implements PageSource {
+
+		private final WikiXmlReader reader;
+		private Text value;
+
+		ReaderPageSource(FileSplit split) throws IOException {
+			reader = new WikiXmlReader(split, new TaskAttemptContextImpl(conf,
+					new TaskAttemptID()));
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			try {
+				if (!reader.nextKeyValue())
+					return false;
+				value = reader.getCurrentValue();
+				return true;
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public byte[] getBytes() {
+			return value.getBytes();
+		}
+
+		@Override
+		public int getLength() {
+			return value.getLength();
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,81 @@
+package be.casisto.tinkering.wikipedia.local;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.hadoop.fs.Seekable;
+
+/**
+ * Input stream over a memory mapped region of a file, starting at a given
+ * position up to the end of the file or the maximum size of a mapping.
+ * 
+ * @author jiri
+ */
+public class MappedInputStream extends InputStream implements Seekable {
+
+	private final long start;
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * Maps the file from the start position.
+	 * 
+	 * @param file
+	 *            the file to map
+	 * @param start
+	 *            position of the first mapped byte
+	 * @throws IOException
+	 */
+	public MappedInputStream(Path file, long start) throws IOException {
+		this.start = start;
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			long size = Math.min(channel.size() - start, Integer.MAX_VALUE);
+			buffer = channel.map(MapMode.READ_ONLY, start, size);
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!buffer.hasRemaining())
+			return -1;
+
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return buffer.remaining();
+	}
+
+	@Override
+	public long getPos() throws IOException {
+		return start + buffer.position();
+	}
+
+	@Override
+	public void seek(long pos) throws IOException {
+		if (pos < start || pos > start + buffer.limit())
+			throw new IOException("Position " + pos + " is not mapped");
+		buffer.position((int) (pos - start));
+	}
+
+	@Override
+	public boolean seekToNewSource(long targetPos) throws IOException {
+		return false;
+	}
+
+}
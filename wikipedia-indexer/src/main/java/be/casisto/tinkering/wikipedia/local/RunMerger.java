@@ -0,0 +1,192 @@
+package be.casisto.tinkering.wikipedia.local;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+
+import be.casisto.tinkering.wikipedia.indexer.LinkSet;
+
+/**
+ * Merges sorted run files into a single sorted index file. Lines with the
+ * same key are written once, with the union of their comma delimited values.
+ * 
+ * @author jiri
+ */
+public class RunMerger {
+
+	private final LinkSet links = new LinkSet();
+	private final Text link = new Text();
+	private final Text list = new Text();
+
+	/**
+	 * Merges the run files.
+	 * 
+	 * @param runs
+	 *            sorted run files
+	 * @param output
+	 *            the index file
+	 * @return the number of lines written
+	 * @throws IOException
+	 */
+	public long merge(List<Path> runs, Path output) throws IOException {
+		PriorityQueue<Run> queue = new PriorityQueue<Run>(Math.max(1,
+				runs.size()));
+		long count = 0;
+
+		try (OutputStream out = new BufferedOutputStream(
+				Files.newOutputStream(output), 1024 * 1024)) {
+			for (Path file : runs) {
+				Run run = new Run(file);
+				if (run.next())
+					queue.add(run);
+				else
+					run.close();
+			}
+
+			byte[] key = new byte[256];
+			int keyLength = -1;
+
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+
+				if (keyLength >= 0
+						&& WritableComparator.compareBytes(key, 0, keyLength,
+								run.line, 0, run.keyLength) == 0) {
+					addLinks(run);
+				} else {
+					if (keyLength >= 0) {
+						write(out, key, keyLength);
+						count++;
+					}
+
+					keyLength = run.keyLength;
+					if (keyLength > key.length)
+						key = Arrays.copyOf(key, Math.max(key.length * 2,
+								keyLength));
+					System.arraycopy(run.line, 0, key, 0, keyLength);
+
+					links.clear();
+					addLinks(run);
+				}
+
+				if (run.next())
+					queue.add(run);
+				else
+					run.close();
+			}
+
+			if (keyLength >= 0) {
+				write(out, key, keyLength);
+				count++;
+			}
+		} finally {
+			for (Run run : queue)
+				run.close();
+		}
+
+		return count;
+	}
+
+	private void addLinks(Run run) {
+		int start = run.keyLength + 1;
+		while (start < run.length) {
+			int end = start;
+			while (end < run.length && run.line[end] != ',')
+				end++;
+			links.add(run.line, start, end - start);
+			start = end + 1;
+		}
+	}
+
+	private void write(OutputStream out, byte[] key, int keyLength)
+			throws IOException {
+		links.sort();
+		links.join(list, (byte) ',');
+
+		out.write(key, 0, keyLength);
+		out.write('\t');
+		out.write(list.getBytes(), 0, list.getLength());
+		out.write('\n');
+	}
+
+	/**
+	 * Reader for the lines of a run file.
+	 */
+	private static class Run implements Comparable<Run>, Closeable {
+
+		private final InputStream in;
+
+		private final byte[] buffer = new byte[256 * 1024];
+		private int offset = 0;
+		private int limit = 0;
+
+		private byte[] line = new byte[1024];
+		private int length;
+		private int keyLength;
+
+		Run(Path file) throws IOException {
+			in = Files.newInputStream(file);
+		}
+
+		/**
+		 * Reads the next line.
+		 * 
+		 * @return false at the end of the run
+		 * @throws IOException
+		 */
+		boolean next() throws IOException {
+			length = 0;
+			keyLength = -1;
+
+			boolean read = false;
+			while (true) {
+				if (offset == limit) {
+					limit = in.read(buffer, 0, buffer.length);
+					offset = 0;
+					if (limit <= 0) {
+						limit = 0;
+						break;
+					}
+				}
+				read = true;
+
+				byte b = buffer[offset++];
+				if (b == '\n')
+					break;
+
+				if (length == line.length)
+					line = Arrays.copyOf(line, length * 2);
+				if (b == '\t' && keyLength < 0)
+					keyLength = length;
+				line[length++] = b;
+			}
+
+			if (keyLength < 0)
+				keyLength = length;
+			return read;
+		}
+
+		@Override
+		public int compareTo(Run other) {
+			return WritableComparator.compareBytes(line, 0, keyLength,
+					other.line, 0, other.keyLength);
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+	}
+
+}
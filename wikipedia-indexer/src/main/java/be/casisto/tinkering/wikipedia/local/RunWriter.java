@@ -0,0 +1,111 @@
+package be.casisto.tinkering.wikipedia.local;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.util.IndexedSortable;
+import org.apache.hadoop.util.QuickSort;
+
+/**
+ * Collects index lines (key, a tab and a value) in a single byte array and
+ * writes them to a run file, sorted on the key in the byte order of Text.
+ * 
+ * @author jiri
+ */
+public class RunWriter implements IndexedSortable {
+
+	private static final QuickSort sorter = new QuickSort();
+
+	private byte[] bytes = new byte[1024 * 1024];
+	private int length = 0;
+
+	private int[] starts = new int[1024];
+	private int[] keyLengths = new int[1024];
+	private int[] lengths = new int[1024];
+	private int size = 0;
+
+	/**
+	 * Adds a line.
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void add(Text key, Text value) {
+		int len = key.getLength() + 1 + value.getLength();
+
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			keyLengths = Arrays.copyOf(keyLengths, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+		}
+		if (length + len > bytes.length)
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length
+					+ len));
+
+		starts[size] = length;
+		keyLengths[size] = key.getLength();
+		lengths[size] = len;
+		size++;
+
+		System.arraycopy(key.getBytes(), 0, bytes, length, key.getLength());
+		length += key.getLength();
+		bytes[length++] = '\t';
+		System.arraycopy(value.getBytes(), 0, bytes, length,
+				value.getLength());
+		length += value.getLength();
+	}
+
+	/**
+	 * Returns the number of lines.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Sorts the lines and writes them to a run file.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(Path file) throws IOException {
+		if (size > 1)
+			sorter.sort(this, 0, size);
+
+		try (OutputStream out = new BufferedOutputStream(
+				Files.newOutputStream(file), 1024 * 1024)) {
+			for (int i = 0; i < size; i++) {
+				out.write(bytes, starts[i], lengths[i]);
+				out.write('\n');
+			}
+		}
+	}
+
+	@Override
+	public int compare(int i, int j) {
+		return WritableComparator.compareBytes(bytes, starts[i],
+				keyLengths[i], bytes, starts[j], keyLengths[j]);
+	}
+
+	@Override
+	public void swap(int i, int j) {
+		swap(starts, i, j);
+		swap(keyLengths, i, j);
+		swap(lengths, i, j);
+	}
+
+	private static void swap(int[] array, int i, int j) {
+		int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+
+}
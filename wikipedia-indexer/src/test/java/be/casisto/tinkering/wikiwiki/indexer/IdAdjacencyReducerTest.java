@@ -0,0 +1,71 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.indexer.IdAdjacencyReducer;
+import be.casisto.tinkering.wikipedia.indexer.IdAdjacencyWritable;
+import be.casisto.tinkering.wikipedia.indexer.JoinKey;
+
+/**
+ * Unit test class for the IdAdjacencyReducer and the IdAdjacencyWritable.
+ * 
+ * @author jiri
+ */
+public class IdAdjacencyReducerTest {
+
+	private ReduceDriver<Text, Text, IntWritable, IdAdjacencyWritable> reduceDriver;
+
+	@Before
+	public void setup() {
+		IdAdjacencyReducer reducer = new IdAdjacencyReducer();
+		reduceDriver = ReduceDriver.newReduceDriver(reducer);
+	}
+
+	@Test
+	public void test() throws IOException {
+		Text key = new Text();
+		JoinKey.set(key, new Text("Page 1"), JoinKey.TARGET);
+
+		reduceDriver.withInput(key, Arrays.asList(new Text("7"),
+				new Text("12"), new Text("3"), new Text("12")));
+		reduceDriver.withOutput(new IntWritable(7), adjacency(3, 12));
+
+		reduceDriver.runTest();
+	}
+
+	@Test
+	public void testWritable() throws IOException {
+		IdAdjacencyWritable adjacency = adjacency(1000000, 0, 5, 130, 131);
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		adjacency.write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		IdAdjacencyWritable read = new IdAdjacencyWritable();
+		read.readFields(in);
+
+		assertEquals(adjacency, read);
+		assertEquals("0,5,130,131,1000000", read.toString());
+	}
+
+	private IdAdjacencyWritable adjacency(int... ids) {
+		IdAdjacencyWritable adjacency = new IdAdjacencyWritable();
+		for (int id : ids)
+			adjacency.add(id);
+		adjacency.sort();
+		return adjacency;
+	}
+
+}
@@ -0,0 +1,275 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ToolRunner;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import be.casisto.tinkering.wikipedia.IndexerTool;
+import be.casisto.tinkering.wikipedia.indexer.PageLinkMapper;
+import be.casisto.tinkering.wikipedia.indexer.WikipediaInputFormat.WikiXmlReader;
+
+/**
+ * JMH benchmark suite for the indexer components on a synthetic dump: the
+ * WikiXmlReader on its own, the PageLinkMapper on pages read in memory
+ * beforehand, and the full IndexerTool with the local job runner. The
+ * megabytes and pages counters are reported as MB/s and pages/s.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=be.casisto.tinkering.wikiwiki.indexer.IndexerBenchmark
+ *
+ * @author jiri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IndexerBenchmark {
+
+	@Param({ "20000" })
+	public int pages;
+
+	private File dir;
+	private File dump;
+	private double megabytes;
+	private Configuration conf;
+
+	private List<Text> values;
+
+	/**
+	 * Counts the megabytes and pages processed, reported by JMH as rates.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+
+		public double megabytes;
+		public long pages;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+			pages = 0;
+		}
+
+	}
+
+	@Setup(Level.Trial)
+	public void createDump() throws Exception {
+		conf = new Configuration();
+		conf.set("fs.defaultFS", "file:///");
+		conf.set("mapreduce.framework.name", "local");
+
+		dir = Files.createTempDirectory("indexer-benchmark").toFile();
+		File input = new File(dir, "input");
+		input.mkdir();
+		dump = new File(input, "dump.xml");
+		new SyntheticDump(42).setPages(pages).write(dump);
+		megabytes = dump.length() / (1024.0 * 1024.0);
+
+		// the pages for the mapper benchmark
+		values = new ArrayList<Text>();
+		WikiXmlReader reader = reader();
+		while (reader.nextKeyValue())
+			values.add(new Text(reader.getCurrentValue()));
+		reader.close();
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteDump() {
+		FileUtil.fullyDelete(dir);
+	}
+
+	@Benchmark
+	public long reader(Throughput throughput) throws Exception {
+		WikiXmlReader reader = reader();
+
+		long bytes = 0;
+		long read = 0;
+		while (reader.nextKeyValue()) {
+			bytes += reader.getCurrentValue().getLength();
+			read++;
+		}
+		reader.close();
+
+		throughput.megabytes += megabytes;
+		throughput.pages += read;
+		return bytes;
+	}
+
+	@Benchmark
+	public long mapper(Throughput throughput) throws Exception {
+		final long[] written = new long[1];
+		RecordWriter<Text, Text> writer = new RecordWriter<Text, Text>() {
+
+			@Override
+			public void write(Text key, Text value) {
+				written[0]++;
+			}
+
+			@Override
+			public void close(TaskAttemptContext context) {
+			}
+
+		};
+
+		new PageLinkMapper().run(mapContext(values, writer));
+
+		throughput.megabytes += megabytes;
+		throughput.pages += values.size();
+		return written[0];
+	}
+
+	@Benchmark
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public int indexer(Throughput throughput) throws Exception {
+		Configuration job = new Configuration(conf);
+		File output = Files.createTempDirectory(dir.toPath(), "index")
+				.toFile();
+		job.set("wiki.indexer.input", dump.getParent());
+		job.set("wiki.indexer.links", new File(output, "links")
+				.getAbsolutePath());
+		job.set("wiki.indexer.pages", new File(output, "pages")
+				.getAbsolutePath());
+		job.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+
+		int res = ToolRunner.run(job, new IndexerTool(), new String[0]);
+		FileUtil.fullyDelete(output);
+
+		throughput.megabytes += megabytes;
+		throughput.pages += values.size();
+		return res;
+	}
+
+	private WikiXmlReader reader() throws IOException {
+		FileSplit split = new FileSplit(new Path(dump.getAbsolutePath()), 0,
+				dump.length(), null);
+		return new WikiXmlReader(split, new TaskAttemptContextImpl(conf,
+				new TaskAttemptID()));
+	}
+
+	/**
+	 * Creates a mapper context that reads the pages from memory and keeps
+	 * the counters in memory.
+	 */
+	private Mapper<LongWritable, Text, Text, Text>.Context mapContext(
+			final List<Text> pages, RecordWriter<Text, Text> writer) {
+		RecordReader<LongWritable, Text> reader = new RecordReader<LongWritable, Text>() {
+
+			private final LongWritable key = new LongWritable();
+			private int index = -1;
+
+			@Override
+			public void initialize(InputSplit split, TaskAttemptContext context) {
+			}
+
+			@Override
+			public boolean nextKeyValue() {
+				key.set(++index);
+				return index < pages.size();
+			}
+
+			@Override
+			public LongWritable getCurrentKey() {
+				return key;
+			}
+
+			@Override
+			public Text getCurrentValue() {
+				return pages.get(index);
+			}
+
+			@Override
+			public float getProgress() {
+				return index / (float) pages.size();
+			}
+
+			@Override
+			public void close() {
+			}
+
+		};
+
+		final Counters counters = new Counters();
+		StatusReporter reporter = new StatusReporter() {
+
+			@Override
+			public Counter getCounter(Enum<?> name) {
+				return counters.findCounter(name);
+			}
+
+			@Override
+			public Counter getCounter(String group, String name) {
+				return counters.findCounter(group, name);
+			}
+
+			@Override
+			public void progress() {
+			}
+
+			@Override
+			public float getProgress() {
+				return 0;
+			}
+
+			@Override
+			public void setStatus(String status) {
+			}
+
+		};
+
+		MapContext<LongWritable, Text, Text, Text> context = new MapContextImpl<LongWritable, Text, Text, Text>(
+				conf, new TaskAttemptID(), reader, writer, null, reporter, null);
+		return new WrappedMapper<LongWritable, Text, Text, Text>()
+				.getMapContext(context);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(
+				IndexerBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
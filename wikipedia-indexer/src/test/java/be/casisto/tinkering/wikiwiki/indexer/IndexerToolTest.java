@@ -0,0 +1,507 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.ToolRunner;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.IndexerTool;
+import be.casisto.tinkering.wikipedia.RunReport;
+import be.casisto.tinkering.wikipedia.indexer.IndexerCounter;
+import be.casisto.tinkering.wikipedia.indexer.TitleFilterReducer;
+
+/**
+ * Runs the indexing jobs of the IndexerTool on the test archive with the local
+ * job runner.
+ * 
+ * @author jiri
+ */
+public class IndexerToolTest {
+
+	private static final String[] LINKS = { "Page 1\tPage 2,Page 3",
+			"Page 2\tPage 1,Page 3,Page 5", "Page 3\tPage 4,Page 6",
+			"Page 5\tPage 6" };
+
+	private static final String[] PAGES = { "Page 1\t", "Page 2\t",
+			"Page 3\t", "Page 4\t", "Page 5\t", "Page 6\t" };
+
+	private static final String[] RESOLVED_LINKS = { "Page 1\tPage 2,Page 3",
+			"Page 2\tLoop A,Page 1,Page 3" };
+
+	private static final String[] RESOLVED_PAGES = { "Loop A\t", "Page 1\t",
+			"Page 2\t", "Page 3\t" };
+
+	private static final String[] IDS = { "Page 1\t0", "Page 2\t1",
+			"Page 3\t2", "Page 4\t3", "Page 5\t4", "Page 6\t5" };
+
+	private static final String[] GRAPH = { "0\t1,2", "1\t0,2,4", "2\t3,5",
+			"4\t5" };
+
+	private static final String[] MERGED_LINKS = { "Page 1\tPage 2,Page 3",
+			"Page 2\tPage 1,Page 7", "Page 3\tPage 3b",
+			"Page 3b\tPage 4,Page 6", "Page 4\tPage 1" };
+
+	private static final String[] MERGED_PAGES = { "Page 1\t", "Page 2\t",
+			"Page 3\t", "Page 3b\t", "Page 4\t", "Page 6\t", "Page 7\t" };
+
+	private static final String[] EXISTING_LINKS = { "Page 3\tPage 3b",
+			"Page 3b\tPage 4" };
+
+	private static final String[] EXISTING_PAGES = { "Page 3\t",
+			"Page 3b\t", "Page 4\t" };
+
+	private static final String[] BACKLINKS = { "Page 1\tPage 2",
+			"Page 2\tPage 1", "Page 3\tPage 1,Page 2", "Page 4\tPage 3",
+			"Page 5\tPage 2", "Page 6\tPage 3,Page 5" };
+
+	private static final String[] IN_DEGREES = { "Page 1\t1", "Page 2\t1",
+			"Page 3\t2", "Page 4\t1", "Page 5\t1", "Page 6\t2" };
+
+	private static final String[] DEGREES = { "Page 1\t2\t1",
+			"Page 2\t3\t1", "Page 3\t2\t2", "Page 4\t0\t1", "Page 5\t1\t1",
+			"Page 6\t0\t2" };
+
+	private static final String[] DEGREE_IDS = { "Page 1\t2", "Page 2\t0",
+			"Page 3\t1", "Page 4\t5", "Page 5\t3", "Page 6\t4" };
+
+	private static final String[] DEGREE_GRAPH = { "0\t1,2,3", "1\t4,5",
+			"2\t0,1", "3\t4" };
+
+	private File dir;
+	private Configuration conf;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("indexer-tool").toFile();
+
+		File input = new File(dir, "input");
+		input.mkdir();
+
+		conf = new Configuration();
+		conf.set("fs.defaultFS", "file:///");
+		conf.set("mapreduce.framework.name", "local");
+		conf.set("wiki.indexer.input", input.getAbsolutePath());
+		conf.set("wiki.indexer.links", new File(dir, "links").getAbsolutePath());
+		conf.set("wiki.indexer.pages", new File(dir, "pages").getAbsolutePath());
+	}
+
+	@After
+	public void cleanup() {
+		FileUtil.fullyDelete(dir);
+	}
+
+	@Test
+	public void testText() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(LINKS), readText("links"));
+		assertEquals(lines(PAGES), readText("pages"));
+	}
+
+	@Test
+	public void testBinary() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_BINARY);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(LINKS), readSequence("links"));
+		assertEquals(lines(PAGES), readSequence("pages"));
+	}
+
+	@Test
+	public void testRedirects() throws Exception {
+		input("test-redirects.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		conf.setBoolean(IndexerTool.REDIRECTS, true);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(RESOLVED_LINKS), readText("links"));
+		assertEquals(lines(RESOLVED_PAGES), readText("pages"));
+
+		// only the index files are left
+		assertEquals(3, dir.list().length);
+	}
+
+	@Test
+	public void testIds() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		setIds();
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(IDS), readText("ids"));
+		assertEquals(lines(GRAPH), readText("graph"));
+	}
+
+	@Test
+	public void testBinaryIds() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_BINARY);
+		setIds();
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(IDS), readSequence("ids"));
+		assertEquals(lines(GRAPH), readSequence("graph"));
+
+		// only the index files are left
+		assertEquals(5, dir.list().length);
+	}
+
+	@Test
+	public void testSorted() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		conf.setInt(IndexerTool.REDUCERS, 3);
+		conf.setBoolean(IndexerTool.TOTAL_ORDER, true);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		// the part files are sorted in title order without a merge
+		assertEquals(3, parts("links").length);
+		assertEquals(lines(LINKS), concatenate("links"));
+		assertEquals(lines(PAGES), concatenate("pages"));
+
+		// the partition file is removed
+		assertEquals(3, dir.list().length);
+	}
+
+	@Test
+	public void testSortedResume() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		conf.setInt(IndexerTool.REDUCERS, 3);
+		conf.setBoolean(IndexerTool.TOTAL_ORDER, true);
+		conf.setBoolean(IndexerTool.DEGREES, true);
+		// a file in the way of the out-degrees fails the pages index
+		File blocker = new File(dir, "pages-out");
+		assertTrue(blocker.createNewFile());
+		assertTrue(ToolRunner.run(conf, new IndexerTool(), new String[0]) != 0);
+
+		blocker.delete();
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		// the resumed pages index is partitioned like the links index
+		assertEquals(3, parts("pages").length);
+		assertEquals(lines(DEGREES), concatenate("pages"));
+		assertFalse(new File(dir, "links-partitions").exists());
+	}
+
+	@Test
+	public void testIncremental() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_BINARY);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		// Page 2 and 4 changed, Page 3 renamed to Page 3b, Page 5 deleted
+		File delta = new File(dir, "delta");
+		delta.mkdir();
+		Files.copy(new File("src/test/resources/test-delta.xml").toPath(),
+				new File(delta, "delta.xml").toPath());
+		File deleted = new File(dir, "deleted.txt");
+		Files.write(deleted.toPath(), lines(new String[] { "Page 5" }),
+				StandardCharsets.UTF_8);
+
+		conf.set("wiki.indexer.input", delta.getAbsolutePath());
+		conf.set("wiki.indexer.links", new File(dir, "links-2")
+				.getAbsolutePath());
+		conf.set("wiki.indexer.pages", new File(dir, "pages-2")
+				.getAbsolutePath());
+		conf.set(IndexerTool.INCREMENTAL, new File(dir, "links")
+				.getAbsolutePath());
+		conf.set(IndexerTool.DELETED, deleted.getAbsolutePath());
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(MERGED_LINKS), readSequence("links-2"));
+		assertEquals(lines(MERGED_PAGES), readSequence("pages-2"));
+	}
+
+	@Test
+	public void testRedLinks() throws Exception {
+		// Page 1, 6 and 7 are linked but not in the dump
+		input("test-delta.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		conf.setBoolean(IndexerTool.RED_LINKS, true);
+		conf.setLong(TitleFilterReducer.TITLES, 100);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(EXISTING_LINKS), readText("links"));
+		assertEquals(lines(EXISTING_PAGES), readText("pages"));
+
+		// only the index files are left
+		assertEquals(3, dir.list().length);
+	}
+
+	@Test
+	public void testCompressed() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		conf.set(IndexerTool.CODEC, "gzip");
+		conf.set(IndexerTool.MAP_CODEC, "default");
+		setIds();
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		for (File part : parts("links"))
+			assertTrue(part.getName().endsWith(".gz"));
+		for (File part : parts("pages"))
+			assertTrue(part.getName().endsWith(".gz"));
+
+		// the ids jobs read the compressed links index
+		assertEquals(lines(LINKS), readText("links"));
+		assertEquals(lines(PAGES), readText("pages"));
+		assertEquals(lines(IDS), readText("ids"));
+		assertEquals(lines(GRAPH), readText("graph"));
+	}
+
+	@Test
+	public void testReport() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		RunReport report = new RunReport("test");
+		report.addPhase("upload", 1);
+		assertEquals(0,
+				ToolRunner.run(conf, new IndexerTool(report), new String[0]));
+
+		File file = new File(dir, "report.json");
+		report.write(file);
+
+		JsonNode json = new ObjectMapper().readTree(file);
+		assertEquals("test", json.get("iteration").getTextValue());
+		assertEquals("upload", json.get("phases").get(0).get("name")
+				.getTextValue());
+
+		JsonNode job = json.get("jobs").get(0);
+		assertEquals("WikiWiki_Index_Links", job.get("name").getTextValue());
+		assertTrue(job.get("successful").getBooleanValue());
+
+		JsonNode counters = job.get("counters").get(
+				IndexerCounter.class.getName());
+		assertEquals(6, counters.get("PAGES_READ").getLongValue());
+		assertEquals(8, counters.get("LINKS_EMITTED").getLongValue());
+		assertTrue(counters.get("BYTES_SCANNED").getLongValue() > 0);
+	}
+
+	@Test
+	public void testResume() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		setIds();
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		// the graph job failed
+		FileUtil.fullyDelete(new File(dir, "graph"));
+		new File(dir, "graph").mkdir();
+
+		RunReport report = new RunReport("test");
+		assertEquals(0,
+				ToolRunner.run(conf, new IndexerTool(report), new String[0]));
+
+		File file = new File(dir, "report.json");
+		report.write(file);
+		JsonNode jobs = new ObjectMapper().readTree(file).get("jobs");
+		assertEquals(2, jobs.size());
+		assertEquals("WikiWiki_Join_Link_Ids", jobs.get(0).get("name")
+				.getTextValue());
+		assertEquals("WikiWiki_Index_Graph", jobs.get(1).get("name")
+				.getTextValue());
+		file.delete();
+
+		assertEquals(lines(LINKS), readText("links"));
+		assertEquals(lines(PAGES), readText("pages"));
+		assertEquals(lines(IDS), readText("ids"));
+		assertEquals(lines(GRAPH), readText("graph"));
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		// no input, the tool returns instead of exiting the JVM
+		conf.set("wiki.indexer.input", new File(dir, "missing")
+				.getAbsolutePath());
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		assertTrue(ToolRunner.run(conf, new IndexerTool(), new String[0]) != 0);
+	}
+
+	@Test
+	public void testBacklinks() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		setBacklinks();
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(BACKLINKS), readText("backlinks"));
+		assertEquals(lines(IN_DEGREES), readText("indegrees"));
+		assertEquals(lines(PAGES), readText("pages"));
+	}
+
+	@Test
+	public void testDefaultInDegrees() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		conf.set(IndexerTool.BACKLINKS, new File(dir, "backlinks")
+				.getAbsolutePath());
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(BACKLINKS), readText("backlinks"));
+		assertEquals(lines(IN_DEGREES), readText("backlinks-degrees"));
+	}
+
+	@Test
+	public void testBinaryBacklinks() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_BINARY);
+		setBacklinks();
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(BACKLINKS), readSequence("backlinks"));
+		assertEquals(lines(IN_DEGREES), readSequence("indegrees"));
+	}
+
+	@Test
+	public void testDegrees() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		conf.setBoolean(IndexerTool.DEGREES, true);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(LINKS), readText("links"));
+		assertEquals(lines(DEGREES), readText("pages"));
+
+		// the out-degrees are removed
+		assertEquals(3, dir.list().length);
+	}
+
+	@Test
+	public void testBinaryDegrees() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_BINARY);
+		conf.setBoolean(IndexerTool.DEGREES, true);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		assertEquals(lines(DEGREES), readSequence("pages"));
+	}
+
+	@Test
+	public void testDegreeOrder() throws Exception {
+		input("test-archive.xml");
+		conf.set(IndexerTool.FORMAT, IndexerTool.FORMAT_TEXT);
+		setIds();
+		conf.set(IndexerTool.ORDER, IndexerTool.ORDER_DEGREE);
+		assertEquals(0, ToolRunner.run(conf, new IndexerTool(), new String[0]));
+
+		// the pages with the most links first, then by title
+		assertEquals(lines(DEGREES), readText("pages"));
+		assertEquals(lines(DEGREE_IDS), readText("ids"));
+		assertEquals(lines(DEGREE_GRAPH), readText("graph"));
+
+		// only the index files are left
+		assertEquals(5, dir.list().length);
+	}
+
+	private void setBacklinks() {
+		conf.set(IndexerTool.BACKLINKS, new File(dir, "backlinks")
+				.getAbsolutePath());
+		conf.set(IndexerTool.IN_DEGREES, new File(dir, "indegrees")
+				.getAbsolutePath());
+	}
+
+	private void setIds() {
+		// more than one partition for the titles
+		conf.setInt(IndexerTool.REDUCERS, 3);
+		conf.set(IndexerTool.IDS, new File(dir, "ids").getAbsolutePath());
+		conf.set(IndexerTool.GRAPH, new File(dir, "graph").getAbsolutePath());
+	}
+
+	private void input(String resource) throws IOException {
+		Files.copy(new File("src/test/resources/" + resource).toPath(),
+				new File(dir, "input/input.txt").toPath());
+	}
+
+	private List<String> lines(String[] lines) {
+		List<String> list = new ArrayList<String>();
+		for (String line : lines)
+			list.add(line);
+		return list;
+	}
+
+	private List<String> readText(String index) throws IOException {
+		List<String> lines = concatenate(index);
+		Collections.sort(lines);
+		return lines;
+	}
+
+	private List<String> concatenate(String index) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+		for (File part : parts(index)) {
+			InputStream in = Files.newInputStream(part.toPath());
+			CompressionCodec codec = codecs.getCodec(new Path(part
+					.getAbsolutePath()));
+			if (codec != null)
+				in = codec.createInputStream(in);
+
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(in, StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null)
+					lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private List<String> readSequence(String index) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		for (File part : parts(index)) {
+			try (SequenceFile.Reader reader = new SequenceFile.Reader(conf,
+					SequenceFile.Reader.file(new Path(part.getAbsolutePath())))) {
+				Writable key = (Writable) ReflectionUtils.newInstance(
+						reader.getKeyClass(), conf);
+				Writable value = (Writable) ReflectionUtils.newInstance(
+						reader.getValueClass(), conf);
+				while (reader.next(key, value))
+					lines.add(key + "\t" + value);
+			}
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+
+	private File[] parts(String index) {
+		File[] parts = new File(dir, index).listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith("part-");
+			}
+		});
+		Arrays.sort(parts);
+		return parts;
+	}
+
+}
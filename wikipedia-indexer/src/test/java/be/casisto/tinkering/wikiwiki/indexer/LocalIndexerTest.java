@@ -0,0 +1,149 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import be.casisto.tinkering.wikipedia.local.LocalIndexer;
+
+/**
+ * Unit test class for the LocalIndexer.
+ * 
+ * @author jiri
+ */
+public class LocalIndexerTest {
+
+	private static final int PAGES = 2000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Configuration conf;
+
+	private StringBuilder dump;
+	private List<String> links;
+	private List<String> pages;
+
+	@Before
+	public void setup() {
+		conf = new Configuration();
+
+		// pages link to random pages, some of them more than once
+		Random random = new Random(42);
+		Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+		dump = new StringBuilder("<mediawiki>\n");
+		for (int i = 0; i < PAGES; i++) {
+			String title = "Page " + i;
+			StringBuilder text = new StringBuilder();
+			int count = random.nextInt(6);
+			for (int j = 0; j < count; j++) {
+				String link = "Page " + random.nextInt(PAGES / 2);
+				text.append("Bla [[").append(link).append("|bla]] ");
+				if (random.nextInt(4) == 0)
+					text.append("[[").append(link).append("]] ");
+				for (int k = 0; k < 50; k++)
+					text.append(Long.toString(random.nextLong(), 36)).append(' ');
+
+				if (!index.containsKey(title))
+					index.put(title, new TreeSet<String>());
+				index.get(title).add(link);
+			}
+
+			dump.append("\t<page>\n\t\t<title>").append(title)
+					.append("</title>\n\t\t<revision>\n")
+					.append("\t\t\t<text xml:space=\"preserve\">").append(text)
+					.append("</text>\n\t\t</revision>\n\t</page>\n");
+		}
+		dump.append("</mediawiki>\n");
+
+		links = new ArrayList<String>();
+		// the pages index holds the linking and the linked pages
+		Set<String> targets = new TreeSet<String>();
+		for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+			links.add(entry.getKey() + "\t" + join(entry.getValue()));
+			targets.add(entry.getKey());
+			targets.addAll(entry.getValue());
+		}
+
+		pages = new ArrayList<String>();
+		for (String target : targets)
+			pages.add(target + "\t");
+	}
+
+	@Test
+	public void testTestArchive() throws Exception {
+		assertIndex(new File("src/test/resources/test-archive.xml"),
+				Arrays.asList("Page 1\tPage 2,Page 3",
+						"Page 2\tPage 1,Page 3,Page 5", "Page 3\tPage 4,Page 6",
+						"Page 5\tPage 6"), Arrays.asList("Page 1\t",
+						"Page 2\t", "Page 3\t", "Page 4\t", "Page 5\t",
+						"Page 6\t"));
+	}
+
+	@Test
+	public void testPlainXml() throws Exception {
+		File file = folder.newFile("dump.xml");
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(dump.toString().getBytes("UTF-8"));
+		}
+
+		conf.setLong(LocalIndexer.SPLIT_SIZE, 50 * 1000);
+		assertIndex(file, links, pages);
+	}
+
+	@Test
+	public void testBzip2() throws Exception {
+		File file = folder.newFile("dump.xml.bz2");
+		BZip2Codec codec = new BZip2Codec();
+		codec.setConf(conf);
+		try (OutputStream out = codec.createOutputStream(new FileOutputStream(
+				file))) {
+			out.write(dump.toString().getBytes("UTF-8"));
+		}
+
+		conf.setLong(LocalIndexer.SPLIT_SIZE, 50 * 1000);
+		assertIndex(file, links, pages);
+	}
+
+	private void assertIndex(File input, List<String> expectedLinks,
+			List<String> expectedPages) throws IOException {
+		File linksFile = new File(folder.getRoot(), "links.txt");
+		File pagesFile = new File(folder.getRoot(), "pages.txt");
+
+		new LocalIndexer(conf, 4).run(input.getAbsolutePath(),
+				linksFile.getAbsolutePath(), pagesFile.getAbsolutePath());
+
+		assertEquals(expectedLinks, Files.readAllLines(linksFile.toPath()));
+		assertEquals(expectedPages, Files.readAllLines(pagesFile.toPath()));
+	}
+
+	private static String join(Set<String> values) {
+		StringBuilder joined = new StringBuilder();
+		for (String value : values) {
+			if (joined.length() > 0)
+				joined.append(',');
+			joined.append(value);
+		}
+		return joined.toString();
+	}
+
+}
@@ -0,0 +1,86 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.indexer.AdjacencyWritable;
+import be.casisto.tinkering.wikipedia.indexer.PageAdjacencyReducer;
+
+/**
+ * Unit test class for the PageAdjacencyReducer and the AdjacencyWritable.
+ * 
+ * @author jiri
+ */
+public class PageAdjacencyReducerTest {
+
+	private ReduceDriver<Text, Text, Text, AdjacencyWritable> reduceDriver;
+	private SideOutputs<Text, AdjacencyWritable> outputs;
+
+	@Before
+	public void setup() {
+		PageAdjacencyReducer reducer = new PageAdjacencyReducer() {
+			@Override
+			protected MultipleOutputs<Text, AdjacencyWritable> createOutputs(
+					Reducer<Text, Text, Text, AdjacencyWritable>.Context context) {
+				outputs = new SideOutputs<Text, AdjacencyWritable>(context);
+				return outputs;
+			}
+		};
+		reduceDriver = ReduceDriver.newReduceDriver(reducer);
+	}
+
+	@Test
+	public void test() throws IOException {
+		List<Text> values = new ArrayList<Text>();
+		values.add(new Text("Page 3"));
+		values.add(new Text(""));
+		values.add(new Text("Page 2"));
+		values.add(new Text("Page 3"));
+
+		reduceDriver.withInput(new Text("Page 1"), values);
+		reduceDriver.withOutput(new Text("Page 1"),
+				adjacency("Page 2", "Page 3"));
+
+		reduceDriver.runTest();
+		assertEquals(Arrays.asList("pages/Page 1/"), outputs.getRecords());
+	}
+
+	@Test
+	public void testWritable() throws IOException {
+		AdjacencyWritable adjacency = adjacency("Apple", "Applet",
+				"Application", "B", "\u00c9tude");
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		adjacency.write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		AdjacencyWritable read = new AdjacencyWritable();
+		read.readFields(in);
+
+		assertEquals(adjacency, read);
+		assertEquals("Apple,Applet,Application,B,\u00c9tude", read.toString());
+	}
+
+	private AdjacencyWritable adjacency(String... links) {
+		AdjacencyWritable adjacency = new AdjacencyWritable();
+		for (String link : links)
+			adjacency.getLinks().add(new Text(link));
+		adjacency.getLinks().sort();
+		return adjacency;
+	}
+
+}
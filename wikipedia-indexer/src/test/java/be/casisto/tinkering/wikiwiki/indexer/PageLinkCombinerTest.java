@@ -0,0 +1,63 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.indexer.IndexerCounter;
+import be.casisto.tinkering.wikipedia.indexer.PageLinkCombiner;
+
+/**
+ * Unit test class for the PageLinkCombiner implementation.
+ * 
+ * @author jiri
+ */
+public class PageLinkCombinerTest {
+
+	private ReduceDriver<Text, Text, Text, Text> reduceDriver;
+
+	@Before
+	public void setup() {
+		PageLinkCombiner combiner = new PageLinkCombiner();
+		reduceDriver = ReduceDriver.newReduceDriver(combiner);
+	}
+
+	@Test
+	public void test() throws IOException {
+		List<Text> values = new ArrayList<Text>();
+		values.add(new Text("Page 3"));
+		values.add(new Text("Page 2"));
+		values.add(new Text("Page 3"));
+		values.add(new Text("Page 3"));
+
+		reduceDriver.withInput(new Text("Page 1"), values);
+		reduceDriver.withOutput(new Text("Page 1"), new Text("Page 3"));
+		reduceDriver.withOutput(new Text("Page 1"), new Text("Page 2"));
+		reduceDriver.withCounter(IndexerCounter.LINK_RECORDS_SAVED, 2);
+
+		reduceDriver.runTest();
+	}
+
+	@Test
+	public void testVertexMarkers() throws IOException {
+		// the empty records of a page that is linked from three pages
+		List<Text> values = new ArrayList<Text>();
+		values.add(new Text(""));
+		values.add(new Text("Page 1"));
+		values.add(new Text(""));
+		values.add(new Text(""));
+
+		reduceDriver.withInput(new Text("Page 2"), values);
+		reduceDriver.withOutput(new Text("Page 2"), new Text(""));
+		reduceDriver.withOutput(new Text("Page 2"), new Text("Page 1"));
+		reduceDriver.withCounter(IndexerCounter.LINK_RECORDS_SAVED, 0);
+
+		reduceDriver.runTest();
+	}
+
+}
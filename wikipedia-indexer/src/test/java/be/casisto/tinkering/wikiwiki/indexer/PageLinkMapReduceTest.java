@@ -1,11 +1,15 @@
 package be.casisto.tinkering.wikiwiki.indexer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mrunit.mapreduce.MapReduceDriver;
 import org.junit.Before;
 import org.junit.Test;
@@ -22,11 +26,19 @@ import be.casisto.tinkering.wikiwiki.indexer.TestHelper;
 public class PageLinkMapReduceTest {
 
 	private MapReduceDriver<LongWritable, Text, Text, Text, Text, Text> driver;
+	private SideOutputs<Text, Text> outputs;
 
 	@Before
 	public void setup() {
 		PageLinkMapper mapper = new PageLinkMapper();
-		PageLinkReducer reducer = new PageLinkReducer();
+		PageLinkReducer reducer = new PageLinkReducer() {
+			@Override
+			protected MultipleOutputs<Text, Text> createOutputs(
+					Reducer<Text, Text, Text, Text>.Context context) {
+				outputs = new SideOutputs<Text, Text>(context);
+				return outputs;
+			}
+		};
 		driver = MapReduceDriver.newMapReduceDriver(mapper, reducer);
 	}
 
@@ -44,10 +56,14 @@ public class PageLinkMapReduceTest {
 		Text val = new Text(content);
 
 		driver.withInput(key, val);
-		driver.withOutput(new Text("Page 1"), new Text("Page 2,Page 2,Page 3"));
+		driver.withOutput(new Text("Page 1"), new Text("Page 2,Page 3"));
 
 		driver.runTest();
 
+		// the linking and the linked pages
+		assertEquals(Arrays.asList("pages/Page 1/", "pages/Page 2/",
+				"pages/Page 3/"), outputs.getRecords());
+
 	}
 
 }
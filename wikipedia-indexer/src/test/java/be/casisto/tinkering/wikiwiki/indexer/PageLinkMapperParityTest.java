@@ -0,0 +1,132 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.indexer.PageLinkMapper;
+
+/**
+ * Checks that the byte level link extraction of the PageLinkMapper gives the
+ * same output as the former regular expression based extraction, apart from
+ * the duplicate links within a page.
+ *
+ * @author jiri
+ */
+public class PageLinkMapperParityTest {
+
+	private static final Pattern linkPattern = Pattern.compile("\\[.+?\\]");
+
+	private static final String[] TOKENS = { "[", "[[", "]", "]]", "|", "#",
+			":", ",", "&", "&amp;", "'", "-", "{", ".", " ", "\t", "\n", "\r",
+			"\u0085", "\u2028", "\u2029", "Page", "A", "b", "\u00e9", "\u65e5\u672c",
+			"\ud83d\ude00", "Category", "http://example.org",
+			"abcdefghijklmnopqrstuvwxyzabcdefghijklmnopqrstuvwxyz" };
+
+	@Test
+	public void testSinglePage() throws IOException {
+		assertParity(TestHelper.readFile("src/test/resources/single-page.txt"));
+	}
+
+	@Test
+	public void testRandomMarkup() throws IOException {
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			StringBuilder text = new StringBuilder();
+			int tokens = random.nextInt(300);
+			for (int j = 0; j < tokens; j++)
+				text.append(TOKENS[random.nextInt(TOKENS.length)]);
+
+			String title = "Page " + i + (i % 10 == 0 ? ":Talk" : "");
+			assertParity("<page>\n<title>" + title + "</title>\n<revision>\n"
+					+ "<text xml:space=\"preserve\" bytes=\"1\">" + text
+					+ "</text>\n</revision>\n</page>");
+		}
+	}
+
+	private void assertParity(String page) throws IOException {
+		MapDriver<LongWritable, Text, Text, Text> mapDriver = MapDriver
+				.newMapDriver(new PageLinkMapper());
+		mapDriver.withInput(new LongWritable(1), new Text(page));
+
+		for (String[] link : extract(new Text(page))) {
+			mapDriver.withOutput(new Text(link[0]), new Text(link[1]));
+			mapDriver.withOutput(new Text(link[1]), new Text(""));
+		}
+
+		mapDriver.runTest();
+	}
+
+	/**
+	 * The regular expression based link extraction as it was done before the
+	 * byte level tokenizer.
+	 */
+	private static List<String[]> extract(Text value) throws IOException {
+		List<String[]> links = new ArrayList<String[]>();
+
+		int start = value.find("<title>") + 7;
+		int end = value.find("</title>");
+		String title = Text.decode(value.getBytes(), start, end - start);
+
+		start = value.find("<text");
+		start = value.find(">", start);
+		end = value.find("</text>", start);
+		start += 1;
+		String text = Text.decode(value.getBytes(), start, end - start);
+
+		if (title.contains(":"))
+			return links;
+
+		Set<String> distinct = new HashSet<String>();
+		Matcher matcher = linkPattern.matcher(text);
+		while (matcher.find()) {
+			String link = parseWikiLink(matcher.group());
+			if (link != null && distinct.add(link))
+				links.add(new String[] { title, link });
+		}
+		return links;
+	}
+
+	private static String parseWikiLink(String link) {
+		if (!isWikiLink(link))
+			return null;
+
+		int start = link.startsWith("[[") ? 2 : 1;
+		int end = link.indexOf("]");
+
+		int pipe = link.indexOf("|");
+		if (pipe > 0)
+			end = pipe;
+
+		int part = link.indexOf("#");
+		if (part > 0)
+			end = part;
+
+		return link.substring(start, end);
+	}
+
+	private static boolean isWikiLink(String link) {
+		int start = link.startsWith("[[") ? 2 : 1;
+
+		if (link.length() < start + 2 || link.length() > 100)
+			return false;
+
+		char firstChar = link.charAt(start);
+		if ("#,.&'-{".indexOf(firstChar) >= 0)
+			return false;
+
+		return !link.contains(":") && !link.contains(",")
+				&& !link.contains("&");
+	}
+
+}
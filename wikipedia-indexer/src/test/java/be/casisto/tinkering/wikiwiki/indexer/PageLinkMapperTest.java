@@ -10,7 +10,9 @@ import org.apache.hadoop.mrunit.mapreduce.MapDriver;
 import org.junit.Before;
 import org.junit.Test;
 
+import be.casisto.tinkering.wikipedia.indexer.IndexerCounter;
 import be.casisto.tinkering.wikipedia.indexer.PageLinkMapper;
+import be.casisto.tinkering.wikipedia.indexer.WikiLinkTokenizer;
 import be.casisto.tinkering.wikiwiki.indexer.TestHelper;
 
 /**
@@ -43,8 +45,42 @@ public class PageLinkMapperTest {
 
 		mapDriver.withInput(key, val);
 		mapDriver.withOutput(new Text("Page 1"), new Text("Page 2"));
-		mapDriver.withOutput(new Text("Page 1"), new Text("Page 2"));
+		mapDriver.withOutput(new Text("Page 2"), new Text(""));
 		mapDriver.withOutput(new Text("Page 1"), new Text("Page 3"));
+		mapDriver.withOutput(new Text("Page 3"), new Text(""));
+		mapDriver.withCounter(IndexerCounter.LINK_RECORDS_SAVED, 1);
+		mapDriver.withCounter(IndexerCounter.PAGES_READ, 1);
+		mapDriver.withCounter(IndexerCounter.LINKS_EMITTED, 2);
+
+		mapDriver.runTest();
+	}
+
+	@Test
+	public void testRejectedLinks() throws IOException {
+		mapDriver.withInput(new LongWritable(1), new Text(
+				"<page>\n<title>Page 1</title>\n<revision>\n<text>"
+						+ "[[Page 2|label]] [[#Section]] [[File:Image.png]]"
+						+ " [[a, b]] [[A &amp; B]] [[]]"
+						// a colon counts before a comma, a comma before an
+						// ampersand, wherever they are in the link
+						+ " [[a, b:c]] [[A &amp; B, C]]</text>\n"
+						+ "</revision>\n</page>"));
+		mapDriver.withInput(new LongWritable(2), new Text(
+				"<page>\n<title>Talk:Page 1</title>\n<revision>\n<text>"
+						+ "[[Page 2]]</text>\n</revision>\n</page>"));
+		mapDriver.withInput(new LongWritable(3), new Text("<page></page>"));
+
+		mapDriver.withOutput(new Text("Page 1"), new Text("Page 2"));
+		mapDriver.withOutput(new Text("Page 2"), new Text(""));
+		mapDriver.withCounter(IndexerCounter.PAGES_READ, 3);
+		mapDriver.withCounter(IndexerCounter.SPECIAL_PAGES, 1);
+		mapDriver.withCounter(IndexerCounter.MALFORMED_PAGES, 1);
+		mapDriver.withCounter(IndexerCounter.LINKS_EMITTED, 1);
+		mapDriver.withCounter(WikiLinkTokenizer.Rule.FIRST_CHARACTER, 1);
+		mapDriver.withCounter(WikiLinkTokenizer.Rule.COLON, 2);
+		mapDriver.withCounter(WikiLinkTokenizer.Rule.COMMA, 2);
+		mapDriver.withCounter(WikiLinkTokenizer.Rule.AMPERSAND, 1);
+		mapDriver.withCounter(WikiLinkTokenizer.Rule.LENGTH, 1);
 
 		mapDriver.runTest();
 	}
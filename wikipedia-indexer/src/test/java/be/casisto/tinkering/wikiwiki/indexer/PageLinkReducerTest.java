@@ -1,10 +1,15 @@
 package be.casisto.tinkering.wikiwiki.indexer;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,10 +24,18 @@ import be.casisto.tinkering.wikipedia.indexer.PageLinkReducer;
 public class PageLinkReducerTest {
 
 	private ReduceDriver<Text, Text, Text, Text> reduceDriver;
+	private SideOutputs<Text, Text> outputs;
 
 	@Before
 	public void setup() {
-		PageLinkReducer reducer = new PageLinkReducer();
+		PageLinkReducer reducer = new PageLinkReducer() {
+			@Override
+			protected MultipleOutputs<Text, Text> createOutputs(
+					Reducer<Text, Text, Text, Text>.Context context) {
+				outputs = new SideOutputs<Text, Text>(context);
+				return outputs;
+			}
+		};
 		reduceDriver = ReduceDriver.newReduceDriver(reducer);
 	}
 
@@ -35,9 +48,72 @@ public class PageLinkReducerTest {
 
 		reduceDriver.withInput(new Text("Page 1"), values);
 		reduceDriver.withOutput(new Text("Page 1"), new Text(
-				"Page 2,Page 2,Page 3"));
+				"Page 2,Page 3"));
+
+		reduceDriver.runTest();
+		assertEquals(Arrays.asList("pages/Page 1/"), outputs.getRecords());
+	}
+
+	@Test
+	public void testSorted() throws IOException {
+		List<Text> values = new ArrayList<Text>();
+		values.add(new Text("Page 3"));
+		values.add(new Text("\u00c9tude"));
+		values.add(new Text("Page 10"));
+		values.add(new Text("Page 2"));
+		values.add(new Text("Page 3"));
+
+		reduceDriver.withInput(new Text("Page 1"), values);
+		reduceDriver.withOutput(new Text("Page 1"), new Text(
+				"Page 10,Page 2,Page 3,\u00c9tude"));
+
+		reduceDriver.runTest();
+	}
+
+	@Test
+	public void testVertex() throws IOException {
+		List<Text> values = new ArrayList<Text>();
+		values.add(new Text(""));
+		values.add(new Text("Page 2"));
+		values.add(new Text(""));
+
+		reduceDriver.withInput(new Text("Page 1"), values);
+		reduceDriver.withOutput(new Text("Page 1"), new Text("Page 2"));
+
+		reduceDriver.runTest();
+		assertEquals(Arrays.asList("pages/Page 1/"), outputs.getRecords());
+	}
+
+	@Test
+	public void testDegrees() throws IOException {
+		List<Text> values = new ArrayList<Text>();
+		values.add(new Text(""));
+		values.add(new Text("Page 2"));
+		values.add(new Text("Page 3"));
+		values.add(new Text("Page 2"));
+
+		reduceDriver.getConfiguration().setBoolean(PageLinkReducer.DEGREES,
+				true);
+		reduceDriver.withInput(new Text("Page 1"), values);
+		reduceDriver.withInput(new Text("Page 4"), Arrays.asList(new Text("")));
+		reduceDriver.withOutput(new Text("Page 1"), new Text("Page 2,Page 3"));
+
+		reduceDriver.runTest();
+		assertEquals(Arrays.asList("pages/Page 1/2", "pages/Page 4/0"),
+				outputs.getRecords());
+	}
+
+	@Test
+	public void testLinkTarget() throws IOException {
+		List<Text> values = new ArrayList<Text>();
+		values.add(new Text(""));
+		values.add(new Text(""));
+
+		// only linked to, so only in the pages index
+		reduceDriver.withInput(new Text("Page 4"), values);
 
 		reduceDriver.runTest();
+		assertEquals(Arrays.asList("pages/Page 4/"), outputs.getRecords());
 	}
 
 }
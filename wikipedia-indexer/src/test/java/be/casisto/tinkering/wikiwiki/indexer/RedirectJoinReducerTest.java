@@ -0,0 +1,82 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.indexer.IndexerCounter;
+import be.casisto.tinkering.wikipedia.indexer.JoinKey;
+import be.casisto.tinkering.wikipedia.indexer.RedirectJoinReducer;
+
+/**
+ * Unit test class for RedirectJoinReducer and the JoinKey grouping.
+ * 
+ * @author jiri
+ */
+public class RedirectJoinReducerTest {
+
+	private ReduceDriver<Text, Text, Text, Text> reduceDriver;
+
+	@Before
+	public void setup() {
+		RedirectJoinReducer reducer = new RedirectJoinReducer();
+		reduceDriver = ReduceDriver.newReduceDriver(reducer);
+	}
+
+	@Test
+	public void testRedirect() throws IOException {
+		reduceDriver.withInput(join("Redirect 1", JoinKey.TARGET), Arrays
+				.asList(new Text("Page 1"), new Text("Page 2"), new Text(
+						"Page 3")));
+		reduceDriver.withOutput(new Text("Page 2"), new Text("Page 1"));
+		reduceDriver.withOutput(new Text("Page 3"), new Text("Page 1"));
+		reduceDriver.withCounter(IndexerCounter.REDIRECTS_RESOLVED, 2);
+
+		reduceDriver.runTest();
+	}
+
+	@Test
+	public void testPage() throws IOException {
+		reduceDriver.withInput(join("Page 1", JoinKey.LINK),
+				Arrays.asList(new Text("Page 2"), new Text("Page 3")));
+		reduceDriver.withOutput(new Text("Page 2"), new Text("Page 1"));
+		reduceDriver.withOutput(new Text("Page 3"), new Text("Page 1"));
+
+		reduceDriver.runTest();
+	}
+
+	@Test
+	public void testJoinKey() {
+		Text redirect = join("Page", JoinKey.TARGET);
+		Text link = join("Page", JoinKey.LINK);
+		Text other = join("Page 1", JoinKey.TARGET);
+
+		JoinKey.TitleComparator comparator = new JoinKey.TitleComparator();
+		assertEquals(0, comparator.compare(redirect, link));
+		assertEquals(true, comparator.compare(link, other) < 0);
+		assertEquals(true, redirect.compareTo(link) < 0);
+		assertEquals(true, link.compareTo(other) < 0);
+
+		JoinKey.TitlePartitioner partitioner = new JoinKey.TitlePartitioner();
+		assertEquals(partitioner.getPartition(redirect, null, 7),
+				partitioner.getPartition(link, null, 7));
+
+		Text title = new Text();
+		JoinKey.getTitle(link, title);
+		assertEquals("Page", title.toString());
+		assertEquals(JoinKey.LINK, JoinKey.getTag(link));
+	}
+
+	private Text join(String title, byte tag) {
+		Text key = new Text();
+		JoinKey.set(key, new Text(title), tag);
+		return key;
+	}
+
+}
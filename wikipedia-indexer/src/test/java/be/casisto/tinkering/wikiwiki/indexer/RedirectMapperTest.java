@@ -0,0 +1,62 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.indexer.IndexerCounter;
+import be.casisto.tinkering.wikipedia.indexer.JoinKey;
+import be.casisto.tinkering.wikipedia.indexer.RedirectMapper;
+
+/**
+ * Unit test class for RedirectMapper.
+ * 
+ * @author jiri
+ */
+public class RedirectMapperTest {
+
+	private MapDriver<LongWritable, Text, Text, Text> mapDriver;
+
+	@Before
+	public void setup() {
+		RedirectMapper mapper = new RedirectMapper();
+		mapDriver = MapDriver.newMapDriver(mapper);
+	}
+
+	@Test
+	public void test() throws IOException {
+		String content = "<page>\n<title>Redirect 1</title>\n<ns>0</ns>\n"
+				+ "<redirect title=\"Page 1\" />\n<revision>\n"
+				+ "<text xml:space=\"preserve\">#REDIRECT [[Page 1]]</text>\n"
+				+ "</revision>\n</page>";
+
+		mapDriver.withInput(new LongWritable(1), new Text(content));
+		mapDriver.withOutput(join("Redirect 1", JoinKey.TARGET), new Text(
+				"Page 1"));
+		mapDriver.withOutput(join("Page 1", JoinKey.LINK), new Text(
+				"Redirect 1"));
+		mapDriver.withCounter(IndexerCounter.REDIRECT_PAGES, 1);
+
+		mapDriver.runTest();
+	}
+
+	@Test
+	public void testPage() throws IOException {
+		String content = TestHelper.readFile("src/test/resources/single-page.txt");
+
+		mapDriver.withInput(new LongWritable(1), new Text(content));
+
+		mapDriver.runTest();
+	}
+
+	private Text join(String title, byte tag) {
+		Text key = new Text();
+		JoinKey.set(key, new Text(title), tag);
+		return key;
+	}
+
+}
@@ -0,0 +1,42 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+
+/**
+ * MultipleOutputs that keeps the records written to the named outputs in
+ * memory, as named output/key/value strings, instead of writing files.
+ * 
+ * @author jiri
+ */
+public class SideOutputs<KEYOUT, VALUEOUT> extends
+		MultipleOutputs<KEYOUT, VALUEOUT> {
+
+	private final List<String> records = new ArrayList<String>();
+
+	public SideOutputs(TaskInputOutputContext<?, ?, KEYOUT, VALUEOUT> context) {
+		super(context);
+	}
+
+	@Override
+	public <K, V> void write(String namedOutput, K key, V value) {
+		records.add(namedOutput + "/" + key + "/" + value);
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Returns the records written so far.
+	 * 
+	 * @return
+	 */
+	public List<String> getRecords() {
+		return records;
+	}
+
+}
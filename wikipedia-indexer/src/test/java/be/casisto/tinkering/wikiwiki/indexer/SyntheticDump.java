@@ -0,0 +1,365 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Generator of synthetic pages-articles dumps for benchmarks, in the export
+ * format of the real dumps. The generated dump is reproducible for a given
+ * seed and models the properties that matter to the indexer:
+ *
+ * - the number of links per page follows a power law, a few hub pages have
+ * thousands of links;
+ * - link targets are skewed towards popular pages, a fraction links to pages
+ * that do not exist (red links);
+ * - a fraction of the pages are redirects, or in another namespace than the
+ * articles (talk, user, file, template, category);
+ * - the text has templates, labelled and section links, category, file and
+ * interwiki links, external links and escaped markup;
+ * - a fraction of the pages is an order of magnitude larger than the rest.
+ *
+ * @author jiri
+ */
+public class SyntheticDump {
+
+	private static final int[] NAMESPACES = { 1, 2, 4, 6, 10, 14 };
+	private static final String[] NAMESPACE_NAMES = { "Talk", "User",
+			"Wikipedia", "File", "Template", "Category" };
+
+	private static final String[] WORDS = { "the", "of", "and", "in", "a",
+			"to", "was", "is", "for", "as", "on", "by", "with", "he", "that",
+			"at", "from", "his", "it", "an", "were", "are", "which", "this",
+			"also", "be", "has", "or", "had", "first", "one", "their", "its",
+			"new", "after", "who", "they", "two", "her", "she", "been",
+			"other", "when", "time", "during", "there", "into", "school",
+			"more", "may", "years", "over", "only", "year", "most", "would",
+			"world", "city", "some", "where", "between", "later", "three",
+			"state", "such", "then", "national", "used", "made", "known",
+			"under", "many", "university", "united", "while", "part",
+			"season", "team", "these", "american", "than", "film", "second",
+			"born", "south", "became", "states", "war", "through", "being",
+			"including", "both", "before", "north", "high", "however",
+			"people", "family", "early", "history", "album", "area", "them",
+			"series", "against", "until", "since", "district", "county",
+			"name", "work", "life", "group", "music", "following", "number",
+			"company", "several", "four", "called", "played", "released",
+			"career", "league", "game", "government", "house", "each", "based",
+			"day", "same", "won", "use", "station", "club", "international",
+			"town", "located", "population", "general", "college", "east",
+			"found", "age", "march", "end", "september", "began", "home",
+			"public", "church", "line", "june", "river", "member", "system",
+			"place", "century", "band", "july", "york", "january", "october",
+			"song", "august", "best", "former", "british", "party", "named",
+			"held", "village", "show", "local", "november", "took", "service",
+			"december", "built", "another", "major", "within", "along",
+			"members", "five", "single", "due", "although", "small", "old",
+			"left", "final", "large", "include", "building", "served",
+			"president", "received", "games", "death", "february", "main",
+			"third", "set", "children", "own", "order", "species", "park",
+			"law", "air", "published", "road", "died", "book", "men", "army" };
+
+	private final long seed;
+
+	private int pages = 100000;
+	private double linkExponent = 2.2;
+	private int minLinks = 5;
+	private int maxLinks = 5000;
+	private double targetSkew = 3.0;
+	private double redLinks = 0.05;
+	private double redirects = 0.1;
+	private double otherNamespaces = 0.15;
+	private double largePages = 0.01;
+	private int wordsPerLink = 20;
+
+	/**
+	 * Creates a generator with the default scale and distributions.
+	 *
+	 * @param seed
+	 *            seed of the random generator
+	 */
+	public SyntheticDump(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets the number of pages in the dump, 100000 by default.
+	 *
+	 * @param pages
+	 * @return
+	 */
+	public SyntheticDump setPages(int pages) {
+		this.pages = pages;
+		return this;
+	}
+
+	/**
+	 * Sets the exponent of the power law of the number of links per page, 2.2
+	 * by default, and its bounds, 5 and 5000 by default.
+	 *
+	 * @param exponent
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	public SyntheticDump setLinks(double exponent, int min, int max) {
+		this.linkExponent = exponent;
+		this.minLinks = min;
+		this.maxLinks = max;
+		return this;
+	}
+
+	/**
+	 * Sets the skew of the link targets towards the first pages, 3.0 by
+	 * default, 1.0 for uniform targets.
+	 *
+	 * @param skew
+	 * @return
+	 */
+	public SyntheticDump setTargetSkew(double skew) {
+		this.targetSkew = skew;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of links to pages that do not exist, 0.05 by default.
+	 *
+	 * @param fraction
+	 * @return
+	 */
+	public SyntheticDump setRedLinks(double fraction) {
+		this.redLinks = fraction;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of redirect pages, 0.1 by default.
+	 *
+	 * @param fraction
+	 * @return
+	 */
+	public SyntheticDump setRedirects(double fraction) {
+		this.redirects = fraction;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of pages outside the article namespace, 0.15 by
+	 * default.
+	 *
+	 * @param fraction
+	 * @return
+	 */
+	public SyntheticDump setOtherNamespaces(double fraction) {
+		this.otherNamespaces = fraction;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of large pages with ten times the text per link, 0.01
+	 * by default.
+	 *
+	 * @param fraction
+	 * @return
+	 */
+	public SyntheticDump setLargePages(double fraction) {
+		this.largePages = fraction;
+		return this;
+	}
+
+	/**
+	 * Sets the number of words of text per link, 20 by default.
+	 *
+	 * @param words
+	 * @return
+	 */
+	public SyntheticDump setWordsPerLink(int words) {
+		this.wordsPerLink = words;
+		return this;
+	}
+
+	/**
+	 * Returns the title of the page with the given number. Page numbers past
+	 * the number of pages are red links.
+	 *
+	 * @param page
+	 * @return
+	 */
+	public static String title(int page) {
+		return "Page " + page;
+	}
+
+	/**
+	 * Writes the dump to a file.
+	 *
+	 * @param file
+	 *            destination of the dump
+	 * @return the number of pages written
+	 * @throws IOException
+	 */
+	public int write(File file) throws IOException {
+		return write(file, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Writes the dump to a file, until either the number of pages or the
+	 * maximum size is reached.
+	 *
+	 * @param file
+	 *            destination of the dump
+	 * @param maxBytes
+	 *            approximate maximum size of the dump
+	 * @return the number of pages written
+	 * @throws IOException
+	 */
+	public int write(File file, long maxBytes) throws IOException {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+				Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8),
+				1 << 16)) {
+			return write(writer, maxBytes);
+		}
+	}
+
+	private int write(Writer writer, long maxBytes) throws IOException {
+		Random random = new Random(seed);
+		StringBuilder page = new StringBuilder(1 << 16);
+
+		writer.write("<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\""
+				+ " version=\"0.10\" xml:lang=\"en\">\n");
+		writer.write("\t<siteinfo>\n\t\t<sitename>Wikipedia</sitename>\n"
+				+ "\t\t<dbname>synthwiki</dbname>\n\t</siteinfo>\n");
+
+		long bytes = 0;
+		int written = 0;
+		for (int i = 0; i < pages && bytes < maxBytes; i++) {
+			page.setLength(0);
+			page(page, random, i);
+			writer.write(page.toString());
+
+			// the dump is ASCII apart from a few characters
+			bytes += page.length();
+			written++;
+		}
+
+		writer.write("</mediawiki>\n");
+		return written;
+	}
+
+	private void page(StringBuilder page, Random random, int id) {
+		String title = title(id);
+		int ns = 0;
+		double kind = random.nextDouble();
+		if (kind < otherNamespaces) {
+			int n = random.nextInt(NAMESPACES.length);
+			ns = NAMESPACES[n];
+			title = NAMESPACE_NAMES[n] + ":" + title;
+		}
+		boolean redirect = ns == 0 && kind < otherNamespaces + redirects;
+
+		page.append("\t<page>\n\t\t<title>").append(title)
+				.append("</title>\n\t\t<ns>").append(ns)
+				.append("</ns>\n\t\t<id>").append(id + 1).append("</id>\n");
+		if (redirect)
+			page.append("\t\t<redirect title=\"").append(target(random))
+					.append("\" />\n");
+		page.append("\t\t<revision>\n\t\t\t<id>").append(id + 1000000)
+				.append("</id>\n\t\t\t<timestamp>2015-03-01T00:00:00Z")
+				.append("</timestamp>\n\t\t\t<contributor>\n\t\t\t\t")
+				.append("<username>Synth</username>\n\t\t\t\t<id>1</id>\n")
+				.append("\t\t\t</contributor>\n\t\t\t<model>wikitext</model>\n")
+				.append("\t\t\t<format>text/x-wiki</format>\n")
+				.append("\t\t\t<text xml:space=\"preserve\">");
+
+		if (redirect)
+			page.append("#REDIRECT [[").append(target(random)).append("]]");
+		else
+			text(page, random);
+
+		page.append("</text>\n\t\t\t<sha1>0</sha1>\n\t\t</revision>\n")
+				.append("\t</page>\n");
+	}
+
+	private void text(StringBuilder page, Random random) {
+		int links = links(random);
+		int words = wordsPerLink;
+		if (random.nextDouble() < largePages)
+			words *= 10;
+
+		page.append("{{Infobox settlement\n| name = ")
+				.append(word(random)).append("\n| population = ")
+				.append(random.nextInt(1000000))
+				.append("\n| area = {{convert|").append(random.nextInt(1000))
+				.append("|km2}}\n}}\n");
+		page.append("'''").append(word(random)).append("''' ");
+
+		for (int i = 0; i < links; i++) {
+			for (int j = random.nextInt(2 * words); j > 0; j--) {
+				page.append(word(random));
+				page.append(j % 15 == 0 ? ".\n" : " ");
+			}
+			link(page, random);
+			page.append(' ');
+
+			if (i % 50 == 49)
+				page.append("\n== ").append(word(random)).append(" ==\n");
+		}
+
+		page.append("\n== References ==\n{{Reflist}}\n");
+		page.append("* [http://www.example.org/").append(word(random))
+				.append(" ").append(word(random)).append(", ")
+				.append(word(random)).append("]\n");
+		page.append("[[Category:").append(word(random)).append("]]\n");
+		page.append("[[de:").append(word(random)).append("]]\n");
+	}
+
+	private void link(StringBuilder page, Random random) {
+		int kind = random.nextInt(100);
+		if (kind < 60)
+			page.append("[[").append(target(random)).append("]]");
+		else if (kind < 80)
+			page.append("[[").append(target(random)).append('|')
+					.append(word(random)).append("]]");
+		else if (kind < 88)
+			page.append("[[").append(target(random)).append('#')
+					.append(word(random)).append("]]");
+		else if (kind < 92)
+			page.append("[[File:").append(word(random))
+					.append(".jpg|thumb|").append(word(random)).append("]]");
+		else if (kind < 95)
+			page.append("{{main|").append(target(random)).append("}}");
+		else if (kind < 98)
+			page.append("[http://www.example.org/").append(word(random))
+					.append(' ').append(word(random)).append(']');
+		else
+			page.append("[[").append(word(random)).append(" &amp; ")
+					.append(word(random)).append("]]");
+	}
+
+	/**
+	 * Draws the number of links of a page from a bounded power law.
+	 */
+	private int links(Random random) {
+		double u = random.nextDouble();
+		double links = minLinks * Math.pow(1 - u, -1 / (linkExponent - 1));
+		return (int) Math.min(maxLinks, links);
+	}
+
+	/**
+	 * Draws a link target, skewed towards the first pages.
+	 */
+	private String target(Random random) {
+		if (random.nextDouble() < redLinks)
+			return title(pages + random.nextInt(pages));
+		return title((int) (pages * Math.pow(random.nextDouble(), targetSkew)));
+	}
+
+	private static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+}
@@ -0,0 +1,95 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.ReduceDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Test;
+
+import be.casisto.tinkering.wikipedia.indexer.IndexerCounter;
+import be.casisto.tinkering.wikipedia.indexer.TitleFilter;
+import be.casisto.tinkering.wikipedia.indexer.TitleFilterReducer;
+
+/**
+ * Unit test class for the TitleFilter and the TitleFilterReducer.
+ * 
+ * @author jiri
+ */
+public class TitleFilterTest {
+
+	@Test
+	public void testNormalizedHash() {
+		long hash = hash("Page 2");
+		assertEquals(hash, hash("page 2"));
+		assertEquals(hash, hash("Page_2"));
+		assertEquals(hash, hash(" Page 2 "));
+		assertTrue(hash != hash("Page 3"));
+		assertTrue(hash != hash("Page 22"));
+	}
+
+	@Test
+	public void testContains() throws IOException {
+		TitleFilter filter = new TitleFilter(1000, 0.01);
+		for (int i = 0; i < 1000; i++)
+			filter.add(hash("Page " + i));
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		filter.write(out);
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		TitleFilter read = new TitleFilter();
+		read.readFields(in);
+
+		int falsePositives = 0;
+		for (int i = 0; i < 1000; i++) {
+			Text title = new Text("page_" + i);
+			assertTrue(read.contains(title.getBytes(), 0, title.getLength()));
+			if (read.contains(hash("Missing " + i)))
+				falsePositives++;
+		}
+		assertFalse(falsePositives > 30);
+	}
+
+	@Test
+	public void testReducer() throws IOException {
+		// far more titles than expected
+		ReduceDriver<LongWritable, NullWritable, NullWritable, TitleFilter> reduceDriver = ReduceDriver
+				.newReduceDriver(new TitleFilterReducer());
+		reduceDriver.getConfiguration().setLong(TitleFilterReducer.TITLES, 10);
+		for (int i = 0; i < 5000; i++)
+			reduceDriver.withInput(new LongWritable(hash("Page " + i)),
+					Arrays.asList(NullWritable.get()));
+
+		List<Pair<NullWritable, TitleFilter>> output = reduceDriver.run();
+		assertEquals(1, output.size());
+		TitleFilter filter = output.get(0).getSecond();
+
+		// sized for the titles added, not the ones expected
+		int falsePositives = 0;
+		for (int i = 0; i < 5000; i++) {
+			assertTrue(filter.contains(hash("Page " + i)));
+			if (filter.contains(hash("Missing " + i)))
+				falsePositives++;
+		}
+		assertFalse(falsePositives > 150);
+		assertEquals(5000, reduceDriver.getCounters()
+				.findCounter(IndexerCounter.FILTERED_TITLES).getValue());
+	}
+
+	private static long hash(String title) {
+		Text text = new Text(title);
+		return TitleFilter.hash(text.getBytes(), 0, text.getLength());
+	}
+
+}
@@ -0,0 +1,187 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import be.casisto.tinkering.wikipedia.indexer.WikipediaInputFormat.WikiXmlReader;
+
+/**
+ * JMH benchmark comparing the buffered WikiXmlReader with the former
+ * byte-at-a-time page scan on a synthetic dump. The megabytes counter is
+ * reported as MB/s.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=be.casisto.tinkering.wikiwiki.indexer.WikiXmlReaderBenchmark
+ *
+ * @author jiri
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WikiXmlReaderBenchmark {
+
+	private static final byte[] PAGE_START_TAG = "<page>".getBytes();
+	private static final byte[] PAGE_END_TAG = "</page>".getBytes();
+
+	@Param({ "64" })
+	public int sizeInMB;
+
+	private File dump;
+	private Configuration conf;
+
+	/**
+	 * Counts the megabytes read, reported by JMH as a rate.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+		}
+
+	}
+
+	@Setup(Level.Trial)
+	public void createDump() throws IOException {
+		conf = new Configuration();
+		conf.set("fs.defaultFS", "file:///");
+
+		dump = File.createTempFile("benchmark-dump", ".xml");
+		dump.deleteOnExit();
+
+		long size = sizeInMB * 1024L * 1024L;
+		Random random = new Random(42);
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+				Files.newOutputStream(dump.toPath()), "UTF-8"))) {
+			writer.write("<mediawiki>\n");
+			for (int page = 0; dump.length() < size; page++) {
+				writer.write("\t<page>\n\t\t<title>Page " + page
+						+ "</title>\n\t\t<ns>0</ns>\n\t\t<revision>\n"
+						+ "\t\t\t<text xml:space=\"preserve\">");
+				int words = 100 + random.nextInt(2000);
+				for (int i = 0; i < words; i++) {
+					if (i % 25 == 0)
+						writer.write("[[Page " + random.nextInt(page + 1)
+								+ "|link]] ");
+					else
+						writer.write(Long.toString(random.nextLong() >>> 40, 36)
+								+ " ");
+				}
+				writer.write("</text>\n\t\t</revision>\n\t</page>\n");
+				if (page % 100 == 0)
+					writer.flush();
+			}
+			writer.write("</mediawiki>\n");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteDump() {
+		dump.delete();
+	}
+
+	@Benchmark
+	public long buffered(Throughput throughput) throws Exception {
+		FileSplit split = new FileSplit(new Path(dump.getAbsolutePath()), 0,
+				dump.length(), null);
+		WikiXmlReader reader = new WikiXmlReader(split,
+				new TaskAttemptContextImpl(conf, new TaskAttemptID()));
+
+		long pages = 0;
+		while (reader.nextKeyValue())
+			pages += reader.getCurrentValue().getLength();
+		reader.close();
+
+		throughput.megabytes += dump.length() / (1024.0 * 1024.0);
+		return pages;
+	}
+
+	@Benchmark
+	public long byteAtATime(Throughput throughput) throws Exception {
+		FileSystem fs = FileSystem.get(conf);
+		FSDataInputStream in = fs.open(new Path(dump.getAbsolutePath()));
+		DataOutputBuffer dob = new DataOutputBuffer();
+		long end = dump.length();
+
+		long pages = 0;
+		while (in.getPos() < end && readUntilMatch(in, dob, end, PAGE_START_TAG, false)) {
+			dob.write(PAGE_START_TAG);
+			if (readUntilMatch(in, dob, end, PAGE_END_TAG, true))
+				pages += dob.getLength();
+			dob.reset();
+		}
+		in.close();
+
+		throughput.megabytes += dump.length() / (1024.0 * 1024.0);
+		return pages;
+	}
+
+	/**
+	 * The page scan as it was done before the buffered scanner.
+	 */
+	private static boolean readUntilMatch(FSDataInputStream in,
+			DataOutputBuffer dob, long end, byte[] match, boolean inPage)
+			throws IOException {
+		int i = 0;
+		while (true) {
+			int b = in.read();
+			if (b == -1)
+				return false;
+			if (inPage)
+				dob.write(b);
+			if (b == match[i]) {
+				i++;
+				if (i >= match.length)
+					return true;
+			} else
+				i = 0;
+			if (!inPage && i == 0 && in.getPos() >= end)
+				return false;
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(
+				WikiXmlReaderBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,266 @@
+package be.casisto.tinkering.wikiwiki.indexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import be.casisto.tinkering.wikipedia.indexer.WikipediaInputFormat;
+
+/**
+ * Unit test class for the WikipediaInputFormat and its record reader.
+ *
+ * @author jiri
+ */
+public class WikipediaInputFormatTest {
+
+	private static final int PAGES = 3000;
+	private static final int PAGES_PER_STREAM = 100;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Configuration conf;
+	private List<String> pages;
+
+	@Before
+	public void setup() {
+		conf = new Configuration();
+		conf.set("fs.defaultFS", "file:///");
+
+		// random words make sure the compressed dump spans several blocks
+		Random random = new Random(42);
+		pages = new ArrayList<String>();
+		for (int i = 0; i < PAGES; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int j = 0; j < 200; j++)
+				text.append(Long.toString(random.nextLong(), 36)).append(' ');
+
+			pages.add("\t<page>\n\t\t<title>Page " + i + "</title>\n"
+					+ "\t\t<revision>\n\t\t\t<text xml:space=\"preserve\">"
+					+ text + "[[Page " + random.nextInt(PAGES) + "]]"
+					+ "</text>\n\t\t</revision>\n\t</page>\n");
+		}
+	}
+
+	@Test
+	public void testPlainXml() throws Exception {
+		File file = folder.newFile("dump.xml");
+		try (OutputStream out = new FileOutputStream(file)) {
+			writeStream(out, 0, PAGES, true);
+		}
+
+		assertSplitsReadAllPages(file, 1024 * 1024);
+		assertSplitsReadAllPages(file, 100 * 1000);
+		assertSplitsReadAllPages(file, 33 * 1000);
+	}
+
+	@Test
+	public void testSmallBuffer() throws Exception {
+		File file = folder.newFile("dump.xml");
+		try (OutputStream out = new FileOutputStream(file)) {
+			writeStream(out, 0, PAGES, true);
+		}
+
+		// tags straddle the chunks read from the stream
+		conf.setInt(WikipediaInputFormat.BUFFER_SIZE, 5);
+		assertSplitsReadAllPages(file, 100 * 1000);
+		conf.setInt(WikipediaInputFormat.BUFFER_SIZE, 4093);
+		assertSplitsReadAllPages(file, 33 * 1000);
+	}
+
+	@Test
+	public void testBzip2() throws Exception {
+		File file = folder.newFile("dump.xml.bz2");
+		try (OutputStream out = compress(new FileOutputStream(file))) {
+			writeStream(out, 0, PAGES, true);
+		}
+
+		assertSplitsReadAllPages(file, 1024 * 1024);
+		assertSplitsReadAllPages(file, 300 * 1000);
+		assertSplitsReadAllPages(file, 77 * 1000);
+	}
+
+	@Test
+	public void testBzip2Multistream() throws Exception {
+		File file = folder.newFile("dump-multistream.xml.bz2");
+		File index = folder.newFile("dump-multistream-index.txt");
+
+		try (FileOutputStream out = new FileOutputStream(file);
+				PrintWriter pw = new PrintWriter(index, "UTF-8")) {
+			for (int i = 0; i < PAGES; i += PAGES_PER_STREAM) {
+				long offset = out.getChannel().position();
+				for (int j = i; j < i + PAGES_PER_STREAM; j++)
+					pw.println(offset + ":" + j + ":Page " + j);
+
+				OutputStream stream = compress(out);
+				writeStream(stream, i, i + PAGES_PER_STREAM, i == 0);
+				((CompressionOutputStream) stream).finish();
+			}
+			out.write("</mediawiki>\n".getBytes("UTF-8"));
+		}
+
+		assertSplitsReadAllPages(file, 300 * 1000);
+		assertSplitsReadAllPages(file, 77 * 1000);
+
+		conf.set(WikipediaInputFormat.INDEX, index.getAbsolutePath());
+		assertSplitsReadAllPages(file, 300 * 1000);
+		assertSplitsReadAllPages(file, 77 * 1000);
+	}
+
+	@Test
+	public void testNamespaces() throws Exception {
+		File file = folder.newFile("dump.xml");
+		List<String> articles = new ArrayList<String>();
+		List<String> all = new ArrayList<String>();
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write("<mediawiki>\n".getBytes("UTF-8"));
+			for (int i = 0; i < PAGES; i++) {
+				// every third page is a talk page
+				int ns = i % 3 == 0 ? 1 : 0;
+				String title = (ns == 1 ? "Talk:Page " : "Page ") + i;
+				out.write(pages.get(i)
+						.replace("<title>Page " + i + "</title>",
+								"<title>" + title + "</title>\n\t\t<ns>" + ns
+										+ "</ns>").getBytes("UTF-8"));
+				if (ns == 0)
+					articles.add(title);
+				all.add(title);
+			}
+			out.write("</mediawiki>\n".getBytes("UTF-8"));
+		}
+
+		assertEquals(articles, readTitles(file, 100 * 1000));
+		conf.setInt(WikipediaInputFormat.BUFFER_SIZE, 7);
+		assertEquals(articles, readTitles(file, 33 * 1000));
+
+		conf.set(WikipediaInputFormat.NAMESPACES, "");
+		assertEquals(all, readTitles(file, 100 * 1000));
+
+		conf.set(WikipediaInputFormat.NAMESPACES, "0, 1");
+		conf.set(WikipediaInputFormat.SKIP_TITLES, "Talk:,Page 1");
+		List<String> filtered = new ArrayList<String>();
+		for (String title : all) {
+			if (!title.startsWith("Talk:") && !title.startsWith("Page 1"))
+				filtered.add(title);
+		}
+		assertEquals(filtered, readTitles(file, 100 * 1000));
+	}
+
+	@Test
+	public void testPagesWithoutRevision() throws Exception {
+		File file = folder.newFile("dump.xml");
+		List<String> articles = new ArrayList<String>();
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write("<mediawiki>\n".getBytes("UTF-8"));
+			for (int i = 0; i < PAGES; i++) {
+				// every fifth page is a truncated talk page
+				int ns = i % 5 == 0 ? 1 : 0;
+				String page = pages.get(i).replace(
+						"</title>",
+						"</title>\n\t\t<ns>" + ns + "</ns>");
+				if (i % 5 == 0)
+					page = page.substring(0, page.indexOf("\t\t<revision>"))
+							+ "\t</page>\n";
+				out.write(page.getBytes("UTF-8"));
+				if (ns == 0)
+					articles.add("Page " + i);
+			}
+			out.write("</mediawiki>\n".getBytes("UTF-8"));
+		}
+
+		// the truncated pages are filtered on their own head
+		assertEquals(articles, readTitles(file, 100 * 1000));
+		conf.setInt(WikipediaInputFormat.BUFFER_SIZE, 7);
+		assertEquals(articles, readTitles(file, 33 * 1000));
+
+		// and read as a page of their own
+		conf.set(WikipediaInputFormat.NAMESPACES, "0, 1");
+		assertSplitsReadAllPages(file, 100 * 1000);
+	}
+
+	/**
+	 * Reads all splits of the file and checks every page is read exactly once.
+	 */
+	private void assertSplitsReadAllPages(File file, long splitSize)
+			throws Exception {
+		List<String> titles = readTitles(file, splitSize);
+
+		assertEquals(PAGES, titles.size());
+		for (int i = 0; i < PAGES; i++)
+			assertEquals("Page " + i, titles.get(i));
+	}
+
+	/**
+	 * Reads the titles of the pages in all splits of the file.
+	 */
+	private List<String> readTitles(File file, long splitSize)
+			throws Exception {
+		Job job = Job.getInstance(conf);
+		FileInputFormat.setInputPaths(job, new Path(file.getAbsolutePath()));
+		FileInputFormat.setMaxInputSplitSize(job, splitSize);
+
+		WikipediaInputFormat format = new WikipediaInputFormat();
+		List<InputSplit> splits = format.getSplits(job);
+		assertTrue(splits.size() > 1);
+
+		List<String> titles = new ArrayList<String>();
+		for (InputSplit split : splits) {
+			TaskAttemptContext context = new TaskAttemptContextImpl(
+					job.getConfiguration(), new TaskAttemptID());
+			RecordReader<?, Text> reader = format.createRecordReader(split,
+					context);
+			reader.initialize(split, context);
+			while (reader.nextKeyValue()) {
+				String page = reader.getCurrentValue().toString();
+				assertTrue(page.startsWith("<page>"));
+				assertTrue(page.endsWith("</page>"));
+				titles.add(page.substring(page.indexOf("<title>") + 7,
+						page.indexOf("</title>")));
+			}
+			reader.close();
+		}
+		return titles;
+	}
+
+	private OutputStream compress(OutputStream out) throws IOException {
+		BZip2Codec codec = new BZip2Codec();
+		codec.setConf(conf);
+		return codec.createOutputStream(out);
+	}
+
+	private void writeStream(OutputStream out, int from, int to, boolean header)
+			throws IOException {
+		if (header)
+			out.write("<mediawiki>\n".getBytes("UTF-8"));
+		for (int i = from; i < to; i++)
+			out.write(pages.get(i).getBytes("UTF-8"));
+		if (header && to == PAGES)
+			out.write("</mediawiki>\n".getBytes("UTF-8"));
+	}
+
+}